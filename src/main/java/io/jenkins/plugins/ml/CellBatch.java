@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import io.jenkins.plugins.ml.model.CellResult;
+import io.jenkins.plugins.ml.model.NotebookCell;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * A run of consecutive notebook cells sent to the kernel in a single execute request. kernel_batch.py runs every cell
+ * through the IPython shell and prints markers around it, so the outputs, the status and the duration are still
+ * attributed to each cell.
+ */
+final class CellBatch {
+
+    static final String SCRIPT = "kernel_batch.py";
+    // keeps the execute request well below the gRPC message size
+    static final int MAX_SOURCE_LENGTH = 64 * 1024;
+
+    private final List<NotebookCell> cells;
+    private final List<CellResult> results = new ArrayList<>();
+    private int started = -1;
+
+    CellBatch(List<NotebookCell> cells) {
+        this.cells = cells;
+    }
+
+    /**
+     * Whether a cell may run in a batch, cells with tags change how they run and always run on their own.
+     *
+     * @param cell the cell
+     * @return true when the cell may be batched
+     */
+    static boolean isPlain(NotebookCell cell) {
+        return cell.getTags().isEmpty();
+    }
+
+    /**
+     * Gets the end of the batch starting at a cell, the batch ends before the first cell which is not plain or
+     * which would exceed the size limits.
+     *
+     * @param cells    the cells of the notebook
+     * @param start    the position of the first cell
+     * @param maxCells the maximum number of cells of a batch
+     * @return the position after the last cell of the batch
+     */
+    static int end(List<NotebookCell> cells, int start, int maxCells) {
+        int length = 0;
+        int end = start;
+        while (end < cells.size() && end - start < maxCells && isPlain(cells.get(end))) {
+            length += cells.get(end).getSource().length();
+            if (length > MAX_SOURCE_LENGTH && end > start) {
+                break;
+            }
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Gets the code running the cells of the batch.
+     *
+     * @param script      the content of kernel_batch.py
+     * @param stopOnError whether the cells after a failed cell are skipped
+     * @return the code to execute
+     */
+    String toCode(String script, boolean stopOnError) {
+        StringBuilder code = new StringBuilder(script).append("\ntry:\n    _jenkins_run_cells([");
+        for (NotebookCell cell : cells) {
+            code.append('\'')
+                    .append(Base64.getEncoder().encodeToString(cell.getSource().getBytes(StandardCharsets.UTF_8)))
+                    .append("', ");
+        }
+        return code.append("], ").append(stopOnError ? "True" : "False").append(")\n")
+                .append("finally:\n    del _jenkins_run_cells\n").toString();
+    }
+
+    /**
+     * Handles a marker printed by the batch.
+     *
+     * @param marker the content of the marker
+     * @return the cell whose run starts, null for the other markers
+     */
+    NotebookCell onMarker(String marker) {
+        String[] parts = marker.split(" ");
+        try {
+            if (parts.length == 2 && parts[0].equals(">")) {
+                started = Integer.parseInt(parts[1]);
+                return cells.get(started);
+            }
+            if (parts.length == 4 && parts[0].equals("<")) {
+                NotebookCell cell = cells.get(Integer.parseInt(parts[1]));
+                results.add(new CellResult(cell.getIndex(),
+                        parts[2].equals("ok") ? CellResult.Status.SUCCESS : CellResult.Status.ERROR,
+                        Long.parseLong(parts[3])));
+            }
+        } catch (RuntimeException e) {
+            // not printed by the batch
+        }
+        return null;
+    }
+
+    /**
+     * Gets the results of the cells, once the batch is done.
+     *
+     * @param failed whether the execute request itself failed, e.g. the kernel died
+     * @return the results, the cell which was running when the request failed is failed
+     */
+    List<CellResult> getResults(boolean failed) {
+        List<CellResult> all = new ArrayList<>(results);
+        int running = Math.max(started, 0);
+        if (failed && running == all.size() && running < cells.size()) {
+            all.add(new CellResult(cells.get(running).getIndex(), CellResult.Status.ERROR, 0));
+        }
+        return all;
+    }
+}
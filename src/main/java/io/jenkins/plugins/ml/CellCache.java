@@ -0,0 +1,217 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import hudson.FilePath;
+import io.jenkins.plugins.ml.model.NotebookCell;
+import io.jenkins.plugins.ml.utils.DiskLruStore;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.zeppelin.interpreter.InterpreterResult;
+import org.apache.zeppelin.interpreter.InterpreterResultMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Cache of the outputs of notebook cells on the agent. The key of a cell is chained from the sources of the cells
+ * before it, the job, the kernel name and the digests of the declared input files, so a cell is only replayed when
+ * nothing it may depend on has changed, and never in another job sharing the agent.
+ */
+final class CellCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CellCache.class);
+
+    /**
+     * Sub directory of the agent cache.
+     */
+    static final String STORE_NAME = "cell-cache";
+    /**
+     * Tag of the cells which are always run, e.g. cells depending on time or randomness.
+     */
+    static final String TAG_NO_CACHE = "no-cache";
+
+    private final DiskLruStore store;
+    private String chain;
+    private int hits;
+    private int misses;
+
+    CellCache(DiskLruStore store, String job, String kernel, String inputsDigest) {
+        this.store = store;
+        this.chain = DigestUtils.sha256Hex(job + '\0' + kernel + '\0' + inputsDigest);
+    }
+
+    /**
+     * Opens the cache of a notebook run.
+     *
+     * @param agentConfig the agent configuration
+     * @param job         the full name of the job, the cache is not shared between jobs
+     * @param kernel      the kernel name
+     * @param ws          the workspace
+     * @param inputs      comma or newline separated Ant style globs of the input files, may be null
+     * @return the cache
+     * @throws IOException          when the cache or the inputs cannot be read
+     * @throws InterruptedException when interrupted
+     */
+    static CellCache open(IPythonAgentConfig agentConfig, String job, String kernel, FilePath ws, String inputs)
+            throws IOException, InterruptedException {
+        DiskLruStore store = DiskLruStore.get(STORE_NAME, agentConfig.getCellCacheSize() * 1024 * 1024);
+        return new CellCache(store, job, kernel, digestInputs(ws, inputs));
+    }
+
+    /**
+     * Digests the input files, any change of their content or of the set of files changes the digest.
+     */
+    static String digestInputs(FilePath ws, String inputs) throws IOException, InterruptedException {
+        StringBuilder digests = new StringBuilder();
+        if (inputs != null) {
+            for (String pattern : inputs.split("[,\\n]+")) {
+                pattern = pattern.trim();
+                if (pattern.isEmpty()) {
+                    continue;
+                }
+                FilePath[] files = ws.list(pattern);
+                Arrays.sort(files, Comparator.comparing(FilePath::getRemote));
+                for (FilePath file : files) {
+                    digests.append(file.getRemote()).append('\0').append(file.digest()).append('\n');
+                }
+            }
+        }
+        return DigestUtils.sha256Hex(digests.toString());
+    }
+
+    /**
+     * Chains the source of the next cell to be run.
+     *
+     * @param cell the cell
+     * @return the key of the cell
+     */
+    String nextKey(NotebookCell cell) {
+        chain = DigestUtils.sha256Hex(chain + DigestUtils.sha256Hex(cell.getSource()));
+        return chain;
+    }
+
+    /**
+     * Gets the outputs of a cell.
+     *
+     * @param key the key of the cell
+     * @return the outputs, null when the cell is not cached
+     */
+    List<InterpreterResultMessage> get(String key) {
+        File entry = store.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        try (Reader reader = new InputStreamReader(Files.newInputStream(entry.toPath()), StandardCharsets.UTF_8)) {
+            List<InterpreterResultMessage> messages = read(new JsonReader(reader));
+            hits++;
+            return messages;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Removing unreadable cache entry {}", entry, e);
+            store.remove(key);
+            misses++;
+            return null;
+        }
+    }
+
+    /**
+     * Saves the outputs of a cell.
+     *
+     * @param key      the key of the cell
+     * @param messages the outputs
+     */
+    void put(String key, List<InterpreterResultMessage> messages) {
+        try {
+            File file = store.createTempFile();
+            try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+                write(new JsonWriter(writer), messages);
+            }
+            store.put(key, file);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to cache the outputs of a cell", e);
+        }
+    }
+
+    int getHits() {
+        return hits;
+    }
+
+    int getMisses() {
+        return misses;
+    }
+
+    private static List<InterpreterResultMessage> read(JsonReader reader) throws IOException {
+        List<InterpreterResultMessage> messages = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            InterpreterResult.Type type = InterpreterResult.Type.TEXT;
+            String data = "";
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "type":
+                        type = InterpreterResult.Type.valueOf(reader.nextString());
+                        break;
+                    case "data":
+                        data = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            messages.add(new InterpreterResultMessage(type, data));
+        }
+        reader.endArray();
+        return messages;
+    }
+
+    private static void write(JsonWriter writer, List<InterpreterResultMessage> messages) throws IOException {
+        writer.beginArray();
+        for (InterpreterResultMessage message : messages) {
+            writer.beginObject();
+            writer.name("type").value(message.getType().name());
+            writer.name("data").value(message.getData());
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.flush();
+    }
+}
@@ -0,0 +1,520 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import hudson.FilePath;
+import hudson.Functions;
+import io.jenkins.plugins.ml.utils.Dumper;
+import io.jenkins.plugins.ml.utils.OutputStore;
+import org.apache.zeppelin.interpreter.InterpreterOutput;
+import org.apache.zeppelin.interpreter.InterpreterOutputListener;
+import org.apache.zeppelin.interpreter.InterpreterResult;
+import org.apache.zeppelin.interpreter.InterpreterResultMessage;
+import org.apache.zeppelin.interpreter.InterpreterResultMessageOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Streams the output of a cell while it runs. Text lines are written to the console as soon as the kernel prints
+ * them, images and HTMLs are saved to the task folder once the kernel moved on to the next output, in the background
+ * when the listener has an {@link OutputWriter}.
+ * Every output is cleared once it is written, so the memory held does not grow with the output of the cell,
+ * unless the outputs are recorded to be replayed later on. The text of a cell beyond the output limit goes to a file of
+ * the task folder instead of the console.
+ */
+final class ConsoleOutputListener implements InterpreterOutputListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsoleOutputListener.class);
+    // outputs larger than this are not worth keeping for a replay
+    static final long MAX_RECORDED_SIZE = 64L * 1024 * 1024;
+    /**
+     * Starts a marker printed by the code sent to the kernel, the marker runs up to the end of its line.
+     */
+    static final char MARKER = '\u001e';
+    /**
+     * Size of a spilled output file, the file is rotated beyond it.
+     */
+    static final long SPILL_FILE_SIZE = 64L * 1024 * 1024;
+    /**
+     * Number of rotated files kept per output.
+     */
+    static final int ROTATED_FILES = 2;
+    /**
+     * Names of the spilled output files, the rotated ones have a number before the extension.
+     */
+    static final Pattern SPILL_FILE_NAME = Pattern.compile(".+-output(\\.\\d+)?\\.txt");
+    // end of the spilled output shown in the console
+    static final int TAIL_SIZE = 8 * 1024;
+
+    private final PrintStream console;
+    private final String task;
+    private final FilePath workspace;
+    // null to save the outputs before the kernel goes on
+    private final OutputWriter writer;
+    // null to write every output
+    private final OutputStore store;
+    // rich outputs which may still be written to, by index
+    private final Map<Integer, InterpreterResultMessageOutput> pendingOutputs = new TreeMap<>();
+    // null unless recording
+    private List<InterpreterResultMessage> recorded;
+    private final StringBuilder recordedText = new StringBuilder();
+    private long recordedSize;
+    // null unless the code prints markers
+    private Consumer<String> markerListener;
+    // 0 for no limits
+    private long outputLimit;
+    private long maxResult;
+    // the text of the cell, in memory up to the limit and then in files of the task folder
+    private String outputName = "cell";
+    private long outputSize;
+    private ByteArrayOutputStream outputHead;
+    private OutputStream spill;
+    private long spillSize;
+    private int rotations;
+    private boolean spillFailed;
+    private byte[] tail;
+    private long tailSize;
+
+    /**
+     * Instantiates a new console output listener.
+     *
+     * @param console   the console of the build
+     * @param task      the folder of images and HTMLs, relative to the workspace
+     * @param workspace the workspace
+     */
+    ConsoleOutputListener(PrintStream console, String task, FilePath workspace) {
+        this(console, task, workspace, null, null);
+    }
+
+    /**
+     * Instantiates a new console output listener saving images and HTMLs in the background.
+     *
+     * @param console   the console of the build
+     * @param task      the folder of images and HTMLs, relative to the workspace
+     * @param workspace the workspace
+     * @param writer    saves the images and HTMLs, null to save them right away
+     * @param store     the output store of the agent, null to write every image and HTML
+     */
+    ConsoleOutputListener(PrintStream console, String task, FilePath workspace, OutputWriter writer,
+                          OutputStore store) {
+        this.console = console;
+        this.task = task;
+        this.workspace = workspace;
+        this.writer = writer;
+        this.store = store;
+    }
+
+    /**
+     * Takes the markers out of the text written to the console and passes them to a listener instead.
+     *
+     * @param markerListener called with the content of every marker
+     */
+    synchronized void onMarker(Consumer<String> markerListener) {
+        this.markerListener = markerListener;
+    }
+
+    /**
+     * Limits the text of a cell kept in memory, the text beyond the limit is written to a rotating file of the task
+     * folder and the console only shows its end. Tables are limited to a number of rows.
+     *
+     * @param outputLimit the limit in bytes, 0 for no limit
+     * @param maxResult   the number of rows of a table, 0 for no limit
+     */
+    synchronized void limitOutput(long outputLimit, long maxResult) {
+        this.outputLimit = outputLimit;
+        this.maxResult = maxResult;
+    }
+
+    /**
+     * Starts the text of the next cell, the text of the previous one is finished.
+     *
+     * @param name the name of the output, the file of the task folder is named after it
+     */
+    synchronized void startOutput(String name) {
+        finishOutput();
+        outputName = name;
+    }
+
+    /**
+     * Records the outputs written from now on.
+     */
+    synchronized void record() {
+        recorded = new ArrayList<>();
+    }
+
+    /**
+     * Gets the outputs written since {@link #record()}.
+     *
+     * @return the outputs in order, null when not recording or when the outputs were too large to be kept
+     */
+    synchronized List<InterpreterResultMessage> getRecorded() {
+        flushRecordedText();
+        return recordedSize > MAX_RECORDED_SIZE ? null : recorded;
+    }
+
+    /**
+     * Writes outputs recorded by an earlier run as if the kernel printed them.
+     *
+     * @param messages the recorded outputs
+     */
+    synchronized void replay(List<InterpreterResultMessage> messages) {
+        for (InterpreterResultMessage message : messages) {
+            if (message.getType() == InterpreterResult.Type.TEXT) {
+                console.print(message.getData());
+            } else {
+                write(message.getType(), message.getData());
+            }
+        }
+        console.flush();
+    }
+
+    /**
+     * Called once the cell is finished, saves the remaining images and HTMLs.
+     */
+    @Override
+    public synchronized void onUpdateAll(InterpreterOutput out) {
+        // the remaining images and HTMLs came after the text
+        finishOutput();
+        for (int i = 0; i < out.size(); i++) {
+            InterpreterResultMessageOutput output = out.getOutputAt(i);
+            if (output.getType() != InterpreterResult.Type.TEXT) {
+                dump(output);
+            }
+        }
+        pendingOutputs.clear();
+        console.flush();
+    }
+
+    @Override
+    public synchronized void onAppend(int index, InterpreterResultMessageOutput out, byte[] line) {
+        dumpPendingOutputsBefore(index);
+        if (out.getType() == InterpreterResult.Type.TEXT) {
+            int marker = markerListener != null ? indexOfMarker(line) : -1;
+            if (marker >= 0) {
+                // the text printed without a new line before the marker
+                if (marker > 0) {
+                    writeText(line, 0, marker);
+                    writeText(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+                }
+                console.flush();
+                out.clear();
+                markerListener.accept(new String(line, marker + 1, line.length - marker - 1, StandardCharsets.UTF_8).trim());
+                return;
+            }
+            writeText(line, 0, line.length);
+            console.flush();
+            if (recorded != null && recordedSize <= MAX_RECORDED_SIZE) {
+                recordedText.append(new String(line, StandardCharsets.UTF_8));
+                recordedSize += line.length;
+            }
+            out.clear();
+        }
+    }
+
+    @Override
+    public synchronized void onUpdate(int index, InterpreterResultMessageOutput out) {
+        dumpPendingOutputsBefore(index);
+        if (out.getType() != InterpreterResult.Type.TEXT) {
+            pendingOutputs.put(index, out);
+        }
+    }
+
+    private void writeText(byte[] text) {
+        writeText(text, 0, text.length);
+    }
+
+    private void writeText(byte[] text, int offset, int length) {
+        if (outputLimit <= 0) {
+            console.write(text, offset, length);
+            return;
+        }
+        outputSize += length;
+        if (spill == null && !spillFailed && outputSize <= outputLimit) {
+            console.write(text, offset, length);
+            if (outputHead == null) {
+                outputHead = new ByteArrayOutputStream();
+            }
+            outputHead.write(text, offset, length);
+            return;
+        }
+        if (spill == null && !spillFailed) {
+            // the cell is not cached, its output would flood the console when replayed
+            recordedSize = MAX_RECORDED_SIZE + 1;
+            recordedText.setLength(0);
+            console.println("The output of " + outputName + " exceeds " + Functions.humanReadableByteSize(outputLimit)
+                    + ", the rest of it is only written to " + task + "/" + getSpillFileName(0));
+            try {
+                openSpill();
+                if (outputHead != null) {
+                    outputHead.writeTo(spill);
+                    spillSize = outputHead.size();
+                }
+            } catch (IOException e) {
+                failSpill(e);
+            }
+            outputHead = null;
+        }
+        appendTail(text, offset, length);
+        if (spillFailed) {
+            return;
+        }
+        try {
+            spill.write(text, offset, length);
+            spillSize += length;
+            if (spillSize >= SPILL_FILE_SIZE) {
+                rotateSpill();
+            }
+        } catch (IOException e) {
+            failSpill(e);
+        }
+    }
+
+    private void openSpill() throws IOException {
+        Path file = getSpillFile(0);
+        Files.createDirectories(file.getParent());
+        spill = new BufferedOutputStream(Files.newOutputStream(file));
+        spillSize = 0;
+    }
+
+    private void rotateSpill() throws IOException {
+        spill.close();
+        spill = null;
+        for (int i = ROTATED_FILES; i > 0; i--) {
+            Path file = getSpillFile(i - 1);
+            if (Files.exists(file)) {
+                Files.move(file, getSpillFile(i), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        rotations++;
+        openSpill();
+    }
+
+    private void failSpill(IOException e) {
+        LOGGER.warn("Failed to write the output of the cell", e);
+        console.println("Failed to write the output of " + outputName + ", the rest of it is dropped: "
+                + e.getMessage());
+        spillFailed = true;
+        closeSpill();
+    }
+
+    private void closeSpill() {
+        if (spill != null) {
+            try {
+                spill.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close the output of the cell", e);
+            }
+            spill = null;
+        }
+    }
+
+    private void appendTail(byte[] text, int offset, int length) {
+        if (tail == null) {
+            tail = new byte[TAIL_SIZE];
+        }
+        int skipped = Math.max(0, length - TAIL_SIZE);
+        tailSize += skipped;
+        for (int i = skipped; i < length; i++) {
+            tail[(int) (tailSize++ % TAIL_SIZE)] = text[offset + i];
+        }
+    }
+
+    /**
+     * Prints the end of the spilled text of the cell and where the rest of it is.
+     */
+    private void finishOutput() {
+        if (spill != null || spillFailed) {
+            closeSpill();
+            byte[] end = new byte[(int) Math.min(tailSize, TAIL_SIZE)];
+            for (int i = 0; i < end.length; i++) {
+                end[i] = tail[(int) ((tailSize - end.length + i) % TAIL_SIZE)];
+            }
+            int start = 0;
+            if (tailSize > TAIL_SIZE) {
+                // starts at a line
+                while (start < end.length && end[start] != '\n') {
+                    start++;
+                }
+                start = start < end.length ? start + 1 : 0;
+            }
+            console.println("... the last " + Functions.humanReadableByteSize(end.length - start) + " of "
+                    + Functions.humanReadableByteSize(outputSize) + " written by " + outputName + " :");
+            console.write(end, start, end.length - start);
+            if (end.length > start && end[end.length - 1] != '\n') {
+                console.println();
+            }
+            if (!spillFailed) {
+                console.println("The output of " + outputName + " is in " + task + "/" + getSpillFileName(0)
+                        + (rotations > 0 ? ", the earlier output in " + getRotatedFileNames() : "")
+                        + (rotations > ROTATED_FILES ? ", the start of it was dropped" : ""));
+            }
+        }
+        outputSize = 0;
+        outputHead = null;
+        spillSize = 0;
+        rotations = 0;
+        spillFailed = false;
+        tail = null;
+        tailSize = 0;
+    }
+
+    private String getRotatedFileNames() {
+        StringBuilder names = new StringBuilder();
+        for (int i = 1; i <= Math.min(rotations, ROTATED_FILES); i++) {
+            names.append(i > 1 ? " and " : "").append(task).append('/').append(getSpillFileName(i));
+        }
+        return names.toString();
+    }
+
+    private String getSpillFileName(int rotation) {
+        return outputName + "-output" + (rotation > 0 ? "." + rotation : "") + ".txt";
+    }
+
+    private Path getSpillFile(int rotation) {
+        return new File(new FilePath(workspace, task).getRemote(), getSpillFileName(rotation)).toPath();
+    }
+
+    /**
+     * Keeps the header and the first rows of a table.
+     */
+    private String limitRows(String table) {
+        if (maxResult <= 0) {
+            return table;
+        }
+        int end = -1;
+        for (long row = 0; row <= maxResult; row++) {
+            end = table.indexOf('\n', end + 1);
+            if (end < 0 || end == table.length() - 1) {
+                return table;
+            }
+        }
+        long rows = 0;
+        for (int i = end + 1; i < table.length(); i++) {
+            if (table.charAt(i) == '\n' || i == table.length() - 1) {
+                rows++;
+            }
+        }
+        return table.substring(0, end) + System.lineSeparator() + "... " + rows + " more rows";
+    }
+
+    private static int indexOfMarker(byte[] line) {
+        for (int i = 0; i < line.length; i++) {
+            if (line[i] == MARKER) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void dumpPendingOutputsBefore(int index) {
+        Iterator<Map.Entry<Integer, InterpreterResultMessageOutput>> pending = pendingOutputs.entrySet().iterator();
+        while (pending.hasNext()) {
+            Map.Entry<Integer, InterpreterResultMessageOutput> entry = pending.next();
+            if (entry.getKey() >= index) {
+                break;
+            }
+            pending.remove();
+            dump(entry.getValue());
+        }
+    }
+
+    private void dump(InterpreterResultMessageOutput output) {
+        try {
+            String data = output.toInterpreterResultMessage().getData();
+            write(output.getType(), data);
+            if (recorded != null && recordedSize <= MAX_RECORDED_SIZE && !data.trim().isEmpty()) {
+                flushRecordedText();
+                recorded.add(new InterpreterResultMessage(output.getType(), data));
+                recordedSize += data.length();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read the output of the cell", e);
+        }
+        output.clear();
+    }
+
+    private void flushRecordedText() {
+        if (recorded != null && recordedText.length() > 0) {
+            recorded.add(new InterpreterResultMessage(InterpreterResult.Type.TEXT, recordedText.toString()));
+            recordedText.setLength(0);
+        }
+    }
+
+    private void write(InterpreterResult.Type type, String data) {
+        try {
+            if (data.trim().isEmpty()) {
+                return;
+            }
+            switch (type) {
+                case IMG:
+                    String image = data.trim();
+                    save(() -> Dumper.dumpImage(image, task, workspace, store));
+                    console.println("Image added to " + task);
+                    break;
+                case HTML:
+                    save(() -> Dumper.dumpHtml(data, task, workspace, store));
+                    console.println("HTML added to " + task);
+                    break;
+                case TABLE:
+                    console.println(limitRows(data));
+                    break;
+                default:
+                    console.println(data);
+                    break;
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to save the output of the cell", e);
+            console.println("Failed to save the output of the cell: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void save(OutputWriter.Write write) throws IOException, InterruptedException {
+        if (writer != null) {
+            writer.submit(write);
+        } else {
+            write.run();
+        }
+    }
+}
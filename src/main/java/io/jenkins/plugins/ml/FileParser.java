@@ -28,29 +28,45 @@ import com.google.gson.JsonObject;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.PluginWrapper;
 import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.BuildListener;
+import hudson.remoting.VirtualChannel;
 import hudson.tasks.BuildWrapper;
 import hudson.tasks.BuildWrapperDescriptor;
 import io.jenkins.plugins.ml.model.ParsableFile;
 import io.jenkins.plugins.ml.utils.ConvertHelper;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.model.Jenkins;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 
 import javax.annotation.Nonnull;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 public class FileParser extends BuildWrapper {
     public   List<ParsableFile> parsableFiles;
 
     private static final Logger LOGGER = Logger.getLogger(FileParser.class.getName());
+    // saved next to a converted file, the digest of the source it was converted from
+    private static final String DIGEST_EXTENSION = ".digest";
 
     @DataBoundConstructor
     public FileParser(ArrayList<ParsableFile> parsableFiles){
@@ -69,59 +85,19 @@ public class FileParser extends BuildWrapper {
         LOGGER.info("Recognize project workspace and folder");
         final Optional<FilePath> projectWorkspace = Optional.ofNullable(build.getWorkspace());
 
-        // Copy each file to the workspace
+        // Copy each file to the workspace, the files are converted on the agent and only the status comes back
         projectWorkspace.ifPresent((workspace) -> {
+            List<Conversion> conversions = new ArrayList<>();
             for (ParsableFile file : parsableFiles) {
-                FilePath copyFrom = workspace.child(file.getFileName());
-                FilePath copyTo;
-                LOGGER.info(String.format("Copying file from %s to %s", copyFrom.getName(), workspace.getName() + file.getSaveConverted()));
-                try {
-                    switch (file.getConvertType()) {
-                        case "NONE":
-                            // check the save to file path is given
-                            if (Util.fixEmptyAndTrim(file.getSaveConverted()) == null) {
-                                copyTo = new FilePath(workspace, copyFrom.getName());
-                            } else {
-                                copyTo = new FilePath(workspace, file.getSaveConverted());
-                            }
-
-                            copyFrom.copyTo(copyTo);
-                            listener.getLogger().println(String.format("%s copied to %s", copyFrom.getName(), workspace.getName()));
-                            break;
-                        case "JSON":
-                            // change the extension with same file name
-                            if (Util.fixEmptyAndTrim(file.getSaveConverted()) == null) {
-                                copyTo = new FilePath(workspace, copyFrom.getName().replace(".ipynb", ".json"));
-                            } else {
-                                copyTo = new FilePath(workspace, file.getSaveConverted());
-                            }
-                            // get the obj to write the JSON
-                            JsonObject obj = ConvertHelper.jupyterToJSON(copyFrom);
-                            // write to JSON
-                            copyTo.write(obj.toString(), "UTF-8");
-                            listener.getLogger().println(String.format("%s copied and converted to %s", copyFrom.getName(), copyTo.getName()));
-                            break;
-                        case "PY":
-                            // change the extension with same file name
-                            if (Util.fixEmptyAndTrim(file.getSaveConverted()) == null) {
-                                copyTo = new FilePath(workspace, copyFrom.getName().replace(".ipynb", ".py"));
-                            } else {
-                                copyTo = new FilePath(workspace, file.getSaveConverted());
-                            }
-                            // get the text to write the JSON
-                            String code = ConvertHelper.jupyterToText(copyFrom);
-                            // write to python file
-                            copyTo.write(code, "UTF-8");
-                            listener.getLogger().println(String.format("%s copied and converted to %s", copyFrom.getName(), copyTo.getName()));
-                            break;
-                        default:
-                            listener.getLogger().println("File conversion is not supported");
-                    }
-
-                    LOGGER.info("Saving file");
-                } catch (IOException | InterruptedException e) {
-                    e.printStackTrace(listener.getLogger());
+                conversions.add(new Conversion(file.getFileName(), file.getConvertType(), file.getSaveConverted()));
+            }
+            try {
+                for (String status : workspace.act(new ConvertFiles(conversions, getPluginVersion()))) {
+                    listener.getLogger().println(status);
                 }
+                LOGGER.info("Saving file");
+            } catch (IOException | InterruptedException e) {
+                e.printStackTrace(listener.getLogger());
             }
         });
 
@@ -131,24 +107,281 @@ public class FileParser extends BuildWrapper {
           public boolean tearDown(AbstractBuild build, BuildListener listener) {
 
             // Delete the file after build if necessary
-              projectWorkspace.ifPresent((workspace) -> parsableFiles.stream()
-                      .filter(file -> file != null && file.isDeleteFilesAfterBuild())
-                      .map(file -> new FilePath(new File(file.getFileName())))
-                      .forEach(file -> {
-                          String copyToFile = file.getName();
-                          FilePath child = new FilePath(workspace, copyToFile);
-                          try {
-                              child.delete();
-                          } catch (IOException | InterruptedException e) {
-                              e.printStackTrace(listener.getLogger());
-                          }
-                      }));
+              projectWorkspace.ifPresent((workspace) -> {
+                  List<Conversion> conversions = new ArrayList<>();
+                  for (ParsableFile file : parsableFiles) {
+                      if (file != null && file.isDeleteFilesAfterBuild()) {
+                          conversions.add(new Conversion(file.getFileName(), file.getConvertType(),
+                                  file.getSaveConverted()));
+                      }
+                  }
+                  if (conversions.isEmpty()) {
+                      return;
+                  }
+                  try {
+                      for (String status : workspace.act(new DeleteFiles(conversions))) {
+                          listener.getLogger().println(status);
+                      }
+                  } catch (IOException | InterruptedException e) {
+                      e.printStackTrace(listener.getLogger());
+                  }
+              });
 
             return true;
           }
         };
     }
 
+    /**
+     * A file to copy or convert, as sent to the agent. The file name may be an Ant style glob matching several
+     * notebooks.
+     */
+    private static final class Conversion implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String fileName;
+        private final String convertType;
+        private final String saveConverted;
+
+        private Conversion(String fileName, String convertType, String saveConverted) {
+            this.fileName = fileName;
+            this.convertType = convertType;
+            this.saveConverted = Util.fixEmptyAndTrim(saveConverted);
+        }
+
+        private boolean isGlob() {
+            return fileName.contains("*") || fileName.contains("?");
+        }
+
+        /**
+         * Gets the files matching the file name, the files in the save to folder are the converted copies of matches.
+         */
+        private List<FilePath> resolve(FilePath workspace) throws IOException, InterruptedException {
+            if (!isGlob()) {
+                return Collections.singletonList(workspace.child(fileName));
+            }
+            FilePath[] matches = workspace.list(fileName, saveConverted == null ? null : saveConverted + "/**");
+            Arrays.sort(matches, Comparator.comparing(FilePath::getRemote));
+            return Arrays.asList(matches);
+        }
+
+        /**
+         * Gets the files written by the build. A plain file name is copied into the workspace, the notebooks matching
+         * a glob stay where they are and only the files converted or copied from them are written.
+         */
+        private List<FilePath> getWritten(FilePath workspace) throws IOException, InterruptedException {
+            if (!isGlob()) {
+                return Collections.singletonList(new FilePath(workspace, new File(fileName).getName()));
+            }
+            List<FilePath> written = new ArrayList<>();
+            for (FilePath copyFrom : resolve(workspace)) {
+                FilePath copyTo = getTarget(workspace, copyFrom, getExtension());
+                if (!copyTo.equals(copyFrom)) {
+                    written.add(copyTo);
+                    if (getExtension() != null) {
+                        written.add(copyTo.sibling(copyTo.getName() + DIGEST_EXTENSION));
+                    }
+                }
+            }
+            return written;
+        }
+
+        /**
+         * Gets the extension of the converted files, null when the files are only copied.
+         */
+        private String getExtension() {
+            switch (convertType) {
+                case "JSON":
+                    return ".json";
+                case "PY":
+                    return ".py";
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * Gets the file written for a source file. The notebooks matching a glob are converted next to themselves,
+         * or into the save to folder under their path in the workspace, so that notebooks of the same name in
+         * different folders do not overwrite each other.
+         */
+        private FilePath getTarget(FilePath workspace, FilePath copyFrom, String extension) {
+            String name = extension == null ? copyFrom.getName() : copyFrom.getName().replace(".ipynb", extension);
+            if (isGlob()) {
+                if (saveConverted == null) {
+                    return copyFrom.sibling(name);
+                }
+                String path = getRelativePath(workspace, copyFrom);
+                String folder = path.substring(0, path.length() - copyFrom.getName().length());
+                return workspace.child(saveConverted).child(folder + name);
+            }
+            // check the save to file path is given
+            return saveConverted == null ? new FilePath(workspace, name) : new FilePath(workspace, saveConverted);
+        }
+
+        /**
+         * Gets the path of a match in the workspace, the matches of a glob are listed under the workspace.
+         */
+        private static String getRelativePath(FilePath workspace, FilePath file) {
+            String root = workspace.getRemote();
+            String remote = file.getRemote();
+            if (!remote.startsWith(root)) {
+                return file.getName();
+            }
+            return remote.substring(root.length()).replaceFirst("^[/\\\\]+", "");
+        }
+
+        /**
+         * Copies or converts a file. A conversion is skipped when the digest saved next to the converted file
+         * matches the source.
+         *
+         * @return the status
+         */
+        private String run(FilePath workspace, FilePath copyFrom, String pluginVersion)
+                throws IOException, InterruptedException {
+            FilePath copyTo;
+            switch (convertType) {
+                case "NONE":
+                    copyTo = getTarget(workspace, copyFrom, null);
+                    if (copyTo.equals(copyFrom)) {
+                        return String.format("%s is already in %s", copyFrom.getName(), workspace.getName());
+                    }
+                    copyFrom.copyTo(copyTo);
+                    return String.format("%s copied to %s", copyFrom.getName(), workspace.getName());
+                case "JSON":
+                case "PY":
+                    // change the extension with same file name
+                    copyTo = getTarget(workspace, copyFrom, getExtension());
+                    FilePath digestFile = copyTo.sibling(copyTo.getName() + DIGEST_EXTENSION);
+                    String digest = digest(copyFrom, pluginVersion);
+                    if (copyTo.exists() && digestFile.exists() && digestFile.readToString().trim().equals(digest)) {
+                        return String.format("%s is unchanged, skipped converting to %s", copyFrom.getName(),
+                                copyTo.getName());
+                    }
+                    if (convertType.equals("JSON")) {
+                        // get the obj to write the JSON
+                        JsonObject obj = ConvertHelper.jupyterToJSON(copyFrom);
+                        copyTo.write(obj.toString(), "UTF-8");
+                    } else {
+                        // get the text to write the python file
+                        copyTo.write(ConvertHelper.jupyterToText(copyFrom), "UTF-8");
+                    }
+                    digestFile.write(digest, "UTF-8");
+                    return String.format("%s copied and converted to %s", copyFrom.getName(), copyTo.getName());
+                default:
+                    return "File conversion is not supported";
+            }
+        }
+
+        /**
+         * Digests the notebook bytes, the convert type and the plugin version, a new version may convert differently.
+         */
+        private String digest(FilePath copyFrom, String pluginVersion) throws IOException, InterruptedException {
+            try (InputStream in = copyFrom.read()) {
+                return DigestUtils.sha256Hex(convertType + '\0' + pluginVersion + '\0' + DigestUtils.sha256Hex(in));
+            }
+        }
+    }
+
+    /**
+     * Copies and converts the files on the agent, in parallel, so the notebooks never go through the controller.
+     */
+    private static final class ConvertFiles extends MasterToSlaveFileCallable<List<String>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Conversion> conversions;
+        private final String pluginVersion;
+
+        private ConvertFiles(List<Conversion> conversions, String pluginVersion) {
+            this.conversions = conversions;
+            this.pluginVersion = pluginVersion;
+        }
+
+        @Override
+        public List<String> invoke(File ws, VirtualChannel channel) throws IOException, InterruptedException {
+            FilePath workspace = new FilePath(ws);
+            List<Conversion> tasks = new ArrayList<>();
+            List<FilePath> sources = new ArrayList<>();
+            List<String> statuses = new ArrayList<>();
+            for (Conversion conversion : conversions) {
+                List<FilePath> matches = conversion.resolve(workspace);
+                if (matches.isEmpty()) {
+                    statuses.add("No file matches " + conversion.fileName);
+                }
+                for (FilePath source : matches) {
+                    tasks.add(conversion);
+                    sources.add(source);
+                }
+            }
+            if (tasks.isEmpty()) {
+                return statuses;
+            }
+            int threads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+            ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "Notebook conversion");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<String>> futures = new ArrayList<>();
+                for (int i = 0; i < tasks.size(); i++) {
+                    Conversion conversion = tasks.get(i);
+                    FilePath source = sources.get(i);
+                    futures.add(executor.submit(() -> conversion.run(workspace, source, pluginVersion)));
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        statuses.add(futures.get(i).get());
+                    } catch (ExecutionException e) {
+                        // the other files are still converted
+                        statuses.add("Failed to convert " + sources.get(i).getName() + ": " + e.getCause());
+                    }
+                }
+                return statuses;
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Deletes the files written by the conversions on the agent, globs are resolved against the workspace.
+     */
+    private static final class DeleteFiles extends MasterToSlaveFileCallable<List<String>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Conversion> conversions;
+
+        private DeleteFiles(List<Conversion> conversions) {
+            this.conversions = conversions;
+        }
+
+        @Override
+        public List<String> invoke(File ws, VirtualChannel channel) throws IOException, InterruptedException {
+            FilePath workspace = new FilePath(ws);
+            List<String> statuses = new ArrayList<>();
+            for (Conversion conversion : conversions) {
+                for (FilePath file : conversion.getWritten(workspace)) {
+                    try {
+                        file.delete();
+                    } catch (IOException e) {
+                        // the other files are still deleted
+                        statuses.add("Failed to delete " + file.getName() + ": " + e.getMessage());
+                    }
+                }
+            }
+            return statuses;
+        }
+    }
+
+    private static String getPluginVersion() {
+        PluginWrapper plugin = Jenkins.get().getPluginManager().whichPlugin(FileParser.class);
+        return plugin != null ? plugin.getVersion() : "";
+    }
+
     @Extension
     public static class DescriptorImpl extends BuildWrapperDescriptor {
         public DescriptorImpl() {
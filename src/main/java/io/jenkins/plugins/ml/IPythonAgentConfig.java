@@ -0,0 +1,144 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import java.io.Serializable;
+
+/**
+ * Agent wide settings, taken from the global configuration and sent to the agent with every build step.
+ */
+public class IPythonAgentConfig implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Default number of kernels kept per kernel configuration.
+     */
+    public static final int DEFAULT_KERNEL_POOL_MAX_SIZE = 2;
+    /**
+     * Default number of idle kernels kept warm per kernel configuration.
+     */
+    public static final int DEFAULT_KERNEL_POOL_MIN_IDLE = 0;
+    /**
+     * Default idle time in seconds before a pooled kernel is shut down.
+     */
+    public static final long DEFAULT_KERNEL_POOL_IDLE_TIMEOUT = 600;
+    /**
+     * Default size in MB of the cell cache of an agent.
+     */
+    public static final long DEFAULT_CELL_CACHE_SIZE = 1024;
+    /**
+     * Default size in MB of the output store of an agent.
+     */
+    public static final long DEFAULT_OUTPUT_STORE_SIZE = 1024;
+
+    private final int kernelPoolMaxSize;
+    private final int kernelPoolMinIdle;
+    private final long kernelPoolIdleTimeout;
+    private final long cellCacheSize;
+    private final long outputStoreSize;
+
+    /**
+     * Instantiates agent settings with default values.
+     */
+    public IPythonAgentConfig() {
+        this(DEFAULT_KERNEL_POOL_MAX_SIZE, DEFAULT_KERNEL_POOL_MIN_IDLE, DEFAULT_KERNEL_POOL_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Constructor for agent settings with the default cell cache and output store sizes
+     *
+     * @param kernelPoolMaxSize     the maximum number of kernels kept per kernel configuration
+     * @param kernelPoolMinIdle     the minimum number of idle kernels kept per kernel configuration
+     * @param kernelPoolIdleTimeout the idle timeout of pooled kernels in seconds
+     */
+    public IPythonAgentConfig(int kernelPoolMaxSize, int kernelPoolMinIdle, long kernelPoolIdleTimeout) {
+        this(kernelPoolMaxSize, kernelPoolMinIdle, kernelPoolIdleTimeout, DEFAULT_CELL_CACHE_SIZE,
+                DEFAULT_OUTPUT_STORE_SIZE);
+    }
+
+    /**
+     * Constructor for agent settings
+     *
+     * @param kernelPoolMaxSize     the maximum number of kernels kept per kernel configuration
+     * @param kernelPoolMinIdle     the minimum number of idle kernels kept per kernel configuration
+     * @param kernelPoolIdleTimeout the idle timeout of pooled kernels in seconds
+     * @param cellCacheSize         the size of the cell cache in MB
+     * @param outputStoreSize       the size of the output store in MB, 0 disables it
+     */
+    public IPythonAgentConfig(int kernelPoolMaxSize, int kernelPoolMinIdle, long kernelPoolIdleTimeout,
+                              long cellCacheSize, long outputStoreSize) {
+        this.cellCacheSize = Math.max(0, cellCacheSize);
+        this.outputStoreSize = Math.max(0, outputStoreSize);
+        this.kernelPoolMaxSize = Math.max(0, kernelPoolMaxSize);
+        this.kernelPoolMinIdle = Math.max(0, Math.min(kernelPoolMinIdle, this.kernelPoolMaxSize));
+        this.kernelPoolIdleTimeout = Math.max(0, kernelPoolIdleTimeout);
+    }
+
+    /**
+     * Gets the maximum number of kernels kept per kernel configuration. Zero disables the pool.
+     *
+     * @return the kernel pool max size
+     */
+    public int getKernelPoolMaxSize() {
+        return kernelPoolMaxSize;
+    }
+
+    /**
+     * Gets the minimum number of idle kernels kept warm per kernel configuration.
+     *
+     * @return the kernel pool min idle
+     */
+    public int getKernelPoolMinIdle() {
+        return kernelPoolMinIdle;
+    }
+
+    /**
+     * Gets the idle timeout of pooled kernels.
+     *
+     * @return the idle timeout in seconds
+     */
+    public long getKernelPoolIdleTimeout() {
+        return kernelPoolIdleTimeout;
+    }
+
+    /**
+     * Gets the size of the cell cache of the agent, the least recently used outputs are evicted beyond it.
+     *
+     * @return the cell cache size in MB
+     */
+    public long getCellCacheSize() {
+        return cellCacheSize;
+    }
+
+    /**
+     * Gets the size of the output store of the agent, the least recently used images and HTMLs are evicted beyond it.
+     *
+     * @return the output store size in MB, 0 when disabled
+     */
+    public long getOutputStoreSize() {
+        return outputStoreSize;
+    }
+}
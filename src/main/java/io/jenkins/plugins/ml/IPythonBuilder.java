@@ -25,41 +25,35 @@
 package io.jenkins.plugins.ml;
 
 import com.cloudbees.hudson.plugins.folder.AbstractFolder;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.*;
 import hudson.model.AbstractProject;
 import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
-import io.jenkins.plugins.ml.utils.ConvertHelper;
-import jenkins.security.MasterToSlaveCallable;
+import io.jenkins.plugins.ml.model.CellResult;
+import io.jenkins.plugins.ml.model.NotebookResult;
 import jenkins.tasks.SimpleBuildStep;
-import org.apache.zeppelin.interpreter.InterpreterException;
-import org.apache.zeppelin.jupyter.zformat.Note;
-import org.apache.zeppelin.jupyter.zformat.Paragraph;
 import org.jenkinsci.Symbol;
-import org.kohsuke.accmod.Restricted;
-import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.Serializable;
-import java.nio.charset.Charset;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
-import java.util.logging.Logger;
 import java.util.stream.Stream;
 
 /**
@@ -69,7 +63,6 @@ public class IPythonBuilder extends Builder implements SimpleBuildStep, Serializ
 
     private static final long serialVersionUID = 1L;
 
-    private static final Logger LOGGER = Logger.getLogger(IPythonBuilder.class.getName());
     private static final java.util.logging.Logger GRPC_IO_LOGGER = java.util.logging.Logger.getLogger("io.grpc.internal");
     private static final Level GRPC_IO_LOGGER_ORIGINAL_LEVEL = GRPC_IO_LOGGER.getLevel();
 
@@ -78,6 +71,16 @@ public class IPythonBuilder extends Builder implements SimpleBuildStep, Serializ
     private final String parserType;
     private final String task;
     private final String kernelName;
+    private boolean continueOnError;
+    private int parallelism = 1;
+    private String parameters;
+    private boolean cacheCells;
+    private String cacheInputs;
+    private boolean checkpoints;
+    private int cellBatchSize = 1;
+    private Integer cancelGracePeriod;
+    private Long cellTimeout;
+    private Long notebookTimeout;
 
     /**
      * Instantiates a new Python builder.
@@ -105,31 +108,49 @@ public class IPythonBuilder extends Builder implements SimpleBuildStep, Serializ
     }
 
     @Override
-    @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
     public void perform(@Nonnull Run<?, ?> run, @Nonnull FilePath ws, @Nonnull Launcher launcher, @Nonnull TaskListener listener) throws AbortException {
+        boolean failed = perform(run, ws, launcher, listener, null);
+        // a Pipeline step reports the failure to its context instead
+        run.setResult(failed ? Result.FAILURE : Result.SUCCESS);
+    }
+
+    /**
+     * Runs the code or the notebooks, in the kernel of a withIPythonKernel block when a session is given.
+     * When the build is aborted the running cells are interrupted, and the kernels are shut down after the
+     * cancel grace period.
+     *
+     * @param run       the run
+     * @param ws        the workspace
+     * @param launcher  the launcher of the agent
+     * @param listener  the listener
+     * @param sessionId the id of the kernel session, null to run with kernels of their own
+     * @return true when a notebook failed
+     * @throws AbortException when the code cannot be run
+     */
+    @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
+    boolean perform(@Nonnull Run<?, ?> run, @Nonnull FilePath ws, @Nonnull Launcher launcher,
+                    @Nonnull TaskListener listener, @CheckForNull String sessionId) throws AbortException {
         // Disable GRPC internal exceptions due to SEVERE log message when closing kernel interpreter
         GRPC_IO_LOGGER.setLevel(Level.OFF);
         try {
-            if (parserType.isEmpty() || task.isEmpty() || kernelName.isEmpty()) {
-                throw new AbortException("IPython builder is mis-configured ");
-            }
-            // get the properties of the job
-            Server server = getServer();
-            if (server == null) {
-                throw new AbortException("No valid kernel exist for " + kernelName);
-            }
-            String serverName = server.getServerName();
-            String kernel = server.getKernel();
-            long launchTimeout = server.getLaunchTimeoutInMilliSeconds();
-            long maxResults = server.getMaxResults();
-            listener.getLogger().println("Executed kernel : " + kernel.toUpperCase());
-            listener.getLogger().println("Language : " + serverName.toUpperCase());
-            // create configuration
-            IPythonUserConfig jobUserConfig = new IPythonUserConfig(kernel, launchTimeout, maxResults, ws.getRemote());
+            IPythonExecutor executor = createExecutor(run, ws, listener, sessionId);
             // Get the right channel to execute the code
-            run.setResult(launcher.getChannel().call(new ExecutorImpl(ws, listener, jobUserConfig)));
-            // search and update for action after the build
-            run.addOrReplaceAction(new ResultAction(run, ws));
+            VirtualChannel channel = launcher.getChannel();
+            CompletableFuture<List<NotebookResult>> future = new CompletableFuture<>();
+            String executionId = channel.call(new NotebookExecutions.Start(executor,
+                    channel.export(NotebookExecutions.Listener.class, NotebookExecutions.ChannelWatch.watch(channel,
+                            new NotebookExecutions.FutureListener(future)))));
+            List<NotebookResult> results;
+            try {
+                results = future.get();
+            } catch (InterruptedException e) {
+                listener.getLogger().println("Interrupting the kernels");
+                channel.call(new NotebookExecutions.Cancel(executionId, getCancelGracePeriod()));
+                throw e;
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+            return complete(run, ws, listener, results);
 
         } catch (Throwable e) {
             e.printStackTrace(listener.getLogger());
@@ -139,8 +160,83 @@ public class IPythonBuilder extends Builder implements SimpleBuildStep, Serializ
         }
     }
 
+    /**
+     * Gets the callable running the code or the notebooks on the agent.
+     *
+     * @param run       the run
+     * @param ws        the workspace
+     * @param listener  the listener
+     * @param sessionId the id of the kernel session, null to run with kernels of their own
+     * @return the callable
+     * @throws AbortException when the builder is mis-configured
+     */
+    IPythonExecutor createExecutor(@Nonnull Run<?, ?> run, @Nonnull FilePath ws, @Nonnull TaskListener listener,
+                                   @CheckForNull String sessionId) throws AbortException {
+        if (parserType.isEmpty() || task.isEmpty() || kernelName.isEmpty()) {
+            throw new AbortException("IPython builder is mis-configured ");
+        }
+        // get the properties of the job
+        Server server = findServer(kernelName);
+        if (server == null) {
+            throw new AbortException("No valid kernel exist for " + kernelName);
+        }
+        String serverName = server.getServerName();
+        String kernel = server.getKernel();
+        listener.getLogger().println("Executed kernel : " + kernel.toUpperCase());
+        listener.getLogger().println("Language : " + serverName.toUpperCase());
+        // create configuration
+        IPythonUserConfig jobUserConfig = server.toUserConfig(ws.getRemote());
+        // the timeouts of the builder take precedence over the ones of the kernel
+        if (cellTimeout != null) {
+            jobUserConfig.setCellTimeout(cellTimeout);
+        }
+        if (notebookTimeout != null) {
+            jobUserConfig.setNotebookTimeout(notebookTimeout);
+        }
+        IPythonAgentConfig agentConfig = IPythonGlobalConfiguration.get().getAgentConfig();
+        List<Map<String, String>> variants = ParameterMatrix.expand(parameters);
+        return new IPythonExecutor(this, run.getParent().getFullName(), ws, listener, jobUserConfig, agentConfig,
+                variants, sessionId);
+    }
+
+    /**
+     * Reports the results of the notebooks on the build, the result of the build is left to the caller.
+     *
+     * @param run      the run
+     * @param ws       the workspace
+     * @param listener the listener
+     * @param results  the results of the notebooks
+     * @return true when a notebook failed
+     */
+    boolean complete(@Nonnull Run<?, ?> run, @Nonnull FilePath ws, @Nonnull TaskListener listener,
+                     @Nonnull List<NotebookResult> results) {
+        boolean failed = false;
+        for (NotebookResult result : results) {
+            CellResult failedCell = result.getFailedCell();
+            if (failedCell != null) {
+                listener.error("Cell " + failedCell.getIndex() + " of " + result.getNotebook() + " failed");
+            }
+            failed |= result.isFailed();
+        }
+        // search and update for action after the build
+        ResultAction previousAction = run.getAction(ResultAction.class);
+        ResultAction resultAction = new ResultAction(run, ws);
+        if (previousAction != null) {
+            resultAction.getNotebookResults().addAll(previousAction.getNotebookResults());
+        }
+        resultAction.getNotebookResults().addAll(results);
+        run.addOrReplaceAction(resultAction);
+        return failed;
+    }
+
+    /**
+     * Finds the kernel configuration of a kernel name.
+     *
+     * @param kernelName the kernel name, null for the first kernel
+     * @return the kernel configuration, null when none matches
+     */
     @Nullable
-    private Server getServer() {
+    static Server findServer(@CheckForNull String kernelName) {
         List<Server> sites = IPythonGlobalConfiguration.get().getServers();
 
         if (kernelName == null && sites.size() > 0) {
@@ -200,6 +296,208 @@ public class IPythonBuilder extends Builder implements SimpleBuildStep, Serializ
         return kernelName;
     }
 
+    /**
+     * Is continue on error boolean.
+     *
+     * @return true when the remaining cells run after a failed cell
+     */
+    public boolean isContinueOnError() {
+        return continueOnError;
+    }
+
+    /**
+     * Sets continue on error. By default the remaining cells are skipped after a failed cell.
+     *
+     * @param continueOnError true to run the remaining cells after a failed cell
+     */
+    @DataBoundSetter
+    public void setContinueOnError(boolean continueOnError) {
+        this.continueOnError = continueOnError;
+    }
+
+    /**
+     * Gets parallelism.
+     *
+     * @return the number of notebooks run at a time
+     */
+    public int getParallelism() {
+        return Math.max(1, parallelism);
+    }
+
+    /**
+     * Sets the number of notebooks matching the file path which run at a time, each with a kernel of its own.
+     *
+     * @param parallelism the number of notebooks run at a time
+     */
+    @DataBoundSetter
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Gets parameters.
+     *
+     * @return the parameter matrix
+     */
+    @CheckForNull
+    public String getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Sets the parameter matrix, a JSON object of parameter names to a value or a list of values.
+     * The notebook runs once for every combination of values, with the values injected after the cell
+     * tagged parameters.
+     *
+     * @param parameters the parameter matrix
+     */
+    @DataBoundSetter
+    public void setParameters(String parameters) {
+        this.parameters = Util.fixEmptyAndTrim(parameters);
+    }
+
+    /**
+     * Is cache cells boolean.
+     *
+     * @return true when the outputs of the notebook cells are cached on the agent
+     */
+    public boolean isCacheCells() {
+        return cacheCells;
+    }
+
+    /**
+     * Sets whether the outputs of the cells of Jupyter notebooks are cached on the agent and replayed as long as
+     * the cell, the cells before it, the kernel and the input files do not change.
+     *
+     * @param cacheCells true to cache the outputs of the cells
+     */
+    @DataBoundSetter
+    public void setCacheCells(boolean cacheCells) {
+        this.cacheCells = cacheCells;
+    }
+
+    /**
+     * Is checkpoints boolean.
+     *
+     * @return true when the state of the kernel is saved after the cells tagged checkpoint
+     */
+    public boolean isCheckpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * Sets whether the state of the kernel is saved on the agent after the cells tagged checkpoint, so that a later
+     * build restores it instead of running the unchanged cells before it again. Requires the cell cache.
+     *
+     * @param checkpoints true to save checkpoints of the kernel state
+     */
+    @DataBoundSetter
+    public void setCheckpoints(boolean checkpoints) {
+        this.checkpoints = checkpoints;
+    }
+
+    /**
+     * Gets cache inputs.
+     *
+     * @return the input files of the cached cells
+     */
+    @CheckForNull
+    public String getCacheInputs() {
+        return cacheInputs;
+    }
+
+    /**
+     * Sets the files read by the notebook, a comma or newline separated list of Ant style globs relative to the
+     * workspace. A change of their content invalidates the cached cells.
+     *
+     * @param cacheInputs the input files of the cached cells
+     */
+    @DataBoundSetter
+    public void setCacheInputs(String cacheInputs) {
+        this.cacheInputs = Util.fixEmptyAndTrim(cacheInputs);
+    }
+
+    /**
+     * Gets cell batch size.
+     *
+     * @return the maximum number of consecutive cells sent to the kernel in one request
+     */
+    public int getCellBatchSize() {
+        return Math.max(1, cellBatchSize);
+    }
+
+    /**
+     * Sets the maximum number of consecutive cells without tags sent to the kernel in a single execute request.
+     * The outputs and the status are still reported per cell. One sends every cell on its own.
+     *
+     * @param cellBatchSize the maximum number of cells of a batch
+     */
+    @DataBoundSetter
+    public void setCellBatchSize(int cellBatchSize) {
+        this.cellBatchSize = cellBatchSize;
+    }
+
+    /**
+     * Gets cancel grace period.
+     *
+     * @return the seconds the kernels get to stop after an abort, before being shut down
+     */
+    public int getCancelGracePeriod() {
+        return cancelGracePeriod == null ? NotebookExecutions.DEFAULT_GRACE_PERIOD : Math.max(0, cancelGracePeriod);
+    }
+
+    /**
+     * Sets the seconds the running cells get to stop after the build is aborted. The cells are interrupted first,
+     * like a keyboard interrupt, and the kernels are shut down when they are still busy after the grace period.
+     *
+     * @param cancelGracePeriod the grace period in seconds
+     */
+    @DataBoundSetter
+    public void setCancelGracePeriod(int cancelGracePeriod) {
+        this.cancelGracePeriod = cancelGracePeriod;
+    }
+
+    /**
+     * Gets cell timeout.
+     *
+     * @return the timeout in seconds, null for the timeout of the kernel
+     */
+    @CheckForNull
+    public Long getCellTimeout() {
+        return cellTimeout;
+    }
+
+    /**
+     * Sets the time a cell may run before the kernel is interrupted, overriding the timeout of the kernel.
+     * The outputs written so far are kept and the cell is reported as timed out.
+     *
+     * @param cellTimeout the timeout in seconds, 0 for no limit, empty for the timeout of the kernel
+     */
+    @DataBoundSetter
+    public void setCellTimeout(Long cellTimeout) {
+        this.cellTimeout = cellTimeout == null ? null : Math.max(0, cellTimeout);
+    }
+
+    /**
+     * Gets notebook timeout.
+     *
+     * @return the timeout in seconds, null for the timeout of the kernel
+     */
+    @CheckForNull
+    public Long getNotebookTimeout() {
+        return notebookTimeout;
+    }
+
+    /**
+     * Sets the time the cells of a notebook may run altogether, overriding the timeout of the kernel.
+     *
+     * @param notebookTimeout the timeout in seconds, 0 for no limit, empty for the timeout of the kernel
+     */
+    @DataBoundSetter
+    public void setNotebookTimeout(Long notebookTimeout) {
+        this.notebookTimeout = notebookTimeout == null ? null : Math.max(0, notebookTimeout);
+    }
+
     /**
      * Is text boolean.
      *
@@ -270,6 +568,23 @@ public class IPythonBuilder extends Builder implements SimpleBuildStep, Serializ
             return FormValidation.ok();
         }
 
+        /**
+         * Do check parameters form validation.
+         *
+         * @param parameters the parameter matrix
+         * @return the form validation
+         */
+        public FormValidation doCheckParameters(@QueryParameter String parameters) {
+            if (Util.fixEmptyAndTrim(parameters) == null)
+                return FormValidation.ok();
+            try {
+                int variants = ParameterMatrix.expand(parameters).size();
+                return FormValidation.ok(variants + (variants == 1 ? " variant" : " variants"));
+            } catch (AbortException e) {
+                return FormValidation.error(e.getMessage());
+            }
+        }
+
         /**
          * Do fill kernel name items list box model.
          *
@@ -300,86 +615,4 @@ public class IPythonBuilder extends Builder implements SimpleBuildStep, Serializ
         }
 
     }
-
-    @Restricted(NoExternalUse.class)
-    private final class ExecutorImpl extends MasterToSlaveCallable<Result, Exception> {
-
-        private FilePath ws;
-        private TaskListener listener;
-        private IPythonUserConfig jobUserConfig;
-
-        private ExecutorImpl(FilePath ws, TaskListener ls, IPythonUserConfig cf) {
-            this.ws = ws;
-            this.listener = ls;
-            this.jobUserConfig = cf;
-        }
-
-        @Override
-        public Result call() {
-
-            try (IPythonInterpreterManager interpreterManager = new IPythonInterpreterManager(jobUserConfig)) {
-                interpreterManager.initiateInterpreter();
-                LOGGER.info("Connection initiated successfully");
-                listener.getLogger().println("Platform : " + System.getProperty("os.name").toUpperCase());
-                listener.getLogger().println("Type : " + parserType.toUpperCase());
-                listener.getLogger().println("Working directory : " + ws.getRemote());
-                if (parserType.equals("text")) {
-                    listener.getLogger().println(interpreterManager.invokeInterpreter(code, task, ws));
-                } else {
-                    if (Util.fixEmptyAndTrim(filePath) != null) {
-                        // Run builder on selected notebook
-                        String extension = filePath.substring(filePath.lastIndexOf(".") + 1);
-                        FileExtension ext;
-                        try {
-                            // assign the extension from the enum
-                            ext = FileExtension.valueOf(extension);
-                        } catch (Exception e) {
-                            ext = FileExtension.txt;
-                        }
-                        // create file path for the file
-                        FilePath tempFilePath = ws.child(filePath);
-                        listener.getLogger().println("Output : ");
-                        switch (ext) {
-                            case ipynb:
-                                /*
-                                  JENKINS-63213
-                                  interpret and save each images and html
-                                 */
-                                for (String line : ConvertHelper.jupyterToTextArray(tempFilePath)) {
-                                    listener.getLogger().println((interpreterManager.invokeInterpreter(line, task, ws)));
-                                }
-                                break;
-                            case json:
-                                // Zeppelin note book or JSON file will be interpreted line by line
-                                try (final InputStreamReader inputStreamReader = new InputStreamReader(tempFilePath.read(), Charset.forName("UTF-8"))) {
-                                    Gson gson = new GsonBuilder().create();
-                                    Note n = gson.fromJson(inputStreamReader, Note.class);
-                                    for (Paragraph para : n.getParagraphs()) {
-                                        // skipping markdowns
-                                        if (para.getConfig().get("editorMode").equals(ConvertHelper.MARKDOWN_ANNOTATION)) {
-                                            continue;
-                                        }
-                                        String code = para.getText();
-                                        listener.getLogger().println(code);
-                                        listener.getLogger().println(interpreterManager.invokeInterpreter(code, task, ws));
-                                    }
-                                }
-                                break;
-                            default:
-                                listener.getLogger().println(interpreterManager.invokeInterpreter(tempFilePath.readToString(), task, ws));
-                                return Result.SUCCESS;
-                        }
-                    } else {
-                        listener.fatalError("The file path is empty");
-                        return Result.FAILURE;
-                    }
-                }
-
-            } catch (InterruptedException | InterpreterException | IOException e) {
-                e.printStackTrace(listener.getLogger());
-                return Result.FAILURE;
-            }
-            return Result.SUCCESS;
-        }
-    }
 }
@@ -0,0 +1,729 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.TaskListener;
+import io.jenkins.plugins.ml.jupyter.KernelZygote;
+import io.jenkins.plugins.ml.model.CellResult;
+import io.jenkins.plugins.ml.model.NotebookCell;
+import io.jenkins.plugins.ml.model.NotebookResult;
+import io.jenkins.plugins.ml.utils.ConvertHelper;
+import io.jenkins.plugins.ml.utils.OutputStore;
+import io.jenkins.plugins.ml.utils.PrefixedOutputStream;
+import jenkins.security.MasterToSlaveCallable;
+import org.apache.zeppelin.interpreter.InterpreterException;
+import org.apache.zeppelin.interpreter.InterpreterResult;
+import org.apache.zeppelin.interpreter.InterpreterResultMessage;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the code or the notebooks of an IPython builder on the agent. Notebooks matching the file path, and every
+ * variant of the parameter matrix, run concurrently up to the parallelism of the builder, each with a kernel of its own.
+ */
+final class IPythonExecutor extends MasterToSlaveCallable<List<NotebookResult>, Exception> {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger.getLogger(IPythonExecutor.class.getName());
+
+    private final String job;
+    private final FilePath ws;
+    private final TaskListener listener;
+    private final IPythonUserConfig jobUserConfig;
+    private final IPythonAgentConfig agentConfig;
+    private final String code;
+    private final String filePath;
+    private final String parserType;
+    private final String task;
+    private final boolean continueOnError;
+    private final int parallelism;
+    private final boolean cacheCells;
+    private final String cacheInputs;
+    private final boolean checkpoints;
+    private final int cellBatchSize;
+    private final List<Map<String, String>> variants;
+    private final String sessionId;
+    private final int cancelGracePeriod;
+    // the kernels running notebooks, interrupted when the build is aborted
+    private transient Set<IPythonInterpreterManager> activeManagers;
+    private transient volatile boolean cancelled;
+    // shared by the notebooks of the build, null when disabled
+    private transient OutputStore outputStore;
+    // the pool of the agent unless another pool is set, e.g. with fake kernels
+    private transient KernelPool kernelPool;
+
+    IPythonExecutor(IPythonBuilder builder, String job, FilePath ws, TaskListener listener,
+                    IPythonUserConfig jobUserConfig, IPythonAgentConfig agentConfig,
+                    List<Map<String, String>> variants, String sessionId) {
+        this.job = job;
+        this.ws = ws;
+        this.listener = listener;
+        this.jobUserConfig = jobUserConfig;
+        this.agentConfig = agentConfig;
+        this.code = builder.getCode();
+        this.filePath = builder.getFilePath();
+        this.parserType = builder.getParserType();
+        this.task = builder.getTask();
+        this.continueOnError = builder.isContinueOnError();
+        this.parallelism = builder.getParallelism();
+        this.cacheCells = builder.isCacheCells();
+        this.cacheInputs = builder.getCacheInputs();
+        this.checkpoints = builder.isCheckpoints();
+        this.cellBatchSize = builder.getCellBatchSize();
+        this.variants = variants;
+        this.sessionId = sessionId;
+        this.cancelGracePeriod = builder.getCancelGracePeriod();
+    }
+
+    /**
+     * Sets the pool the kernels are borrowed from instead of the pool of the agent.
+     *
+     * @param kernelPool the kernel pool
+     */
+    void setKernelPool(KernelPool kernelPool) {
+        this.kernelPool = kernelPool;
+    }
+
+    private KernelPool getKernelPool() {
+        return kernelPool != null ? kernelPool : KernelPool.get();
+    }
+
+    @Override
+    public List<NotebookResult> call() throws InterruptedException {
+        // kernels are borrowed from the agent pool instead of being launched for every build
+        getKernelPool().configure(agentConfig);
+        PrintStream console = listener.getLogger();
+        console.println("Platform : " + System.getProperty("os.name").toUpperCase());
+        console.println("Type : " + parserType.toUpperCase());
+        console.println("Working directory : " + ws.getRemote());
+        outputStore = openOutputStore(console);
+        if (sessionId != null && !KernelSessions.acquire(sessionId)) {
+            listener.fatalError("The kernel session " + sessionId + " is running another step, the steps of a"
+                    + " withIPythonKernel block share its kernel and cannot run in parallel branches");
+            return Collections.singletonList(aborted(task));
+        }
+        try {
+            List<Target> targets = new ArrayList<>();
+            if (parserType.equals("text")) {
+                addTargets(targets, null, null);
+            } else {
+                if (Util.fixEmptyAndTrim(filePath) == null) {
+                    listener.fatalError("The file path is empty");
+                    return Collections.singletonList(aborted(task));
+                }
+                List<FilePath> notebooks = findNotebooks();
+                if (notebooks.isEmpty()) {
+                    listener.fatalError("No file matches " + filePath);
+                    return Collections.singletonList(aborted(filePath));
+                }
+                for (FilePath notebook : notebooks) {
+                    // one folder per notebook next to each other, the result action lists the folders of the workspace
+                    addTargets(targets, notebooks.size() == 1 ? null : getName(notebook), notebook);
+                }
+            }
+            if (targets.size() == 1) {
+                return Collections.singletonList(run(targets.get(0), console));
+            }
+            List<NotebookResult> results = runConcurrently(targets, console);
+            printSummary(results, console);
+            return results;
+        } finally {
+            if (sessionId != null) {
+                KernelSessions.release(sessionId);
+            }
+            if (outputStore != null && outputStore.getHits() + outputStore.getMisses() > 0) {
+                int outputs = outputStore.getHits() + outputStore.getMisses();
+                console.println("Output store : " + outputStore.getHits() + " hits, " + outputStore.getMisses()
+                        + " misses, " + (100 * outputStore.getHits() / outputs) + "% hit rate");
+            }
+            if (jobUserConfig.getPreloadModules() != null) {
+                for (String zygote : KernelZygote.describe()) {
+                    console.println(zygote);
+                }
+            }
+        }
+    }
+
+    private OutputStore openOutputStore(PrintStream console) {
+        if (agentConfig.getOutputStoreSize() == 0) {
+            return null;
+        }
+        try {
+            return OutputStore.open(agentConfig.getOutputStoreSize() * 1024 * 1024);
+        } catch (IOException e) {
+            // the outputs are still written to the task folders
+            console.println("Failed to open the output store: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Finds the files matching the file path, a comma or newline separated list of paths or Ant style globs.
+     */
+    private List<FilePath> findNotebooks() throws InterruptedException {
+        Set<FilePath> notebooks = new LinkedHashSet<>();
+        for (String pattern : filePath.split("[,\\n]+")) {
+            pattern = pattern.trim();
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            if (pattern.contains("*") || pattern.contains("?")) {
+                try {
+                    FilePath[] matches = ws.list(pattern);
+                    Arrays.sort(matches, Comparator.comparing(FilePath::getRemote));
+                    notebooks.addAll(Arrays.asList(matches));
+                } catch (IOException e) {
+                    listener.error("Failed to list " + pattern + ": " + e.getMessage());
+                }
+            } else {
+                notebooks.add(ws.child(pattern));
+            }
+        }
+        return new ArrayList<>(notebooks);
+    }
+
+    /**
+     * Adds a target for every variant of the parameter matrix.
+     *
+     * @param folder the name of the notebook folder, null to use the task folder
+     */
+    private void addTargets(List<Target> targets, String folder, FilePath notebook) {
+        String name = notebook == null ? task : getName(notebook);
+        String notebookTask = folder == null ? task
+                : task + "_" + folder.replaceAll("\\.[^.]*$", "").replaceAll("[/\\\\]", "_");
+        for (Map<String, String> parameters : variants) {
+            if (parameters.isEmpty()) {
+                targets.add(new Target(name, name, notebook, notebookTask, parameters));
+            } else {
+                targets.add(new Target(name, name + " (" + ParameterMatrix.describe(parameters) + ")", notebook,
+                        notebookTask + "_" + ParameterMatrix.toFolderName(parameters), parameters));
+            }
+        }
+    }
+
+    private List<NotebookResult> runConcurrently(List<Target> targets, PrintStream console) throws InterruptedException {
+        // the notebooks share the kernel of a session one after the other
+        int threads = sessionId != null ? 1 : Math.min(parallelism, targets.size());
+        console.println("Running " + targets.size() + " notebooks, " + threads + " at a time");
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "IPython notebook " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<NotebookResult>> futures = new ArrayList<>();
+            for (Target target : targets) {
+                futures.add(executor.submit(() -> {
+                    try (PrintStream prefixed = new PrintStream(new PrefixedOutputStream(console, "[" + target.label + "] "),
+                            true, "UTF-8")) {
+                        return run(target, prefixed);
+                    }
+                }));
+            }
+            List<NotebookResult> results = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace(console);
+                    NotebookResult result = aborted(targets.get(i).name);
+                    result.setParameters(targets.get(i).parameters);
+                    results.add(result);
+                }
+            }
+            return results;
+        } finally {
+            // interrupts the notebooks still running when the build is aborted
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the inline code or a notebook with a kernel of its own.
+     */
+    private NotebookResult run(Target target, PrintStream console) {
+        FilePath notebook = target.notebook;
+        NotebookResult result = new NotebookResult(target.name);
+        result.setParameters(target.parameters);
+        if (!target.parameters.isEmpty()) {
+            console.println("Parameters : " + ParameterMatrix.describe(target.parameters));
+        }
+        // the kernel is started by the first cell which runs, none when every cell is cached
+        IPythonInterpreterManager interpreterManager = sessionId != null ? KernelSessions.get(sessionId)
+                : new IPythonInterpreterManager(jobUserConfig, getKernelPool());
+        if (interpreterManager == null) {
+            console.println("The kernel session " + sessionId + " is closed");
+            result.setAborted(true);
+            return result;
+        }
+        if (cancelled) {
+            result.setAborted(true);
+            return result;
+        }
+        setActive(interpreterManager, true);
+        Watchdog watchdog = new Watchdog(interpreterManager, jobUserConfig.getCellTimeout(),
+                jobUserConfig.getNotebookTimeout(), cancelGracePeriod);
+        OutputWriter writer = new OutputWriter(console, target.task, OutputWriter.QUEUE_SIZE);
+        try {
+            if (notebook == null) {
+                runCells(interpreterManager, watchdog, writer, target,
+                        Collections.singletonList(new NotebookCell(0, code)), result, console, false, null, null);
+            } else {
+                console.println("Output : ");
+                String extension = notebook.getName().substring(notebook.getName().lastIndexOf(".") + 1);
+                IPythonBuilder.FileExtension ext;
+                try {
+                    // assign the extension from the enum
+                    ext = IPythonBuilder.FileExtension.valueOf(extension);
+                } catch (Exception e) {
+                    ext = IPythonBuilder.FileExtension.txt;
+                }
+                switch (ext) {
+                    case ipynb:
+                        /*
+                          JENKINS-63213
+                          interpret and save each images and html
+                         */
+                        CellCache cache = cacheCells
+                                ? CellCache.open(agentConfig, job, jobUserConfig.getkernel(), ws, cacheInputs) : null;
+                        KernelCheckpoints kernelCheckpoints = cacheCells && checkpoints
+                                ? KernelCheckpoints.open(agentConfig) : null;
+                        runCells(interpreterManager, watchdog, writer, target, ConvertHelper.jupyterToCells(notebook),
+                                result, console, false, cache, kernelCheckpoints);
+                        if (cache != null) {
+                            console.println("Cell cache : " + cache.getHits() + " hits, " + cache.getMisses() + " misses");
+                        }
+                        break;
+                    case json:
+                        // Zeppelin note book or JSON file will be interpreted line by line
+                        runCells(interpreterManager, watchdog, writer, target, ConvertHelper.zeppelinToCells(notebook),
+                                result, console, true, null, null);
+                        break;
+                    default:
+                        runCells(interpreterManager, watchdog, writer, target,
+                                Collections.singletonList(new NotebookCell(0, notebook.readToString())), result,
+                                console, false, null, null);
+                        break;
+                }
+            }
+        } catch (InterruptedException | InterpreterException | IOException e) {
+            e.printStackTrace(console);
+            result.setAborted(true);
+        } finally {
+            watchdog.close();
+            // every image and HTML is on disk before the results are read
+            writer.close();
+            setActive(interpreterManager, false);
+            // the kernel of a session lives until the end of the block
+            if (sessionId == null) {
+                interpreterManager.close();
+            }
+        }
+        CellResult failedCell = result.getFailedCell();
+        console.println("Ran " + result.getCells().size() + " of " + result.getTotalCells() + " cells in "
+                + Util.getTimeSpanString(result.getDuration())
+                + (failedCell != null ? ", cell " + failedCell.getIndex() + " failed" : ""));
+        return result;
+    }
+
+    /**
+     * Runs the cells in order and stops at the first failed cell unless the builder continues on errors.
+     * Cells found in the cache are replayed, and their state is restored only when a later cell has to run.
+     */
+    private void runCells(IPythonInterpreterManager interpreterManager, Watchdog watchdog, OutputWriter writer,
+                          Target target, List<NotebookCell> notebookCells, NotebookResult result, PrintStream console,
+                          boolean echoSource, CellCache cache, KernelCheckpoints checkpoints)
+            throws InterpreterException {
+        List<NotebookCell> cells = ParameterMatrix.inject(notebookCells, target.parameters);
+        result.setTotalCells(cells.size());
+        String[] keys = new String[cells.size()];
+        // positions of the replayed cells whose state is not in the kernel yet
+        List<Integer> replayedCells = new ArrayList<>();
+        for (int i = 0; i < cells.size(); i++) {
+            if (cancelled) {
+                console.println("Cancelled, skipping the remaining " + (cells.size() - i) + " cells");
+                result.setAborted(true);
+                return;
+            }
+            if (watchdog.getExpired() != null) {
+                // fired between cells, or the interrupted cell did not fail, the notebook did not finish in time
+                result.addCell(new CellResult(cells.get(i).getIndex(), CellResult.Status.TIMEOUT, 0));
+                console.println("Skipping the remaining " + (cells.size() - i) + " cells after the "
+                        + watchdog.getExpired());
+                return;
+            }
+            NotebookCell cell = cells.get(i);
+            if (cell.hasTag(NotebookCell.TAG_SKIP_EXECUTION)) {
+                result.addCell(new CellResult(cell.getIndex(), CellResult.Status.SKIPPED, 0));
+                continue;
+            }
+            // cached cells have outputs of their own, they never run in batches
+            int batchEnd = cache == null && cellBatchSize > 1 ? CellBatch.end(cells, i, cellBatchSize) : i;
+            if (batchEnd - i > 1) {
+                startKernel(interpreterManager);
+                List<CellResult> batchResults = runBatch(interpreterManager, watchdog, writer, target,
+                        new CellBatch(cells.subList(i, batchEnd)), console, echoSource);
+                boolean failed = false;
+                for (CellResult cellResult : batchResults) {
+                    // the cell running when the timeout fired is the last one of the batch
+                    if (cellResult.getStatus() == CellResult.Status.ERROR && watchdog.getExpired() != null
+                            && cellResult == batchResults.get(batchResults.size() - 1)) {
+                        cellResult = new CellResult(cellResult.getIndex(), CellResult.Status.TIMEOUT,
+                                cellResult.getDuration());
+                        console.println("Cell " + cellResult.getIndex() + " interrupted after the "
+                                + watchdog.getExpired());
+                        failed = true;
+                    }
+                    result.addCell(cellResult);
+                    if (cellResult.getStatus() == CellResult.Status.ERROR) {
+                        console.println("Cell " + cellResult.getIndex() + " failed after "
+                                + Util.getTimeSpanString(cellResult.getDuration()));
+                        failed = true;
+                    }
+                }
+                if (failed && (!continueOnError || watchdog.getExpired() != null)) {
+                    console.println("Skipping the remaining " + (cells.size() - i - batchResults.size()) + " cells");
+                    return;
+                }
+                i = batchEnd - 1;
+                continue;
+            }
+            if (echoSource) {
+                console.println(cell.getSource());
+            }
+            ConsoleOutputListener listener = new ConsoleOutputListener(console, target.task, ws, writer, outputStore);
+            listener.limitOutput(jobUserConfig.getCellOutputLimit(), jobUserConfig.getMaxResult());
+            listener.startOutput("cell-" + cell.getIndex());
+            String key = cache != null ? cache.nextKey(cell) : null;
+            if (key != null && !cell.hasTag(CellCache.TAG_NO_CACHE)) {
+                keys[i] = key;
+                List<InterpreterResultMessage> outputs = cache.get(key);
+                if (outputs != null) {
+                    listener.replay(outputs);
+                    result.addCell(new CellResult(cell.getIndex(), CellResult.Status.CACHED, 0));
+                    replayedCells.add(i);
+                    continue;
+                }
+                listener.record();
+            } else {
+                key = null;
+            }
+            startKernel(interpreterManager);
+            if (!replayedCells.isEmpty()) {
+                NotebookCell failedCell;
+                watchdog.startCell();
+                try {
+                    failedCell = restore(interpreterManager, cells, keys, replayedCells, checkpoints, console);
+                } finally {
+                    watchdog.endCell();
+                }
+                replayedCells.clear();
+                if (failedCell != null) {
+                    result.addCell(new CellResult(failedCell.getIndex(), CellResult.Status.ERROR, 0));
+                    console.println("Cell " + failedCell.getIndex() + " failed while restoring the kernel state");
+                    return;
+                }
+            }
+            long start = System.nanoTime();
+            InterpreterResult cellResult = invoke(interpreterManager, watchdog, cell.getSource(), listener, console);
+            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (watchdog.getExpired() != null && cellResult.code() == InterpreterResult.Code.ERROR) {
+                // the outputs written before the interrupt are kept
+                result.addCell(new CellResult(cell.getIndex(), CellResult.Status.TIMEOUT, duration));
+                console.println("Cell " + cell.getIndex() + " interrupted after the " + watchdog.getExpired());
+                console.println("Skipping the remaining " + (cells.size() - i - 1) + " cells");
+                return;
+            } else if (cellResult.code() != InterpreterResult.Code.ERROR) {
+                List<InterpreterResultMessage> outputs = listener.getRecorded();
+                if (key != null && outputs != null) {
+                    cache.put(key, outputs);
+                }
+                result.addCell(new CellResult(cell.getIndex(), CellResult.Status.SUCCESS, duration));
+                if (key != null && checkpoints != null && cell.hasTag(KernelCheckpoints.TAG_CHECKPOINT)) {
+                    // pickling a large state may hang as well
+                    watchdog.startCell();
+                    try {
+                        checkpoints.save(interpreterManager, key, cell.getIndex(), console);
+                    } finally {
+                        watchdog.endCell();
+                    }
+                }
+            } else if (cell.hasTag(NotebookCell.TAG_RAISES_EXCEPTION)) {
+                result.addCell(new CellResult(cell.getIndex(), CellResult.Status.EXPECTED_ERROR, duration));
+            } else {
+                result.addCell(new CellResult(cell.getIndex(), CellResult.Status.ERROR, duration));
+                console.println("Cell " + cell.getIndex() + " failed after " + Util.getTimeSpanString(duration));
+                if (!continueOnError) {
+                    console.println("Skipping the remaining " + (cells.size() - i - 1) + " cells");
+                    return;
+                }
+            }
+        }
+    }
+
+    private synchronized void setActive(IPythonInterpreterManager interpreterManager, boolean active) {
+        if (activeManagers == null) {
+            activeManagers = new HashSet<>();
+        }
+        if (active) {
+            activeManagers.add(interpreterManager);
+        } else {
+            activeManagers.remove(interpreterManager);
+        }
+    }
+
+    private synchronized List<IPythonInterpreterManager> getActiveManagers() {
+        return activeManagers == null ? Collections.emptyList() : new ArrayList<>(activeManagers);
+    }
+
+    /**
+     * Interrupts the cells running in the kernels, no further cell runs.
+     */
+    void interrupt() {
+        cancelled = true;
+        for (IPythonInterpreterManager interpreterManager : getActiveManagers()) {
+            try {
+                interpreterManager.cancel();
+            } catch (InterpreterException e) {
+                LOGGER.log(Level.WARNING, "Failed to interrupt the kernel", e);
+            }
+        }
+    }
+
+    /**
+     * Shuts the kernels down, for cells ignoring the interrupt. Pooled kernels are not reused.
+     */
+    void kill() {
+        cancelled = true;
+        for (IPythonInterpreterManager interpreterManager : getActiveManagers()) {
+            interpreterManager.kill();
+        }
+    }
+
+    /**
+     * Runs code under the cell timeout. The kernel may be shut down when the code ignores the interrupt, the code
+     * then fails like an interrupted cell.
+     */
+    private static InterpreterResult invoke(IPythonInterpreterManager interpreterManager, Watchdog watchdog,
+                                            String code, ConsoleOutputListener listener, PrintStream console)
+            throws InterpreterException {
+        watchdog.startCell();
+        try {
+            return interpreterManager.invokeInterpreter(code, listener, console);
+        } catch (InterpreterException e) {
+            if (watchdog.getExpired() == null) {
+                throw e;
+            }
+            return new InterpreterResult(InterpreterResult.Code.ERROR, e.getMessage());
+        } finally {
+            watchdog.endCell();
+        }
+    }
+
+    private static void startKernel(IPythonInterpreterManager interpreterManager) throws InterpreterException {
+        if (!interpreterManager.isInitiated()) {
+            interpreterManager.initiateInterpreter();
+            LOGGER.info("Connection initiated successfully");
+        }
+    }
+
+    /**
+     * Runs a batch of cells in a single execute request.
+     *
+     * @return the results of the cells which ran
+     */
+    private List<CellResult> runBatch(IPythonInterpreterManager interpreterManager, Watchdog watchdog,
+                                      OutputWriter writer, Target target, CellBatch batch, PrintStream console,
+                                      boolean echoSource)
+            throws InterpreterException {
+        String code;
+        try {
+            code = batch.toCode(IPythonInterpreterManager.readKernelScript(CellBatch.SCRIPT), !continueOnError);
+        } catch (IOException e) {
+            throw new InterpreterException(e);
+        }
+        ConsoleOutputListener listener = new ConsoleOutputListener(console, target.task, ws, writer, outputStore);
+        listener.limitOutput(jobUserConfig.getCellOutputLimit(), jobUserConfig.getMaxResult());
+        listener.onMarker(marker -> {
+            NotebookCell cell = batch.onMarker(marker);
+            if (cell != null) {
+                listener.startOutput("cell-" + cell.getIndex());
+                // every cell of the batch gets the full cell timeout
+                watchdog.startCell();
+                if (echoSource) {
+                    console.println(cell.getSource());
+                }
+            }
+        });
+        InterpreterResult batchResult = invoke(interpreterManager, watchdog, code, listener, console);
+        return batch.getResults(batchResult.code() == InterpreterResult.Code.ERROR);
+    }
+
+    /**
+     * Restores the state the next cell depends on. The newest checkpoint of the replayed cells is loaded in the kernel
+     * and the replayed cells after it run again without output, all of them when no checkpoint can be restored.
+     *
+     * @return the cell which failed, null when the state is restored
+     */
+    static NotebookCell restore(IPythonInterpreterManager interpreterManager, List<NotebookCell> cells,
+                                String[] keys, List<Integer> replayedCells, KernelCheckpoints checkpoints,
+                                PrintStream console) throws InterpreterException {
+        int first = 0;
+        for (int i = replayedCells.size() - 1; checkpoints != null && i >= 0; i--) {
+            int position = replayedCells.get(i);
+            NotebookCell cell = cells.get(position);
+            if (cell.hasTag(KernelCheckpoints.TAG_CHECKPOINT) && checkpoints.contains(keys[position])) {
+                if (checkpoints.restore(interpreterManager, keys[position], cell.getIndex(), console)) {
+                    console.println("Restored the kernel state from the checkpoint of cell " + cell.getIndex());
+                    first = i + 1;
+                }
+                // an older checkpoint saves less than running the cells again from the start
+                break;
+            }
+        }
+        if (first < replayedCells.size()) {
+            console.println("Running " + (replayedCells.size() - first) + " cached cells again to restore the kernel state");
+        }
+        for (int position : replayedCells.subList(first, replayedCells.size())) {
+            NotebookCell cell = cells.get(position);
+            if (interpreterManager.invokeInterpreterSilently(cell.getSource()).code() == InterpreterResult.Code.ERROR) {
+                return cell;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Prints a table of the results of the notebooks, one row per notebook and variant.
+     */
+    private void printSummary(List<NotebookResult> results, PrintStream console) {
+        List<String> columns = new ArrayList<>();
+        columns.add("Notebook");
+        for (Map<String, String> parameters : variants) {
+            for (String parameter : parameters.keySet()) {
+                if (!columns.contains(parameter)) {
+                    columns.add(parameter);
+                }
+            }
+        }
+        columns.add("Status");
+        columns.add("Cells");
+        columns.add("Duration");
+        List<List<String>> rows = new ArrayList<>();
+        for (NotebookResult result : results) {
+            Map<String, String> row = new LinkedHashMap<>(result.getParameters());
+            row.put("Notebook", result.getNotebook());
+            CellResult failedCell = result.getFailedCell();
+            row.put("Status", result.isAborted() ? "ABORTED"
+                    : failedCell != null ? "FAILED at cell " + failedCell.getIndex() : "SUCCESS");
+            row.put("Cells", result.getCells().size() + "/" + result.getTotalCells());
+            row.put("Duration", Util.getTimeSpanString(result.getDuration()));
+            List<String> values = new ArrayList<>();
+            for (String column : columns) {
+                values.add(row.getOrDefault(column, ""));
+            }
+            rows.add(values);
+        }
+        int[] widths = new int[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            widths[i] = columns.get(i).length();
+            for (List<String> row : rows) {
+                widths[i] = Math.max(widths[i], row.get(i).length());
+            }
+        }
+        console.println("Summary : ");
+        console.println(formatRow(columns, widths));
+        for (List<String> row : rows) {
+            console.println(formatRow(row, widths));
+        }
+    }
+
+    private static String formatRow(List<String> values, int[] widths) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < values.size(); i++) {
+            line.append(String.format("%-" + widths[i] + "s", values.get(i)));
+            if (i < values.size() - 1) {
+                line.append(" | ");
+            }
+        }
+        return line.toString();
+    }
+
+    private String getName(FilePath notebook) {
+        String remote = notebook.getRemote();
+        String root = ws.getRemote();
+        if (remote.startsWith(root) && remote.length() > root.length()) {
+            return remote.substring(root.length() + 1);
+        }
+        return remote;
+    }
+
+    private static NotebookResult aborted(String name) {
+        NotebookResult result = new NotebookResult(name);
+        result.setAborted(true);
+        return result;
+    }
+
+    /**
+     * A notebook, or the inline code, run with the parameters of a variant.
+     */
+    private static final class Target {
+        private final String name;
+        private final String label;
+        private final FilePath notebook;
+        private final String task;
+        private final Map<String, String> parameters;
+
+        private Target(String name, String label, FilePath notebook, String task, Map<String, String> parameters) {
+            this.name = name;
+            this.label = label;
+            this.notebook = notebook;
+            this.task = task;
+            this.parameters = parameters;
+        }
+    }
+}
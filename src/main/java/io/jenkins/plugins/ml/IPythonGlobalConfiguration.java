@@ -45,6 +45,12 @@ public class IPythonGlobalConfiguration extends GlobalConfiguration {
 
     public List<Server> servers = new PersistedList<>(this);
 
+    private int kernelPoolMaxSize = IPythonAgentConfig.DEFAULT_KERNEL_POOL_MAX_SIZE;
+    private int kernelPoolMinIdle = IPythonAgentConfig.DEFAULT_KERNEL_POOL_MIN_IDLE;
+    private long kernelPoolIdleTimeout = IPythonAgentConfig.DEFAULT_KERNEL_POOL_IDLE_TIMEOUT;
+    private long cellCacheSize = IPythonAgentConfig.DEFAULT_CELL_CACHE_SIZE;
+    private long outputStoreSize = IPythonAgentConfig.DEFAULT_OUTPUT_STORE_SIZE;
+
     public IPythonGlobalConfiguration() {
         load();
     }
@@ -58,4 +64,64 @@ public class IPythonGlobalConfiguration extends GlobalConfiguration {
         this.servers = servers;
         save();
     }
+
+    public int getKernelPoolMaxSize() {
+        return kernelPoolMaxSize;
+    }
+
+    @DataBoundSetter
+    public void setKernelPoolMaxSize(int kernelPoolMaxSize) {
+        this.kernelPoolMaxSize = kernelPoolMaxSize;
+        save();
+    }
+
+    public int getKernelPoolMinIdle() {
+        return kernelPoolMinIdle;
+    }
+
+    @DataBoundSetter
+    public void setKernelPoolMinIdle(int kernelPoolMinIdle) {
+        this.kernelPoolMinIdle = kernelPoolMinIdle;
+        save();
+    }
+
+    public long getKernelPoolIdleTimeout() {
+        return kernelPoolIdleTimeout;
+    }
+
+    @DataBoundSetter
+    public void setKernelPoolIdleTimeout(long kernelPoolIdleTimeout) {
+        this.kernelPoolIdleTimeout = kernelPoolIdleTimeout;
+        save();
+    }
+
+    public long getCellCacheSize() {
+        return cellCacheSize;
+    }
+
+    @DataBoundSetter
+    public void setCellCacheSize(long cellCacheSize) {
+        this.cellCacheSize = cellCacheSize;
+        save();
+    }
+
+    public long getOutputStoreSize() {
+        return outputStoreSize;
+    }
+
+    @DataBoundSetter
+    public void setOutputStoreSize(long outputStoreSize) {
+        this.outputStoreSize = outputStoreSize;
+        save();
+    }
+
+    /**
+     * Settings sent to the agents along with the build steps.
+     *
+     * @return the agent configuration
+     */
+    public IPythonAgentConfig getAgentConfig() {
+        return new IPythonAgentConfig(kernelPoolMaxSize, kernelPoolMinIdle, kernelPoolIdleTimeout, cellCacheSize,
+                outputStoreSize);
+    }
 }
@@ -25,17 +25,24 @@
 package io.jenkins.plugins.ml;
 
 import hudson.FilePath;
-import io.jenkins.plugins.ml.utils.Dumper;
+import org.apache.commons.io.IOUtils;
 import org.apache.zeppelin.interpreter.Interpreter;
 import org.apache.zeppelin.interpreter.InterpreterException;
 import org.apache.zeppelin.interpreter.InterpreterGroup;
+import org.apache.zeppelin.interpreter.InterpreterOutput;
+import org.apache.zeppelin.interpreter.InterpreterOutputListener;
+import org.apache.zeppelin.interpreter.InterpreterResult;
 import org.apache.zeppelin.interpreter.InterpreterResultMessage;
+import org.apache.zeppelin.interpreter.InterpreterResultMessageOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Concrete Factory for IPython interpreter
@@ -46,8 +53,10 @@ public class IPythonInterpreterManager extends InterpreterManager {
     private static final InterpreterGroup mockInterpreterGroup = new InterpreterGroup();
     private static int sessionId = 0;
 
-    private KernelInterpreter kernelInterpreter;
+    // taken once by close() or kill(), so a kernel is either returned or shut down
+    private final AtomicReference<KernelInterpreter> kernelInterpreter = new AtomicReference<>();
     private IPythonUserConfig userConfig;
+    private final KernelPool kernelPool;
 
     /**
      * Instantiates a new Python interpreter manager.
@@ -55,8 +64,18 @@ public class IPythonInterpreterManager extends InterpreterManager {
      * @param userConfig the user configuration
      */
     IPythonInterpreterManager(IPythonUserConfig userConfig) {
+        this(userConfig, null);
+    }
+
+    /**
+     * Instantiates a new Python interpreter manager which borrows its kernel from a pool.
+     *
+     * @param userConfig the user configuration
+     * @param kernelPool the kernel pool, or null to launch a dedicated kernel
+     */
+    IPythonInterpreterManager(IPythonUserConfig userConfig, KernelPool kernelPool) {
         this.userConfig = userConfig;
-        mockInterpreterGroup.put("session_" + sessionId, new ArrayList<Interpreter>());
+        this.kernelPool = kernelPool;
     }
 
     /**
@@ -64,21 +83,82 @@ public class IPythonInterpreterManager extends InterpreterManager {
      * @return interpreter instance
      */
     @Override
-    synchronized KernelInterpreter createInterpreter() {
-        kernelInterpreter = new IPythonKernelInterpreter(this.userConfig);
+    KernelInterpreter createInterpreter() {
+        KernelInterpreter interpreter = newKernelInterpreter(this.userConfig);
+        kernelInterpreter.set(interpreter);
+        return interpreter;
+    }
+
+    /**
+     * Creates a new IPythonKernelInterpreter registered in the interpreter group.
+     *
+     * @param userConfig the user configuration
+     * @return interpreter instance, not started yet
+     */
+    static synchronized KernelInterpreter newKernelInterpreter(IPythonUserConfig userConfig) {
+        IPythonKernelInterpreter kernelInterpreter = new IPythonKernelInterpreter(userConfig);
 
         // zeppelin api for interpreter
-        Interpreter interpreter = ((IPythonKernelInterpreter) kernelInterpreter).getInterpreter();
-        mockInterpreterGroup.get("session_"+sessionId).add(interpreter);
+        Interpreter interpreter = kernelInterpreter.getInterpreter();
+        mockInterpreterGroup.put("session_" + sessionId, new ArrayList<Interpreter>());
+        mockInterpreterGroup.get("session_" + sessionId).add(interpreter);
         interpreter.setInterpreterGroup(mockInterpreterGroup);
-        sessionId +=1 ;
+        sessionId += 1;
         return kernelInterpreter;
     }
 
     @Override
     void initiateInterpreter() throws InterpreterException {
-        kernelInterpreter = createInterpreter();
-        kernelInterpreter.start();
+        if (kernelPool != null) {
+            kernelInterpreter.set(kernelPool.borrow(userConfig));
+            return;
+        }
+        try {
+            KernelPool.start(createInterpreter());
+        } catch (InterpreterException | RuntimeException e) {
+            close();
+            throw new InterpreterException("Failed to launch " + userConfig.getkernel() + " kernel", e);
+        }
+    }
+
+    /**
+     * Whether the kernel is started, the kernel may be started lazily when the first cell is not cached.
+     *
+     * @return true once {@link #initiateInterpreter()} succeeded
+     */
+    boolean isInitiated() {
+        return kernelInterpreter.get() != null;
+    }
+
+    /**
+     * Interrupts the code running in the kernel.
+     *
+     * @throws InterpreterException when the kernel cannot be reached
+     */
+    void cancel() throws InterpreterException {
+        KernelInterpreter interpreter = kernelInterpreter.get();
+        if (interpreter != null) {
+            interpreter.cancel();
+        }
+    }
+
+    /**
+     * Shuts the kernel down while code may still run in it, a pooled kernel is not returned to the pool.
+     */
+    void kill() {
+        KernelInterpreter interpreter = kernelInterpreter.getAndSet(null);
+        if (interpreter == null) {
+            return;
+        }
+        if (kernelPool != null) {
+            kernelPool.discard(userConfig, interpreter);
+            return;
+        }
+        try {
+            interpreter.shutdown();
+        } catch (InterpreterException e) {
+            LOGGER.trace("Failed to kill interpreter", e);
+        }
     }
 
     @Override
@@ -89,56 +169,93 @@ public class IPythonInterpreterManager extends InterpreterManager {
     @Override
     boolean testConnection() throws IOException, InterpreterException {
         // Note : August 24 is the first release date
-        String result = kernelInterpreter.interpretCode("24").toString();
+        String result = getKernelInterpreter().interpretCode("24").toString();
         return result.contains("24");
     }
 
     /**
-     * Invoke interpreter to execute code. This method checks for HTML/Image outputs and save it under @param task.
-     * Code may produce multiple html or images that is handled in this method.
+     * Invoke interpreter to execute code. Text outputs are streamed to the console while the code runs, HTML/Image
+     * outputs are saved under @param task as soon as they are complete.
      *
      * @param code      the code
      * @param task      the task
      * @param workspace the workspace
-     * @return the string for text outputs
+     * @param console   the console of the build
+     * @return the result of the code
+     * @throws InterpreterException the interpreter exception
+     */
+    protected InterpreterResult invokeInterpreter(String code, String task, FilePath workspace, PrintStream console)
+            throws InterpreterException {
+        return invokeInterpreter(code, new ConsoleOutputListener(console, task, workspace), console);
+    }
+
+    /**
+     * Invoke interpreter to execute code, the outputs go through the given listener.
+     *
+     * @param code     the code
+     * @param listener the listener writing the outputs
+     * @param console  the console of the build
+     * @return the result of the code
      * @throws InterpreterException the interpreter exception
-     * @throws IOException          the io exception
-     * @throws InterruptedException the interrupted exception
      */
-    protected String invokeInterpreter(String code, String task, FilePath workspace)
-            throws InterpreterException, IOException, InterruptedException {
-        List<InterpreterResultMessage> interpreterResultMessages = kernelInterpreter.interpretCode(code);
-        if (interpreterResultMessages == null) {
-            return "";
+    InterpreterResult invokeInterpreter(String code, ConsoleOutputListener listener, PrintStream console)
+            throws InterpreterException {
+        InterpreterResult result = getKernelInterpreter().interpretCode(code, listener);
+        // e.g. the kernel exited abnormally
+        for (InterpreterResultMessage message : result.message()) {
+            console.println(message.getData());
         }
-        boolean containsHTML = false;
-        StringBuilder strTEXTBuild = new StringBuilder();
-        StringBuilder strHTMLBuild = new StringBuilder();
-        for (InterpreterResultMessage interpreterResultMessage : interpreterResultMessages) {
-            switch (interpreterResultMessage.getType()) {
-                case HTML:
-                    strHTMLBuild.append(interpreterResultMessage.getData());
-                    containsHTML = true;
-                    break;
-                case IMG:
-                    Dumper.dumpImage(interpreterResultMessage.getData(), task, workspace);
-                    strTEXTBuild.append("Image added to ").append(task);
-                    strTEXTBuild.append('\n');
-                    break;
-                case TEXT:
-                    strTEXTBuild.append(interpreterResultMessage.getData());
-                    strTEXTBuild.append('\n');
-                    break;
-                default:
-                    strTEXTBuild.append("\n");
-                    break;
+        return result;
+    }
+
+    /**
+     * Executes code without writing its outputs, e.g. to restore the state of the kernel.
+     *
+     * @param code the code
+     * @return the result of the code
+     * @throws InterpreterException the interpreter exception
+     */
+    InterpreterResult invokeInterpreterSilently(String code) throws InterpreterException {
+        return getKernelInterpreter().interpretCode(code, new InterpreterOutputListener() {
+            @Override
+            public void onUpdateAll(InterpreterOutput out) {
+            }
+
+            @Override
+            public void onAppend(int index, InterpreterResultMessageOutput out, byte[] line) {
+                out.clear();
+            }
+
+            @Override
+            public void onUpdate(int index, InterpreterResultMessageOutput out) {
+                out.clear();
             }
+        });
+    }
+
+    private KernelInterpreter getKernelInterpreter() throws InterpreterException {
+        KernelInterpreter interpreter = kernelInterpreter.get();
+        if (interpreter == null) {
+            // e.g. killed after the build was aborted
+            throw new InterpreterException("The kernel was shut down");
         }
-        if (containsHTML) {
-            Dumper.dumpHtml(strHTMLBuild.toString(), task, workspace);
-            strTEXTBuild.append("HTML added to ").append(task);
+        return interpreter;
+    }
+
+    /**
+     * Reads a python script sent to the kernel along with the code of the cells.
+     *
+     * @param name the name of the script, relative to this class
+     * @return the script
+     * @throws IOException when the script cannot be read
+     */
+    static String readKernelScript(String name) throws IOException {
+        try (InputStream in = IPythonInterpreterManager.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException(name + " is missing");
+            }
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
         }
-        return strTEXTBuild.toString();
     }
 
     /**
@@ -152,8 +269,16 @@ public class IPythonInterpreterManager extends InterpreterManager {
 
     @Override
     public void close() {
+        KernelInterpreter interpreter = kernelInterpreter.getAndSet(null);
+        if (interpreter == null) {
+            return;
+        }
+        if (kernelPool != null) {
+            kernelPool.release(userConfig, interpreter);
+            return;
+        }
         try {
-            kernelInterpreter.shutdown();
+            interpreter.shutdown();
         } catch (InterpreterException e) {
             LOGGER.trace("Failed to close interpreter", e);
         }
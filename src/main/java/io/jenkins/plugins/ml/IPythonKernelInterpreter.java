@@ -68,6 +68,13 @@ public class IPythonKernelInterpreter implements KernelInterpreter  {
         properties.setProperty("zeppelin.py4j.useAuth","false");
         // Hack to change the working directory
         properties.setProperty("jenkins.plugin.working.directory", workingDirectory);
+        properties.setProperty("jenkins.plugin.kernel.prerequisite.skip", String.valueOf(userConfig.isSkipPrerequisiteCheck()));
+        properties.setProperty("zeppelin.jupyter.kernel.grpc.message_size", String.valueOf(userConfig.getMaxInboundMessageSize()));
+        properties.setProperty("jenkins.plugin.kernel.grpc.flow_control_window", String.valueOf(userConfig.getFlowControlWindow()));
+        properties.setProperty("jenkins.plugin.kernel.grpc.keepalive_time", String.valueOf(userConfig.getKeepAliveTime()));
+        if (userConfig.getPreloadModules() != null) {
+            properties.setProperty("jenkins.plugin.kernel.preload", userConfig.getPreloadModules());
+        }
 
         // Initiate a Lazy interpreter
         interpreter = new LazyOpenInterpreter(new JupyterInterpreter(properties));
@@ -82,7 +89,7 @@ public class IPythonKernelInterpreter implements KernelInterpreter  {
      */
     @Override
     public List<InterpreterResultMessage> interpretCode(String code) throws IOException, InterpreterException {
-        InterpreterContext context = getInterpreterContext();
+        InterpreterContext context = getInterpreterContext(new InterpreterOutput(null));
         interpreter.interpret(code, context);
         List<InterpreterResultMessage> rst = context.out.toInterpreterResultMessage();
 
@@ -92,6 +99,25 @@ public class IPythonKernelInterpreter implements KernelInterpreter  {
         return null;
     }
 
+    /**
+     * Interprets the code, the output is passed to the listener while the code runs instead of being collected.
+     * @param code - python code to be executed
+     * @param outputListener - listener of the output, notified with onUpdateAll once the code is finished
+     * @return the result of the interpreted code
+     */
+    @Override
+    public InterpreterResult interpretCode(String code, InterpreterOutputListener outputListener) throws InterpreterException {
+        InterpreterContext context = getInterpreterContext(new InterpreterOutput(outputListener));
+        InterpreterResult result = interpreter.interpret(code, context);
+        try {
+            context.out.flush();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to flush the interpreter output", e);
+        }
+        outputListener.onUpdateAll(context.out);
+        return result;
+    }
+
     public void start() throws InterpreterException {
         interpreter.open();
     }
@@ -101,18 +127,26 @@ public class IPythonKernelInterpreter implements KernelInterpreter  {
         interpreter.close();
     }
 
+    /**
+     * Sends a cancel request to the kernel, which interrupts the running code.
+     */
+    @Override
+    public void cancel() throws InterpreterException {
+        interpreter.cancel(getInterpreterContext(new InterpreterOutput(null)));
+    }
+
     @Override
     public String toString() {
         return "IPython Interpreter";
     }
 
-    private InterpreterContext getInterpreterContext() {
+    private InterpreterContext getInterpreterContext(InterpreterOutput interpreterOutput) {
         Map<String, String> localProperties = new HashMap<>();
         localProperties.put("kernel", kernel);
         return InterpreterContext.builder()
                 .setNoteId("noteId")
                 .setParagraphId("paragraphId")
-                .setInterpreterOut(new InterpreterOutput(null))
+                .setInterpreterOut(interpreterOutput)
                 .setLocalProperties(localProperties)
                 .setResourcePool(resourcePool)
                 .build();
@@ -0,0 +1,67 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import java.io.Serializable;
+
+/**
+ * Context of the steps nested in a withIPythonKernel block, pointing to the kernel session on the agent.
+ */
+public class IPythonKernelSession implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String id;
+    private final String kernel;
+
+    /**
+     * Instantiates a new kernel session.
+     *
+     * @param id     the id of the session on the agent
+     * @param kernel the kernel name
+     */
+    public IPythonKernelSession(String id, String kernel) {
+        this.id = id;
+        this.kernel = kernel;
+    }
+
+    /**
+     * Gets id.
+     *
+     * @return the id of the session on the agent
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets kernel.
+     *
+     * @return the kernel name
+     */
+    public String getKernel() {
+        return kernel;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import com.google.common.collect.ImmutableSet;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Util;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import org.jenkinsci.plugins.workflow.steps.BodyExecution;
+import org.jenkinsci.plugins.workflow.steps.BodyExecutionCallback;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.Set;
+
+/**
+ * Pipeline block step keeping one kernel alive on the agent for the ipython steps nested in it, so that the state
+ * loaded by a step is available to the next ones. The kernel is shut down when the block exits or is aborted.
+ * <pre>
+ * withIPythonKernel(kernel: 'python3') {
+ *     ipython code: 'df = load()'
+ *     ipython filePath: 'train.ipynb', task: 'Training'
+ * }
+ * </pre>
+ */
+public class IPythonKernelStep extends Step {
+
+    private final String kernel;
+
+    /**
+     * Instantiates a new kernel block step.
+     *
+     * @param kernel the kernel name, the first kernel when empty
+     */
+    @DataBoundConstructor
+    public IPythonKernelStep(String kernel) {
+        this.kernel = Util.fixEmptyAndTrim(kernel);
+    }
+
+    /**
+     * Gets kernel.
+     *
+     * @return the kernel name
+     */
+    @CheckForNull
+    public String getKernel() {
+        return kernel;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) {
+        return new Execution(context, kernel);
+    }
+
+    private static final class Execution extends StepExecution {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String kernel;
+        private String sessionId;
+        private transient BodyExecution body;
+
+        private Execution(StepContext context, String kernel) {
+            super(context);
+            this.kernel = kernel;
+        }
+
+        @Override
+        public boolean start() throws Exception {
+            Server server = IPythonBuilder.findServer(kernel);
+            if (server == null) {
+                throw new AbortException("No valid kernel exist for " + kernel);
+            }
+            FilePath ws = getContext().get(FilePath.class);
+            TaskListener listener = getContext().get(TaskListener.class);
+            sessionId = getChannel(getContext()).call(new KernelSessions.Open(server.toUserConfig(ws.getRemote())));
+            listener.getLogger().println("Started kernel " + server.getKernel() + " for the block");
+            body = getContext().newBodyInvoker()
+                    .withContext(new IPythonKernelSession(sessionId, server.getKernel()))
+                    .withCallback(new CloseSession(sessionId))
+                    .start();
+            return false;
+        }
+
+        @Override
+        public void stop(@Nonnull Throwable cause) throws Exception {
+            // shutting the kernel down first interrupts the cell running in it
+            if (sessionId != null) {
+                CloseSession.close(getContext(), sessionId);
+            }
+            if (body != null) {
+                body.cancel(cause);
+            } else {
+                super.stop(cause);
+            }
+        }
+    }
+
+    /**
+     * Shuts the kernel down once the body is done, whether it succeeded, failed or was aborted.
+     */
+    private static final class CloseSession extends BodyExecutionCallback.TailCall {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String sessionId;
+
+        private CloseSession(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        protected void finished(StepContext context) throws Exception {
+            close(context, sessionId);
+        }
+
+        private static void close(StepContext context, String sessionId) throws Exception {
+            if (getChannel(context).call(new KernelSessions.Close(sessionId))) {
+                context.get(TaskListener.class).getLogger().println("Stopped the kernel of the block");
+            }
+        }
+    }
+
+    private static VirtualChannel getChannel(StepContext context) throws Exception {
+        Launcher launcher = context.get(Launcher.class);
+        VirtualChannel channel = launcher != null ? launcher.getChannel() : null;
+        if (channel == null) {
+            throw new AbortException("The agent is offline");
+        }
+        return channel;
+    }
+
+    /**
+     * The type Descriptor.
+     */
+    @Extension
+    public static final class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public String getFunctionName() {
+            return "withIPythonKernel";
+        }
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Keep an IPython kernel alive for the nested steps";
+        }
+
+        @Override
+        public boolean takesImplicitBlockArgument() {
+            return true;
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return ImmutableSet.of(Run.class, FilePath.class, Launcher.class, TaskListener.class);
+        }
+    }
+}
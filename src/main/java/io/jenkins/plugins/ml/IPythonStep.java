@@ -0,0 +1,327 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import com.google.common.collect.ImmutableSet;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Util;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import io.jenkins.plugins.ml.model.NotebookResult;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pipeline step running code or notebooks. Nested in a withIPythonKernel block it runs in the kernel of the block,
+ * otherwise with a kernel of its own like the IPython builder. The notebooks run asynchronously on the agent, no
+ * controller thread waits for them, and aborting the build interrupts the running cells.
+ */
+public class IPythonStep extends Step {
+
+    private String code;
+    private String filePath;
+    private String task = "ipython";
+    private String kernel;
+    private boolean continueOnError;
+    private Integer cancelGracePeriod;
+
+    /**
+     * Instantiates a new IPython step.
+     */
+    @DataBoundConstructor
+    public IPythonStep() {
+    }
+
+    /**
+     * Gets code.
+     *
+     * @return the code
+     */
+    @CheckForNull
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Sets the code to run, takes precedence over the file path.
+     *
+     * @param code the code
+     */
+    @DataBoundSetter
+    public void setCode(String code) {
+        this.code = Util.fixEmpty(code);
+    }
+
+    /**
+     * Gets file path.
+     *
+     * @return the file path
+     */
+    @CheckForNull
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Sets the notebooks or scripts to run, relative to the workspace.
+     *
+     * @param filePath the file path
+     */
+    @DataBoundSetter
+    public void setFilePath(String filePath) {
+        this.filePath = Util.fixEmptyAndTrim(filePath);
+    }
+
+    /**
+     * Gets task.
+     *
+     * @return the task folder of the images and HTMLs
+     */
+    public String getTask() {
+        return task;
+    }
+
+    /**
+     * Sets the task folder of the images and HTMLs, relative to the workspace.
+     *
+     * @param task the task
+     */
+    @DataBoundSetter
+    public void setTask(String task) {
+        this.task = Util.fixEmptyAndTrim(task) == null ? "ipython" : task.trim();
+    }
+
+    /**
+     * Gets kernel.
+     *
+     * @return the kernel name
+     */
+    @CheckForNull
+    public String getKernel() {
+        return kernel;
+    }
+
+    /**
+     * Sets the kernel name, ignored in a withIPythonKernel block which sets the kernel.
+     *
+     * @param kernel the kernel name
+     */
+    @DataBoundSetter
+    public void setKernel(String kernel) {
+        this.kernel = Util.fixEmptyAndTrim(kernel);
+    }
+
+    /**
+     * Is continue on error boolean.
+     *
+     * @return true when the remaining cells run after a failed cell
+     */
+    public boolean isContinueOnError() {
+        return continueOnError;
+    }
+
+    /**
+     * Sets continue on error.
+     *
+     * @param continueOnError true to run the remaining cells after a failed cell
+     */
+    @DataBoundSetter
+    public void setContinueOnError(boolean continueOnError) {
+        this.continueOnError = continueOnError;
+    }
+
+    /**
+     * Gets cancel grace period.
+     *
+     * @return the seconds the kernels get to stop after an abort, null for the default
+     */
+    @CheckForNull
+    public Integer getCancelGracePeriod() {
+        return cancelGracePeriod;
+    }
+
+    /**
+     * Sets the seconds the interrupted cells get to stop when the build is aborted, before the kernels are shut down.
+     *
+     * @param cancelGracePeriod the grace period in seconds
+     */
+    @DataBoundSetter
+    public void setCancelGracePeriod(Integer cancelGracePeriod) {
+        this.cancelGracePeriod = cancelGracePeriod;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) {
+        return new Execution(context, this);
+    }
+
+    /**
+     * Gets the builder running the step.
+     *
+     * @param session the kernel session of the enclosing block, may be null
+     * @return the builder
+     * @throws AbortException when neither code nor file path is set
+     */
+    IPythonBuilder toBuilder(@CheckForNull IPythonKernelSession session) throws AbortException {
+        if (code == null && filePath == null) {
+            throw new AbortException("The ipython step needs code or a file path");
+        }
+        IPythonBuilder builder = new IPythonBuilder(code, filePath, code != null ? "text" : "file", task,
+                session != null ? session.getKernel() : kernel);
+        builder.setContinueOnError(continueOnError);
+        if (cancelGracePeriod != null) {
+            builder.setCancelGracePeriod(cancelGracePeriod);
+        }
+        return builder;
+    }
+
+    /**
+     * Starts the notebooks on the agent and completes when the agent reports their results.
+     */
+    private static final class Execution extends StepExecution {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient IPythonStep step;
+        private String executionId;
+        private int cancelGracePeriod;
+        private transient VirtualChannel channel;
+        private transient volatile Throwable stopCause;
+
+        private Execution(StepContext context, IPythonStep step) {
+            super(context);
+            this.step = step;
+        }
+
+        @Override
+        public boolean start() throws Exception {
+            IPythonKernelSession session = getContext().get(IPythonKernelSession.class);
+            IPythonBuilder builder = step.toBuilder(session);
+            FilePath ws = getContext().get(FilePath.class);
+            TaskListener listener = getContext().get(TaskListener.class);
+            Run<?, ?> run = getContext().get(Run.class);
+            IPythonExecutor executor = builder.createExecutor(run, ws, listener,
+                    session != null ? session.getId() : null);
+            cancelGracePeriod = builder.getCancelGracePeriod();
+            channel = getContext().get(Launcher.class).getChannel();
+            if (channel == null) {
+                throw new AbortException("The agent is offline");
+            }
+            Completion completion = new Completion(builder, run, ws, listener);
+            executionId = channel.call(new NotebookExecutions.Start(executor,
+                    channel.export(NotebookExecutions.Listener.class,
+                            NotebookExecutions.ChannelWatch.watch(channel, completion))));
+            return false;
+        }
+
+        @Override
+        public void stop(@Nonnull Throwable cause) throws Exception {
+            stopCause = cause;
+            // the step completes once the interrupted notebooks report their results
+            if (channel == null || executionId == null
+                    || !channel.call(new NotebookExecutions.Cancel(executionId, cancelGracePeriod))) {
+                getContext().onFailure(cause);
+            }
+        }
+
+        @Override
+        public void onResume() {
+            // the listener of the agent was exported by the previous controller
+            getContext().onFailure(new AbortException("The notebooks were lost when Jenkins restarted"));
+        }
+
+        private final class Completion implements NotebookExecutions.Listener {
+
+            private final IPythonBuilder builder;
+            private final Run<?, ?> run;
+            private final FilePath ws;
+            private final TaskListener listener;
+
+            private Completion(IPythonBuilder builder, Run<?, ?> run, FilePath ws, TaskListener listener) {
+                this.builder = builder;
+                this.run = run;
+                this.ws = ws;
+                this.listener = listener;
+            }
+
+            @Override
+            public void onCompleted(List<NotebookResult> results) {
+                try {
+                    boolean failed = builder.complete(run, ws, listener, results);
+                    if (stopCause != null) {
+                        getContext().onFailure(stopCause);
+                    } else if (failed) {
+                        getContext().onFailure(new AbortException("The ipython step failed"));
+                    } else {
+                        getContext().onSuccess(null);
+                    }
+                } catch (RuntimeException e) {
+                    getContext().onFailure(e);
+                }
+            }
+
+            @Override
+            public void onFailed(Throwable error) {
+                getContext().onFailure(stopCause != null ? stopCause : error);
+            }
+        }
+    }
+
+    /**
+     * The type Descriptor.
+     */
+    @Extension
+    public static final class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public String getFunctionName() {
+            return "ipython";
+        }
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Run code or notebooks in an IPython kernel";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return ImmutableSet.of(Run.class, FilePath.class, Launcher.class, TaskListener.class);
+        }
+    }
+}
@@ -35,10 +35,31 @@ public class IPythonUserConfig implements Serializable {
 
     private static final long serialVersionUID = 7965902849225659175L;
 
+    /**
+     * Default max size of a message from the kernel server in bytes.
+     */
+    public static final int DEFAULT_MAX_INBOUND_MESSAGE_SIZE = 32 * 1024 * 1024;
+    /**
+     * Default HTTP/2 flow control window of the kernel channel in bytes.
+     */
+    public static final int DEFAULT_FLOW_CONTROL_WINDOW = 1024 * 1024;
+    /**
+     * Default size in bytes of the text of a cell kept in memory.
+     */
+    public static final long DEFAULT_CELL_OUTPUT_LIMIT = 16 * 1024 * 1024;
+
     private final String kernel;
     private final long iPythonLaunchTimeout;
     private final long maxResult;
     private final String workingDirectory;
+    private boolean skipPrerequisiteCheck;
+    private String preloadModules;
+    private int maxInboundMessageSize = DEFAULT_MAX_INBOUND_MESSAGE_SIZE;
+    private int flowControlWindow = DEFAULT_FLOW_CONTROL_WINDOW;
+    private long keepAliveTime;
+    private long cellTimeout;
+    private long notebookTimeout;
+    private long cellOutputLimit = DEFAULT_CELL_OUTPUT_LIMIT;
 
     /**
      * Constructor for configuration
@@ -91,6 +112,150 @@ public class IPythonUserConfig implements Serializable {
         return workingDirectory;
     }
 
+    /**
+     * Is the kernel prerequisite check skipped.
+     *
+     * @return true when the python environment is trusted
+     */
+    public boolean isSkipPrerequisiteCheck() {
+        return skipPrerequisiteCheck;
+    }
+
+    /**
+     * Sets whether the kernel prerequisite check is skipped.
+     *
+     * @param skipPrerequisiteCheck true to skip the check
+     */
+    public void setSkipPrerequisiteCheck(boolean skipPrerequisiteCheck) {
+        this.skipPrerequisiteCheck = skipPrerequisiteCheck;
+    }
+
+    /**
+     * Gets the modules preloaded by the kernel zygote.
+     *
+     * @return the modules separated by commas, null when kernels are not forked
+     */
+    public String getPreloadModules() {
+        return preloadModules;
+    }
+
+    /**
+     * Sets the modules preloaded by the kernel zygote.
+     *
+     * @param preloadModules the modules separated by commas
+     */
+    public void setPreloadModules(String preloadModules) {
+        this.preloadModules = preloadModules;
+    }
+
+    /**
+     * Gets the max size of a message from the kernel server.
+     *
+     * @return the size in bytes
+     */
+    public int getMaxInboundMessageSize() {
+        return maxInboundMessageSize;
+    }
+
+    /**
+     * Sets the max size of a message from the kernel server.
+     *
+     * @param maxInboundMessageSize the size in bytes
+     */
+    public void setMaxInboundMessageSize(int maxInboundMessageSize) {
+        this.maxInboundMessageSize = maxInboundMessageSize;
+    }
+
+    /**
+     * Gets the HTTP/2 flow control window of the kernel channel.
+     *
+     * @return the window in bytes
+     */
+    public int getFlowControlWindow() {
+        return flowControlWindow;
+    }
+
+    /**
+     * Sets the HTTP/2 flow control window of the kernel channel.
+     *
+     * @param flowControlWindow the window in bytes
+     */
+    public void setFlowControlWindow(int flowControlWindow) {
+        this.flowControlWindow = flowControlWindow;
+    }
+
+    /**
+     * Gets the keepalive ping interval of the kernel channel.
+     *
+     * @return the interval in seconds, 0 when pings are disabled
+     */
+    public long getKeepAliveTime() {
+        return keepAliveTime;
+    }
+
+    /**
+     * Sets the keepalive ping interval of the kernel channel.
+     *
+     * @param keepAliveTime the interval in seconds, 0 to disable pings
+     */
+    public void setKeepAliveTime(long keepAliveTime) {
+        this.keepAliveTime = keepAliveTime;
+    }
+
+    /**
+     * Gets the cell timeout.
+     *
+     * @return the timeout in seconds, 0 when cells run without limit
+     */
+    public long getCellTimeout() {
+        return cellTimeout;
+    }
+
+    /**
+     * Sets the time a cell may run before the kernel is interrupted.
+     *
+     * @param cellTimeout the timeout in seconds, 0 for no limit
+     */
+    public void setCellTimeout(long cellTimeout) {
+        this.cellTimeout = cellTimeout;
+    }
+
+    /**
+     * Gets the notebook timeout.
+     *
+     * @return the timeout in seconds, 0 when notebooks run without limit
+     */
+    public long getNotebookTimeout() {
+        return notebookTimeout;
+    }
+
+    /**
+     * Sets the time the cells of a notebook may run altogether before the kernel is interrupted.
+     *
+     * @param notebookTimeout the timeout in seconds, 0 for no limit
+     */
+    public void setNotebookTimeout(long notebookTimeout) {
+        this.notebookTimeout = notebookTimeout;
+    }
+
+    /**
+     * Gets the size of the text of a cell kept in memory.
+     *
+     * @return the size in bytes
+     */
+    public long getCellOutputLimit() {
+        return cellOutputLimit;
+    }
+
+    /**
+     * Sets the size of the text of a cell kept in memory, the text beyond it is written to a file.
+     *
+     * @param cellOutputLimit the size in bytes
+     */
+    public void setCellOutputLimit(long cellOutputLimit) {
+        this.cellOutputLimit = cellOutputLimit;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -103,12 +268,18 @@ public class IPythonUserConfig implements Serializable {
         return kernel.equals(userConfig.getkernel()) &&
                 iPythonLaunchTimeout == userConfig.getIPythonLaunchTimeout() &&
                 maxResult == userConfig.getMaxResult() &&
-                workingDirectory == userConfig.getWorkingDirectory();
+                workingDirectory == userConfig.getWorkingDirectory() &&
+                skipPrerequisiteCheck == userConfig.isSkipPrerequisiteCheck() &&
+                Objects.equals(preloadModules, userConfig.getPreloadModules()) &&
+                maxInboundMessageSize == userConfig.getMaxInboundMessageSize() &&
+                flowControlWindow == userConfig.getFlowControlWindow() &&
+                keepAliveTime == userConfig.getKeepAliveTime();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(kernel, iPythonLaunchTimeout, maxResult, workingDirectory);
+        return Objects.hash(kernel, iPythonLaunchTimeout, maxResult, workingDirectory, skipPrerequisiteCheck, preloadModules,
+                maxInboundMessageSize, flowControlWindow, keepAliveTime);
     }
 
 }
@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import io.jenkins.plugins.ml.utils.DiskLruStore;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.zeppelin.interpreter.InterpreterException;
+import org.apache.zeppelin.interpreter.InterpreterResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Checkpoints of the kernel state on the agent, taken after the cells tagged {@value #TAG_CHECKPOINT}. A checkpoint
+ * is kept in the store of the {@link CellCache}, within its size, under a key derived from the key of its cell, so it
+ * is only restored in the same job and while the cells before it are unchanged.
+ * The namespace of the kernel is pickled by kernel_checkpoint.py, a checkpoint is dropped whenever pickling fails.
+ */
+final class KernelCheckpoints {
+
+    /**
+     * Tag of the cells after which the state of the kernel is saved.
+     */
+    static final String TAG_CHECKPOINT = "checkpoint";
+
+    private static final String SCRIPT = "kernel_checkpoint.py";
+
+    private final DiskLruStore store;
+    private final String script;
+
+    KernelCheckpoints(DiskLruStore store, String script) {
+        this.store = store;
+        this.script = script;
+    }
+
+    /**
+     * Opens the checkpoints of the agent, sharing the store of the cell cache.
+     *
+     * @param agentConfig the agent configuration
+     * @return the checkpoints
+     * @throws IOException when the store or the script cannot be read
+     */
+    static KernelCheckpoints open(IPythonAgentConfig agentConfig) throws IOException {
+        DiskLruStore store = DiskLruStore.get(CellCache.STORE_NAME, agentConfig.getCellCacheSize() * 1024 * 1024);
+        return new KernelCheckpoints(store, IPythonInterpreterManager.readKernelScript(SCRIPT));
+    }
+
+    /**
+     * Gets the key of the checkpoint of a cell in the store, apart from the key of its outputs.
+     *
+     * @param key the key of the cell
+     * @return the key of the checkpoint
+     */
+    static String checkpointKey(String key) {
+        return DigestUtils.sha256Hex(key + '\0' + TAG_CHECKPOINT);
+    }
+
+    /**
+     * Whether a checkpoint exists, marking it as recently used.
+     *
+     * @param key the key of the cell
+     * @return true when the checkpoint exists
+     */
+    boolean contains(String key) {
+        return store.get(checkpointKey(key)) != null;
+    }
+
+    /**
+     * Saves the state of the kernel after a cell.
+     *
+     * @param interpreterManager the interpreter manager holding the kernel
+     * @param key                the key of the cell
+     * @param cellIndex          the index of the cell
+     * @param console            the console of the build
+     * @throws InterpreterException when the kernel fails
+     */
+    void save(IPythonInterpreterManager interpreterManager, String key, int cellIndex, PrintStream console)
+            throws InterpreterException {
+        File file = null;
+        File error = null;
+        try {
+            file = store.createTempFile();
+            error = new File(file.getPath() + ".err");
+            long start = System.nanoTime();
+            if (!call(interpreterManager, "_jenkins_checkpoint_save", file, error)) {
+                console.println("No checkpoint after cell " + cellIndex + ", cannot pickle " + readError(error));
+                return;
+            }
+            long size = file.length();
+            store.put(checkpointKey(key), file);
+            file = null;
+            console.println("Checkpoint after cell " + cellIndex + " saved in "
+                    + (System.nanoTime() - start) / 1000000 + " ms (" + size / 1024 + " KB)");
+        } catch (IOException e) {
+            console.println("No checkpoint after cell " + cellIndex + ": " + e.getMessage());
+        } finally {
+            FileUtils.deleteQuietly(file);
+            FileUtils.deleteQuietly(error);
+        }
+    }
+
+    /**
+     * Restores the state of the kernel saved after a cell. A checkpoint which cannot be restored is removed.
+     *
+     * @param interpreterManager the interpreter manager holding the kernel
+     * @param key                the key of the cell
+     * @param cellIndex          the index of the cell
+     * @param console            the console of the build
+     * @return true when restored
+     * @throws InterpreterException when the kernel fails
+     */
+    boolean restore(IPythonInterpreterManager interpreterManager, String key, int cellIndex, PrintStream console)
+            throws InterpreterException {
+        File file = store.get(checkpointKey(key));
+        if (file == null) {
+            return false;
+        }
+        File error = new File(file.getPath() + ".err");
+        try {
+            if (call(interpreterManager, "_jenkins_checkpoint_restore", file, error)) {
+                return true;
+            }
+            console.println("Failed to restore the checkpoint of cell " + cellIndex + ": " + readError(error));
+        } finally {
+            FileUtils.deleteQuietly(error);
+        }
+        store.remove(checkpointKey(key));
+        return false;
+    }
+
+    private boolean call(IPythonInterpreterManager interpreterManager, String function, File file, File error)
+            throws InterpreterException {
+        String code = script + "\ntry:\n    " + function + "(" + KernelPool.toPythonString(file.getAbsolutePath())
+                + ", " + KernelPool.toPythonString(error.getAbsolutePath()) + ")\n"
+                + "finally:\n    del _jenkins_pickler, _jenkins_checkpoint_save, _jenkins_checkpoint_restore\n";
+        return interpreterManager.invokeInterpreterSilently(code).code() != InterpreterResult.Code.ERROR;
+    }
+
+    private static String readError(File error) {
+        try {
+            return error.isFile() ? FileUtils.readFileToString(error, StandardCharsets.UTF_8) : "the kernel state";
+        } catch (IOException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -25,6 +25,8 @@
 package io.jenkins.plugins.ml;
 
 import org.apache.zeppelin.interpreter.InterpreterException;
+import org.apache.zeppelin.interpreter.InterpreterOutputListener;
+import org.apache.zeppelin.interpreter.InterpreterResult;
 import org.apache.zeppelin.interpreter.InterpreterResultMessage;
 
 import java.io.IOException;
@@ -38,8 +40,17 @@ public interface KernelInterpreter {
 
     List<InterpreterResultMessage> interpretCode(String code) throws IOException, InterpreterException;
 
+    InterpreterResult interpretCode(String code, InterpreterOutputListener outputListener) throws InterpreterException;
+
     void start() throws InterpreterException;
 
     void shutdown() throws InterpreterException;
 
+    /**
+     * Interrupts the code running in the kernel, like a keyboard interrupt.
+     *
+     * @throws InterpreterException when the kernel cannot be reached
+     */
+    void cancel() throws InterpreterException;
+
 }
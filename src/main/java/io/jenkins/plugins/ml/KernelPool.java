@@ -0,0 +1,484 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.apache.zeppelin.interpreter.InterpreterException;
+import org.apache.zeppelin.interpreter.InterpreterResultMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Agent local pool of launched kernels. Kernels are keyed by the launch settings of {@link IPythonUserConfig}
+ * (kernel name, launch timeout and max results), so builds of any workspace can share them.
+ * The namespace of a kernel is reset when it is returned and the working directory is changed when it is borrowed.
+ */
+final class KernelPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KernelPool.class);
+    private static final long MAINTENANCE_PERIOD_SECONDS = 30;
+
+    /**
+     * Printed by the kernel when the reset code ran to the end.
+     */
+    static final String RESET_SENTINEL = "__jenkins_kernel_ready__";
+
+    private static final String RESET_CODE = "get_ipython().run_line_magic('reset', '-f')\n"
+            + "import gc as _jenkins_gc\n"
+            + "_jenkins_gc.collect()\n"
+            + "del _jenkins_gc\n"
+            + "print('" + RESET_SENTINEL + "')";
+    private static final String LAUNCH_CODE = "print('" + RESET_SENTINEL + "')";
+
+    private static KernelPool instance;
+
+    private final Function<IPythonUserConfig, KernelInterpreter> factory;
+    private final LongSupplier clock;
+    private final Map<Key, Deque<IdleKernel>> idleKernels = new HashMap<>();
+    private final Map<Key, Integer> leasedKernels = new HashMap<>();
+    private final Map<Key, IPythonUserConfig> knownConfigs = new HashMap<>();
+    private final Set<KernelInterpreter> retainedKernels = Collections.newSetFromMap(new IdentityHashMap<>());
+    private IPythonAgentConfig settings = new IPythonAgentConfig();
+    private boolean closed;
+
+    /**
+     * Instantiates a new kernel pool.
+     *
+     * @param factory creates kernels that are not started yet
+     * @param clock   the time source in milliseconds
+     */
+    KernelPool(Function<IPythonUserConfig, KernelInterpreter> factory, LongSupplier clock) {
+        this.factory = factory;
+        this.clock = clock;
+    }
+
+    /**
+     * Gets the pool of this JVM. The maintenance task and the shutdown hook are installed on first use.
+     *
+     * @return the kernel pool
+     */
+    static synchronized KernelPool get() {
+        if (instance == null) {
+            KernelPool pool = new KernelPool(IPythonInterpreterManager::newKernelInterpreter, System::currentTimeMillis);
+            ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(
+                    new NamingThreadFactory(new DaemonThreadFactory(), "IPython kernel pool"));
+            maintenance.scheduleWithFixedDelay(pool::maintain,
+                    MAINTENANCE_PERIOD_SECONDS, MAINTENANCE_PERIOD_SECONDS, TimeUnit.SECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(pool::close, "IPython kernel pool shutdown"));
+            instance = pool;
+        }
+        return instance;
+    }
+
+    /**
+     * Applies the settings sent by the controller.
+     *
+     * @param settings the agent settings
+     */
+    synchronized void configure(IPythonAgentConfig settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Borrows a started kernel for the given configuration. A kernel is launched when none is idle.
+     * Kernels above the pool size are still launched, but they are shut down on release.
+     *
+     * @param userConfig the user configuration
+     * @return the started kernel, changed to the working directory of the configuration
+     * @throws InterpreterException when the kernel cannot be launched
+     */
+    KernelInterpreter borrow(IPythonUserConfig userConfig) throws InterpreterException {
+        Key key = new Key(userConfig);
+        while (true) {
+            IdleKernel idle;
+            boolean retain;
+            synchronized (this) {
+                if (closed) {
+                    throw new InterpreterException("Kernel pool is closed");
+                }
+                knownConfigs.put(key, userConfig);
+                Deque<IdleKernel> queue = idleKernels.get(key);
+                idle = queue == null ? null : queue.pollFirst();
+                retain = idle != null || size(key) < settings.getKernelPoolMaxSize();
+                if (retain) {
+                    leasedKernels.merge(key, 1, Integer::sum);
+                }
+            }
+            KernelInterpreter kernel = idle != null ? idle.kernel : launch(userConfig, key, retain);
+            try {
+                changeDirectory(kernel, userConfig.getWorkingDirectory());
+            } catch (InterpreterException e) {
+                discard(key, kernel, retain);
+                if (idle != null) {
+                    // a stale pooled kernel, try the next one
+                    LOGGER.debug("Discarding stale {} kernel", userConfig.getkernel(), e);
+                    continue;
+                }
+                throw new InterpreterException("Kernel " + userConfig.getkernel() + " is not responding", e);
+            }
+            if (retain) {
+                synchronized (this) {
+                    retainedKernels.add(kernel);
+                }
+            }
+            LOGGER.debug("Borrowed {} kernel ({})", userConfig.getkernel(), idle != null ? "warm" : "cold");
+            return kernel;
+        }
+    }
+
+    /**
+     * Returns a borrowed kernel. The namespace is reset before the kernel becomes idle, kernels failing the reset
+     * and kernels above the pool size are shut down.
+     *
+     * @param userConfig the user configuration the kernel was borrowed with
+     * @param kernel     the kernel
+     */
+    void release(IPythonUserConfig userConfig, KernelInterpreter kernel) {
+        Key key = new Key(userConfig);
+        boolean retained;
+        synchronized (this) {
+            retained = retainedKernels.remove(kernel);
+        }
+        if (retained && reset(kernel)) {
+            synchronized (this) {
+                decrementLeased(key);
+                if (!closed) {
+                    idleKernels.computeIfAbsent(key, k -> new ArrayDeque<>())
+                            .addFirst(new IdleKernel(kernel, clock.getAsLong()));
+                    return;
+                }
+            }
+            shutdownQuietly(kernel);
+            return;
+        }
+        discard(key, kernel, retained);
+    }
+
+    /**
+     * Shuts a borrowed kernel down instead of returning it, e.g. when the code running in it had to be killed.
+     *
+     * @param userConfig the user configuration the kernel was borrowed with
+     * @param kernel     the kernel
+     */
+    void discard(IPythonUserConfig userConfig, KernelInterpreter kernel) {
+        boolean retained;
+        synchronized (this) {
+            retained = retainedKernels.remove(kernel);
+        }
+        discard(new Key(userConfig), kernel, retained);
+    }
+
+    /**
+     * Shuts down kernels idle for longer than the idle timeout, keeping the minimum number of idle kernels,
+     * and launches kernels for configurations below the minimum.
+     */
+    void maintain() {
+        List<KernelInterpreter> expired = new ArrayList<>();
+        Map<Key, IPythonUserConfig> refill = new HashMap<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            long deadline = clock.getAsLong() - TimeUnit.SECONDS.toMillis(settings.getKernelPoolIdleTimeout());
+            for (Map.Entry<Key, Deque<IdleKernel>> entry : idleKernels.entrySet()) {
+                Deque<IdleKernel> queue = entry.getValue();
+                // least recently used kernels are at the tail
+                Iterator<IdleKernel> it = queue.descendingIterator();
+                while (it.hasNext() && queue.size() > settings.getKernelPoolMinIdle()) {
+                    IdleKernel idle = it.next();
+                    if (idle.since > deadline && size(entry.getKey()) <= settings.getKernelPoolMaxSize()) {
+                        break;
+                    }
+                    it.remove();
+                    expired.add(idle.kernel);
+                }
+            }
+            for (Map.Entry<Key, IPythonUserConfig> entry : knownConfigs.entrySet()) {
+                Deque<IdleKernel> queue = idleKernels.get(entry.getKey());
+                int idle = queue == null ? 0 : queue.size();
+                if (idle < settings.getKernelPoolMinIdle() && size(entry.getKey()) < settings.getKernelPoolMaxSize()) {
+                    refill.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        for (KernelInterpreter kernel : expired) {
+            LOGGER.debug("Shutting down idle kernel");
+            shutdownQuietly(kernel);
+        }
+        for (Map.Entry<Key, IPythonUserConfig> entry : refill.entrySet()) {
+            prelaunch(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Shuts down all idle kernels. Leased kernels are shut down when they are released.
+     */
+    void close() {
+        List<KernelInterpreter> kernels = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (Deque<IdleKernel> queue : idleKernels.values()) {
+                for (IdleKernel idle : queue) {
+                    kernels.add(idle.kernel);
+                }
+            }
+            idleKernels.clear();
+        }
+        kernels.forEach(KernelPool::shutdownQuietly);
+    }
+
+    /**
+     * Gets the number of idle kernels of the configuration.
+     *
+     * @param userConfig the user configuration
+     * @return the number of idle kernels
+     */
+    synchronized int getIdleCount(IPythonUserConfig userConfig) {
+        Deque<IdleKernel> queue = idleKernels.get(new Key(userConfig));
+        return queue == null ? 0 : queue.size();
+    }
+
+    private void prelaunch(Key key, IPythonUserConfig userConfig) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            leasedKernels.merge(key, 1, Integer::sum);
+        }
+        KernelInterpreter kernel;
+        try {
+            kernel = launch(userConfig, key, true);
+        } catch (InterpreterException e) {
+            LOGGER.warn("Failed to launch idle {} kernel", userConfig.getkernel(), e);
+            return;
+        }
+        synchronized (this) {
+            decrementLeased(key);
+            if (!closed) {
+                idleKernels.computeIfAbsent(key, k -> new ArrayDeque<>())
+                        .addLast(new IdleKernel(kernel, clock.getAsLong()));
+                return;
+            }
+        }
+        shutdownQuietly(kernel);
+    }
+
+    private KernelInterpreter launch(IPythonUserConfig userConfig, Key key, boolean retain) throws InterpreterException {
+        KernelInterpreter kernel = factory.apply(userConfig);
+        try {
+            start(kernel);
+        } catch (InterpreterException | RuntimeException e) {
+            discard(key, kernel, retain);
+            throw new InterpreterException("Failed to launch " + userConfig.getkernel() + " kernel", e);
+        }
+        return kernel;
+    }
+
+    /**
+     * Starts a kernel and waits for its process to run code.
+     *
+     * @param kernel the kernel, not started yet
+     * @throws InterpreterException when the kernel fails to start or to run code
+     */
+    static void start(KernelInterpreter kernel) throws InterpreterException {
+        kernel.start();
+        // the interpreter is opened lazily, the first code launches the kernel process
+        runChecked(kernel, LAUNCH_CODE);
+    }
+
+    private void discard(Key key, KernelInterpreter kernel, boolean retained) {
+        if (retained) {
+            synchronized (this) {
+                decrementLeased(key);
+            }
+        }
+        shutdownQuietly(kernel);
+    }
+
+    private int size(Key key) {
+        Deque<IdleKernel> queue = idleKernels.get(key);
+        return (queue == null ? 0 : queue.size()) + leasedKernels.getOrDefault(key, 0);
+    }
+
+    private void decrementLeased(Key key) {
+        leasedKernels.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private static boolean reset(KernelInterpreter kernel) {
+        try {
+            runChecked(kernel, RESET_CODE);
+            return true;
+        } catch (InterpreterException e) {
+            LOGGER.debug("Failed to reset kernel", e);
+            return false;
+        }
+    }
+
+    private static void changeDirectory(KernelInterpreter kernel, String directory) throws InterpreterException {
+        if (directory == null) {
+            return;
+        }
+        String code = "import os as _jenkins_os\n"
+                + "_jenkins_os.chdir(" + toPythonString(directory) + ")\n"
+                + "del _jenkins_os\n"
+                + "print('" + RESET_SENTINEL + "')";
+        runChecked(kernel, code);
+    }
+
+    /**
+     * Runs code printing the sentinel.
+     *
+     * @throws InterpreterException when the kernel fails or does not print the sentinel
+     */
+    private static void runChecked(KernelInterpreter kernel, String code) throws InterpreterException {
+        List<InterpreterResultMessage> messages;
+        try {
+            messages = kernel.interpretCode(code);
+        } catch (IOException | RuntimeException e) {
+            throw new InterpreterException(e);
+        }
+        if (messages != null) {
+            for (InterpreterResultMessage message : messages) {
+                if (message.getData() != null && message.getData().contains(RESET_SENTINEL)) {
+                    return;
+                }
+            }
+        }
+        throw new InterpreterException("Kernel did not acknowledge the code: " + messages);
+    }
+
+    private static void shutdownQuietly(KernelInterpreter kernel) {
+        try {
+            kernel.shutdown();
+        } catch (InterpreterException | RuntimeException e) {
+            LOGGER.trace("Failed to close interpreter", e);
+        }
+    }
+
+    /**
+     * Quotes a string as a python literal.
+     *
+     * @param value the value
+     * @return the python string literal
+     */
+    static String toPythonString(String value) {
+        StringBuilder literal = new StringBuilder("'");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\'':
+                    literal.append("\\'");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                case '\r':
+                    literal.append("\\r");
+                    break;
+                default:
+                    literal.append(c);
+            }
+        }
+        return literal.append('\'').toString();
+    }
+
+    private static final class IdleKernel {
+        private final KernelInterpreter kernel;
+        private final long since;
+
+        private IdleKernel(KernelInterpreter kernel, long since) {
+            this.kernel = kernel;
+            this.since = since;
+        }
+    }
+
+    /**
+     * Pool key, the working directory is not part of it because it is changed on every lease.
+     */
+    private static final class Key {
+        private final String kernel;
+        private final long launchTimeout;
+        private final long maxResult;
+        private final String preloadModules;
+        private final int maxInboundMessageSize;
+        private final int flowControlWindow;
+        private final long keepAliveTime;
+
+        private Key(IPythonUserConfig userConfig) {
+            this.kernel = userConfig.getkernel();
+            this.launchTimeout = userConfig.getIPythonLaunchTimeout();
+            this.maxResult = userConfig.getMaxResult();
+            this.preloadModules = userConfig.getPreloadModules();
+            this.maxInboundMessageSize = userConfig.getMaxInboundMessageSize();
+            this.flowControlWindow = userConfig.getFlowControlWindow();
+            this.keepAliveTime = userConfig.getKeepAliveTime();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(kernel, key.kernel) &&
+                    launchTimeout == key.launchTimeout &&
+                    maxResult == key.maxResult &&
+                    Objects.equals(preloadModules, key.preloadModules) &&
+                    maxInboundMessageSize == key.maxInboundMessageSize &&
+                    flowControlWindow == key.flowControlWindow &&
+                    keepAliveTime == key.keepAliveTime;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kernel, launchTimeout, maxResult, preloadModules,
+                    maxInboundMessageSize, flowControlWindow, keepAliveTime);
+        }
+    }
+}
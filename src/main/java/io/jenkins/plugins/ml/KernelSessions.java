@@ -0,0 +1,150 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import jenkins.security.MasterToSlaveCallable;
+import org.apache.zeppelin.interpreter.InterpreterException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Kernels kept alive on an agent across the steps of a withIPythonKernel block. A session owns a dedicated kernel,
+ * it is not borrowed from the {@link KernelPool} so its state never leaks to other builds. The kernel runs the code of
+ * one step at a time, steps of the block running in parallel branches are rejected rather than interleaved.
+ */
+final class KernelSessions {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KernelSessions.class);
+    private static final Map<String, IPythonInterpreterManager> SESSIONS = new ConcurrentHashMap<>();
+    // the sessions whose kernel is running the code of a step
+    private static final Set<String> BUSY = ConcurrentHashMap.newKeySet();
+
+    private KernelSessions() {
+    }
+
+    /**
+     * Starts the kernel of a new session, the kernel process is running once the session is open.
+     *
+     * @param userConfig the kernel configuration
+     * @return the id of the session
+     * @throws InterpreterException when the kernel fails to start
+     */
+    static String open(IPythonUserConfig userConfig) throws InterpreterException {
+        IPythonInterpreterManager interpreterManager = new IPythonInterpreterManager(userConfig);
+        interpreterManager.initiateInterpreter();
+        String id = UUID.randomUUID().toString();
+        SESSIONS.put(id, interpreterManager);
+        LOGGER.info("Kernel session {} started", id);
+        return id;
+    }
+
+    /**
+     * Gets the interpreter manager of a session.
+     *
+     * @param id the id of the session
+     * @return the interpreter manager, null when the session is closed
+     */
+    static IPythonInterpreterManager get(String id) {
+        return SESSIONS.get(id);
+    }
+
+    /**
+     * Takes a session for the code of a step, until {@link #release(String)}.
+     *
+     * @param id the id of the session
+     * @return false when another step is running code in the session
+     */
+    static boolean acquire(String id) {
+        return BUSY.add(id);
+    }
+
+    /**
+     * Releases a session taken by {@link #acquire(String)}.
+     *
+     * @param id the id of the session
+     */
+    static void release(String id) {
+        BUSY.remove(id);
+    }
+
+    /**
+     * Shuts the kernel of a session down.
+     *
+     * @param id the id of the session
+     * @return true when the session was open
+     */
+    static boolean close(String id) {
+        IPythonInterpreterManager interpreterManager = SESSIONS.remove(id);
+        if (interpreterManager == null) {
+            return false;
+        }
+        interpreterManager.close();
+        LOGGER.info("Kernel session {} closed", id);
+        return true;
+    }
+
+    /**
+     * Opens a session on the agent.
+     */
+    static final class Open extends MasterToSlaveCallable<String, InterpreterException> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IPythonUserConfig userConfig;
+
+        Open(IPythonUserConfig userConfig) {
+            this.userConfig = userConfig;
+        }
+
+        @Override
+        public String call() throws InterpreterException {
+            return open(userConfig);
+        }
+    }
+
+    /**
+     * Closes a session on the agent.
+     */
+    static final class Close extends MasterToSlaveCallable<Boolean, RuntimeException> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String id;
+
+        Close(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public Boolean call() {
+            return close(id);
+        }
+    }
+}
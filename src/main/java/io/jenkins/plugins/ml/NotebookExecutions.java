@@ -0,0 +1,299 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import hudson.remoting.Channel;
+import hudson.remoting.ChannelClosedException;
+import hudson.remoting.VirtualChannel;
+import io.jenkins.plugins.ml.model.NotebookResult;
+import jenkins.security.MasterToSlaveCallable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Notebooks running on an agent in threads of their own. The controller starts an execution and gets the results
+ * through an exported {@link Listener}, so no controller thread waits for the kernels. Cancelling an execution
+ * interrupts the running cells like a keyboard interrupt, and shuts the kernels down when they are still busy after
+ * the grace period.
+ */
+final class NotebookExecutions {
+
+    /**
+     * Seconds the kernels get to stop after being interrupted, before they are shut down.
+     */
+    static final int DEFAULT_GRACE_PERIOD = 30;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotebookExecutions.class);
+    private static final Map<String, Execution> EXECUTIONS = new ConcurrentHashMap<>();
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService RUNNER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "IPython execution " + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ScheduledExecutorService KILLER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "IPython execution killer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private NotebookExecutions() {
+    }
+
+    /**
+     * Starts running the notebooks.
+     *
+     * @param executor the notebooks to run
+     * @param listener notified with the results once every notebook ran
+     * @return the id of the execution
+     */
+    static String start(IPythonExecutor executor, Listener listener) {
+        String id = UUID.randomUUID().toString();
+        Execution execution = new Execution(executor);
+        EXECUTIONS.put(id, execution);
+        execution.future = RUNNER.submit(() -> {
+            try {
+                List<NotebookResult> results = executor.call();
+                notify(listener, results, null);
+            } catch (Throwable e) {
+                notify(listener, null, e);
+            } finally {
+                EXECUTIONS.remove(id);
+            }
+        });
+        return id;
+    }
+
+    private static void notify(Listener listener, List<NotebookResult> results, Throwable error) {
+        try {
+            if (error == null) {
+                listener.onCompleted(results);
+            } else {
+                listener.onFailed(error);
+            }
+        } catch (RuntimeException e) {
+            // e.g. the agent was disconnected, the build fails on the controller
+            LOGGER.warn("Failed to report the end of the execution", e);
+        }
+    }
+
+    /**
+     * Interrupts the running cells, and shuts the kernels down if the execution is still running after the grace
+     * period. The listener of the execution is notified once the notebooks stopped.
+     *
+     * @param id          the id of the execution
+     * @param gracePeriod the seconds the kernels get to stop
+     * @return false when the execution is already over
+     */
+    static boolean cancel(String id, int gracePeriod) {
+        Execution execution = EXECUTIONS.get(id);
+        if (execution == null) {
+            return false;
+        }
+        LOGGER.info("Interrupting execution {}", id);
+        execution.executor.interrupt();
+        KILLER.schedule(() -> {
+            Future<?> future = execution.future;
+            if (future != null && !future.isDone()) {
+                LOGGER.warn("Execution {} still running after {} seconds, shutting its kernels down", id, gracePeriod);
+                execution.executor.kill();
+                future.cancel(true);
+            }
+        }, Math.max(0, gracePeriod), TimeUnit.SECONDS);
+        return true;
+    }
+
+    /**
+     * Gets notified on the controller when an execution is over.
+     */
+    public interface Listener {
+
+        /**
+         * Called with the results of the notebooks, including cancelled ones.
+         *
+         * @param results the results
+         */
+        void onCompleted(List<NotebookResult> results);
+
+        /**
+         * Called when the notebooks could not run.
+         *
+         * @param error the error
+         */
+        void onFailed(Throwable error);
+    }
+
+    /**
+     * Completes a future, for callers waiting for the results.
+     */
+    static final class FutureListener implements Listener {
+
+        private final CompletableFuture<List<NotebookResult>> future;
+
+        FutureListener(CompletableFuture<List<NotebookResult>> future) {
+            this.future = future;
+        }
+
+        @Override
+        public void onCompleted(List<NotebookResult> results) {
+            future.complete(results);
+        }
+
+        @Override
+        public void onFailed(Throwable error) {
+            future.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Fails a listener on the controller when the channel of the agent closes before the execution reported its
+     * results, the exported listener is never called then.
+     */
+    static final class ChannelWatch extends Channel.Listener implements Listener {
+
+        private final Channel channel;
+        private final Listener listener;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private ChannelWatch(Channel channel, Listener listener) {
+            this.channel = channel;
+            this.listener = listener;
+        }
+
+        /**
+         * Watches the channel an execution is started on.
+         *
+         * @param channel  the channel of the agent
+         * @param listener the listener of the execution
+         * @return the listener to export, notified once
+         */
+        static Listener watch(VirtualChannel channel, Listener listener) {
+            if (!(channel instanceof Channel)) {
+                // a local channel is never closed
+                return listener;
+            }
+            ChannelWatch watch = new ChannelWatch((Channel) channel, listener);
+            watch.channel.addListener(watch);
+            if (watch.channel.isClosingOrClosed()) {
+                watch.onClosed(watch.channel, null);
+            }
+            return watch;
+        }
+
+        @Override
+        public void onCompleted(List<NotebookResult> results) {
+            if (finish()) {
+                listener.onCompleted(results);
+            }
+        }
+
+        @Override
+        public void onFailed(Throwable error) {
+            if (finish()) {
+                listener.onFailed(error);
+            }
+        }
+
+        @Override
+        public void onClosed(Channel channel, IOException cause) {
+            if (finish()) {
+                listener.onFailed(new ChannelClosedException(channel, cause));
+            }
+        }
+
+        private boolean finish() {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            channel.removeListener(this);
+            return true;
+        }
+    }
+
+    private static final class Execution {
+        private final IPythonExecutor executor;
+        private volatile Future<?> future;
+
+        private Execution(IPythonExecutor executor) {
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Starts an execution on the agent.
+     */
+    static final class Start extends MasterToSlaveCallable<String, RuntimeException> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IPythonExecutor executor;
+        private final Listener listener;
+
+        Start(IPythonExecutor executor, Listener listener) {
+            this.executor = executor;
+            this.listener = listener;
+        }
+
+        @Override
+        public String call() {
+            return start(executor, listener);
+        }
+    }
+
+    /**
+     * Cancels an execution on the agent.
+     */
+    static final class Cancel extends MasterToSlaveCallable<Boolean, RuntimeException> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String id;
+        private final int gracePeriod;
+
+        Cancel(String id, int gracePeriod) {
+            this.id = id;
+            this.gracePeriod = gracePeriod;
+        }
+
+        @Override
+        public Boolean call() {
+            return cancel(id, gracePeriod);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.ml;
+
+import hudson.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves the images and HTMLs of a notebook in the background, so the next cell does not wait for the files of the
+ * previous one. The queue is bounded: once it is full, the cell producing the outputs waits for the disk.
+ * Closing the writer waits for every queued output to be saved and prints the write latency and queue depth.
+ */
+final class OutputWriter implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutputWriter.class);
+    /**
+     * Outputs waiting to be saved, each of them holds the whole data of an image or HTML.
+     */
+    static final int QUEUE_SIZE = 16;
+    private static final Write END = () -> {
+    };
+
+    /**
+     * Saves an output.
+     */
+    interface Write {
+        void run() throws IOException, InterruptedException;
+    }
+
+    private final PrintStream console;
+    private final String task;
+    private final BlockingQueue<Write> queue;
+    private Thread thread;
+    // updated by the thread submitting the outputs
+    private int maxDepth;
+    private long blockedNanos;
+    // updated by the writer thread, read once it is joined
+    private int written;
+    private int failed;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+
+    /**
+     * Instantiates a new output writer.
+     *
+     * @param console  the console of the build
+     * @param task     the folder of images and HTMLs, for the messages
+     * @param capacity the number of outputs which may wait to be saved
+     */
+    OutputWriter(PrintStream console, String task, int capacity) {
+        this.console = console;
+        this.task = task;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Queues an output to be saved, waits while the queue is full.
+     *
+     * @param write saves the output
+     * @throws InterruptedException interrupted while the queue is full
+     */
+    synchronized void submit(Write write) throws InterruptedException {
+        if (thread == null) {
+            thread = new Thread(this::writeAll, "Output writer for " + task);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        if (!queue.offer(write)) {
+            long start = System.nanoTime();
+            queue.put(write);
+            blockedNanos += System.nanoTime() - start;
+        }
+        maxDepth = Math.max(maxDepth, queue.size());
+    }
+
+    private void writeAll() {
+        while (true) {
+            Write write;
+            try {
+                write = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (write == END) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                write.run();
+                written++;
+            } catch (IOException | RuntimeException e) {
+                failed++;
+                LOGGER.warn("Failed to save the output of the cell", e);
+                console.println("Failed to save the output of the cell: " + e.getMessage());
+            } catch (InterruptedException e) {
+                failed++;
+                LOGGER.warn("Interrupted while saving the output of the cell", e);
+            }
+            long latency = System.nanoTime() - start;
+            totalLatencyNanos += latency;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+        }
+    }
+
+    /**
+     * Waits for every queued output to be saved, even when the notebook failed or was interrupted, and prints the
+     * statistics of the writes.
+     */
+    @Override
+    public synchronized void close() {
+        if (thread == null) {
+            return;
+        }
+        boolean interrupted = false;
+        // the files of the cells which ran are saved even when the build is interrupted
+        while (!queue.offer(END)) {
+            try {
+                queue.put(END);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        int count = written + failed;
+        if (count > 0) {
+            console.println("Saved " + written + " of " + count + " outputs to " + task + ", write latency "
+                    + TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos / count) + " ms average, "
+                    + TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos) + " ms max, queue depth " + maxDepth + " of "
+                    + queue.remainingCapacity()
+                    + (blockedNanos > 0 ? ", cells waited " + Util.getTimeSpanString(
+                    TimeUnit.NANOSECONDS.toMillis(blockedNanos)) + " for the disk" : ""));
+        }
+        thread = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
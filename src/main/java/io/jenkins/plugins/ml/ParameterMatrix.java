@@ -0,0 +1,214 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import hudson.AbortException;
+import hudson.Util;
+import io.jenkins.plugins.ml.model.NotebookCell;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Parameter matrix of a notebook, a JSON object mapping parameter names to a value or a list of values.
+ * Every combination of values is a variant of the notebook, run with a parameters cell injected after the cell
+ * tagged {@code parameters} like papermill does, or ahead of the notebook when no cell is tagged.
+ */
+final class ParameterMatrix {
+
+    /**
+     * nbformat tag of the cell holding the default parameters of a notebook.
+     */
+    static final String TAG_PARAMETERS = "parameters";
+    /**
+     * Tag of the injected cell.
+     */
+    static final String TAG_INJECTED_PARAMETERS = "injected-parameters";
+    /**
+     * Index of the injected cell, it is not part of the notebook.
+     */
+    static final int INJECTED_CELL_INDEX = -1;
+    // each variant takes a kernel, a larger matrix is most likely a mistake
+    static final int MAX_VARIANTS = 1000;
+
+    private static final Pattern IDENTIFIER = Pattern.compile("^[A-Za-z_][A-Za-z0-9_]*$");
+
+    private ParameterMatrix() {
+    }
+
+    /**
+     * Expands the matrix into its variants.
+     *
+     * @param matrix the JSON matrix, e.g. {"lr": [0.1, 0.01], "epochs": 10}
+     * @return the parameters of every variant as python literals, one empty variant when there is no matrix
+     * @throws AbortException when the matrix is invalid
+     */
+    static List<Map<String, String>> expand(String matrix) throws AbortException {
+        List<Map<String, String>> variants = new ArrayList<>();
+        variants.add(new LinkedHashMap<>());
+        if (Util.fixEmptyAndTrim(matrix) == null) {
+            return variants;
+        }
+        JsonObject parameters;
+        try {
+            JsonElement json = new JsonParser().parse(matrix);
+            if (!json.isJsonObject()) {
+                throw new AbortException("Parameters should be a JSON object of parameter names to values");
+            }
+            parameters = json.getAsJsonObject();
+        } catch (JsonParseException e) {
+            throw new AbortException("Parameters are not valid JSON: " + e.getMessage());
+        }
+        for (Map.Entry<String, JsonElement> parameter : parameters.entrySet()) {
+            if (!IDENTIFIER.matcher(parameter.getKey()).matches()) {
+                throw new AbortException("Parameter name " + parameter.getKey() + " is not a python identifier");
+            }
+            List<JsonElement> values = new ArrayList<>();
+            if (parameter.getValue().isJsonArray()) {
+                parameter.getValue().getAsJsonArray().forEach(values::add);
+            } else {
+                values.add(parameter.getValue());
+            }
+            if (values.isEmpty()) {
+                throw new AbortException("Parameter " + parameter.getKey() + " has no values");
+            }
+            if ((long) variants.size() * values.size() > MAX_VARIANTS) {
+                throw new AbortException("Parameters have more than " + MAX_VARIANTS + " combinations");
+            }
+            List<Map<String, String>> expanded = new ArrayList<>();
+            for (Map<String, String> variant : variants) {
+                for (JsonElement value : values) {
+                    Map<String, String> combination = new LinkedHashMap<>(variant);
+                    combination.put(parameter.getKey(), toPythonLiteral(value));
+                    expanded.add(combination);
+                }
+            }
+            variants = expanded;
+        }
+        return variants;
+    }
+
+    /**
+     * Injects the parameters cell after the cell tagged parameters, or ahead of the cells.
+     *
+     * @param cells      the cells of the notebook
+     * @param parameters the parameters of the variant
+     * @return the cells of the variant
+     */
+    static List<NotebookCell> inject(List<NotebookCell> cells, Map<String, String> parameters) {
+        if (parameters.isEmpty()) {
+            return cells;
+        }
+        StringBuilder source = new StringBuilder("# Parameters\n");
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            source.append(parameter.getKey()).append(" = ").append(parameter.getValue()).append('\n');
+        }
+        NotebookCell injected = new NotebookCell(INJECTED_CELL_INDEX, source.toString(),
+                Collections.singletonList(TAG_INJECTED_PARAMETERS));
+        List<NotebookCell> variant = new ArrayList<>(cells);
+        int position = 0;
+        for (int i = 0; i < cells.size(); i++) {
+            if (cells.get(i).hasTag(TAG_PARAMETERS)) {
+                position = i + 1;
+                break;
+            }
+        }
+        variant.add(position, injected);
+        return variant;
+    }
+
+    /**
+     * Describes the parameters of a variant.
+     *
+     * @param parameters the parameters
+     * @return e.g. lr=0.1, epochs=10
+     */
+    static String describe(Map<String, String> parameters) {
+        List<String> assignments = new ArrayList<>();
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            assignments.add(parameter.getKey() + "=" + parameter.getValue());
+        }
+        return String.join(", ", assignments);
+    }
+
+    /**
+     * Gets a folder name for the outputs of a variant. The readable part drops characters unsafe in file names and
+     * is cut to 64 characters, a short hash of the parameters keeps the names of the variants apart.
+     *
+     * @param parameters the parameters
+     * @return e.g. lr-0.1_epochs-10_5d1f0b2c
+     */
+    static String toFolderName(Map<String, String> parameters) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder key = new StringBuilder();
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            parts.add(parameter.getKey() + "-" + parameter.getValue());
+            key.append(parameter.getKey()).append('\0').append(parameter.getValue()).append('\0');
+        }
+        String name = String.join("_", parts).replaceAll("[^A-Za-z0-9._-]", "");
+        String hash = Util.getDigestOf(key.toString()).substring(0, 8);
+        return (name.length() > 64 ? name.substring(0, 64) : name) + "_" + hash;
+    }
+
+    /**
+     * Converts a JSON value to the python literal of the same value.
+     *
+     * @param value the JSON value
+     * @return the python literal
+     */
+    static String toPythonLiteral(JsonElement value) {
+        if (value.isJsonNull()) {
+            return "None";
+        }
+        if (value.isJsonPrimitive()) {
+            JsonPrimitive primitive = value.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                return primitive.getAsBoolean() ? "True" : "False";
+            }
+            if (primitive.isNumber()) {
+                return primitive.getAsString();
+            }
+            return KernelPool.toPythonString(primitive.getAsString());
+        }
+        List<String> items = new ArrayList<>();
+        if (value.isJsonArray()) {
+            value.getAsJsonArray().forEach(item -> items.add(toPythonLiteral(item)));
+            return "[" + String.join(", ", items) + "]";
+        }
+        for (Map.Entry<String, JsonElement> entry : value.getAsJsonObject().entrySet()) {
+            items.add(KernelPool.toPythonString(entry.getKey()) + ": " + toPythonLiteral(entry.getValue()));
+        }
+        return "{" + String.join(", ", items) + "}";
+    }
+}
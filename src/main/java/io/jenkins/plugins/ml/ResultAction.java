@@ -27,11 +27,13 @@ package io.jenkins.plugins.ml;
 import hudson.FilePath;
 import hudson.model.Action;
 import hudson.model.Run;
+import io.jenkins.plugins.ml.model.NotebookResult;
 import io.jenkins.plugins.ml.model.Summary;
 import jenkins.model.RunAction2;
 
 import javax.annotation.CheckForNull;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.stream.Collectors;
@@ -44,7 +46,9 @@ public class ResultAction implements RunAction2 {
     private transient Run<?, ?> run;
     private List<Summary> imageFiles;
     private List<Summary> htmlFiles;
+    private List<Summary> outputFiles;
     private transient FilePath path;
+    private List<NotebookResult> notebookResults = new ArrayList<>();
 
     /**
      * Instantiates a new Result action.
@@ -102,6 +106,28 @@ public class ResultAction implements RunAction2 {
         return htmlFiles;
     }
 
+    /**
+     * Gets the files of the cell outputs beyond the cell output limit.
+     *
+     * @return the output files
+     */
+    public List<Summary> getOutputFiles() {
+        return outputFiles;
+    }
+
+    /**
+     * Gets the cell results of the notebooks run by the build.
+     *
+     * @return the notebook results
+     */
+    public List<NotebookResult> getNotebookResults() {
+        if (notebookResults == null) {
+            // builds recorded before the cell results
+            notebookResults = new ArrayList<>();
+        }
+        return notebookResults;
+    }
+
     /**
      * Get build id string.
      *
@@ -126,8 +152,12 @@ public class ResultAction implements RunAction2 {
     private void updateFiles() {
         try {
             if (path.exists()) {
-                imageFiles = getVisualsByPath(path, "png");
+                imageFiles = getVisualsByPath(path, "png", "jpeg", "jpg", "gif", "webp", "svg");
                 htmlFiles = getVisualsByPath(path, "html");
+                // the text files written by the code are not outputs
+                outputFiles = getVisualsByPath(path, "txt").stream()
+                        .filter(s -> ConsoleOutputListener.SPILL_FILE_NAME.matcher(s.getFileName()).matches())
+                        .collect(Collectors.toList());
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -138,11 +168,11 @@ public class ResultAction implements RunAction2 {
      * Gets List of summary objects by path and file format.
      *
      * @param path    the path
-     * @param fFormat the f format
+     * @param fFormats the file formats
      * @return the visuals by path
      * @throws Exception the exception
      */
-    public List<Summary> getVisualsByPath(FilePath path, String fFormat) throws Exception {
+    public List<Summary> getVisualsByPath(FilePath path, String... fFormats) throws Exception {
         ListIterator<FilePath> list = path.list().listIterator();
         List<FilePath> paths = new ArrayList<>();
         for (; list.hasNext(); ) {
@@ -150,7 +180,7 @@ public class ResultAction implements RunAction2 {
             paths.addAll(fp.list());
         }
         return paths.stream()
-                .filter(p -> p.getName().toLowerCase().endsWith(fFormat))
+                .filter(p -> Arrays.stream(fFormats).anyMatch(f -> p.getName().toLowerCase().endsWith("." + f)))
                 .map(p -> new Summary(p.getName(), p.getParent().getName().toString()))
                 .collect(Collectors.toList());
 
@@ -31,6 +31,7 @@ import hudson.model.Descriptor;
 import hudson.util.FormValidation;
 import org.apache.zeppelin.interpreter.InterpreterException;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.verb.POST;
 
@@ -46,7 +47,20 @@ public class Server extends AbstractDescribableImpl<Server> {
     private final String kernel;
     private final long launchTimeout;
     private final long maxResults;
+    private boolean skipPrerequisiteCheck;
+    private String preloadModules;
+    private int maxInboundMessageSize;
+    private int flowControlWindow;
+    private long keepAliveTime;
+    private long cellTimeout;
+    private long notebookTimeout;
+    private int cellOutputLimit;
 
+    private static final int KB = 1024;
+    private static final int MB = 1024 * KB;
+    // the channel takes the sizes in bytes as an int
+    static final int MAX_INBOUND_MESSAGE_SIZE = Integer.MAX_VALUE / MB;
+    static final int MAX_FLOW_CONTROL_WINDOW = Integer.MAX_VALUE / KB;
     private static final Pattern pattern = Pattern.compile("^[a-zA-Z0-9_]+$");
     private static final java.util.logging.Logger GRPC_IO_LOGGER = java.util.logging.Logger.getLogger("io.grpc.internal");
     private static Level GRPC_IO_LOGGER_ORIGINAL_LEVEL = GRPC_IO_LOGGER.getLevel();
@@ -111,6 +125,180 @@ public class Server extends AbstractDescribableImpl<Server> {
         return Util.fixEmptyAndTrim(kernel);
     }
 
+    /**
+     * Is the kernel prerequisite check skipped.
+     *
+     * @return true when the python environment is trusted
+     */
+    public boolean isSkipPrerequisiteCheck() {
+        return skipPrerequisiteCheck;
+    }
+
+    /**
+     * Skip the pip based kernel prerequisite check, for trusted images.
+     *
+     * @param skipPrerequisiteCheck true to skip the check
+     */
+    @DataBoundSetter
+    public void setSkipPrerequisiteCheck(boolean skipPrerequisiteCheck) {
+        this.skipPrerequisiteCheck = skipPrerequisiteCheck;
+    }
+
+    /**
+     * Gets the modules preloaded by the kernel zygote.
+     *
+     * @return the modules separated by commas, null when kernels are not forked
+     */
+    public String getPreloadModules() {
+        return Util.fixEmptyAndTrim(preloadModules);
+    }
+
+    /**
+     * Preload heavy modules once in a zygote process and fork the kernels from it.
+     *
+     * @param preloadModules the modules separated by commas
+     */
+    @DataBoundSetter
+    public void setPreloadModules(String preloadModules) {
+        this.preloadModules = preloadModules;
+    }
+
+    /**
+     * Gets the max size of a message from the kernel server, at most {@value #MAX_INBOUND_MESSAGE_SIZE} MB.
+     *
+     * @return the size in MB
+     */
+    public int getMaxInboundMessageSize() {
+        return maxInboundMessageSize > 0 ? Math.min(maxInboundMessageSize, MAX_INBOUND_MESSAGE_SIZE)
+                : IPythonUserConfig.DEFAULT_MAX_INBOUND_MESSAGE_SIZE / MB;
+    }
+
+    /**
+     * Sets the max size of a message from the kernel server, e.g. a large image or data frame.
+     *
+     * @param maxInboundMessageSize the size in MB
+     */
+    @DataBoundSetter
+    public void setMaxInboundMessageSize(int maxInboundMessageSize) {
+        this.maxInboundMessageSize = maxInboundMessageSize;
+    }
+
+    /**
+     * Gets the HTTP/2 flow control window of the kernel channel, at most {@value #MAX_FLOW_CONTROL_WINDOW} KB.
+     *
+     * @return the window in KB
+     */
+    public int getFlowControlWindow() {
+        return flowControlWindow > 0 ? Math.min(flowControlWindow, MAX_FLOW_CONTROL_WINDOW)
+                : IPythonUserConfig.DEFAULT_FLOW_CONTROL_WINDOW / KB;
+    }
+
+    /**
+     * Sets the HTTP/2 flow control window of the kernel channel.
+     *
+     * @param flowControlWindow the window in KB
+     */
+    @DataBoundSetter
+    public void setFlowControlWindow(int flowControlWindow) {
+        this.flowControlWindow = flowControlWindow;
+    }
+
+    /**
+     * Gets the keepalive ping interval of the kernel channel.
+     *
+     * @return the interval in seconds, 0 when pings are disabled
+     */
+    public long getKeepAliveTime() {
+        return keepAliveTime;
+    }
+
+    /**
+     * Sets the keepalive ping interval of the kernel channel.
+     *
+     * @param keepAliveTime the interval in seconds, 0 to disable pings
+     */
+    @DataBoundSetter
+    public void setKeepAliveTime(long keepAliveTime) {
+        this.keepAliveTime = Math.max(0, keepAliveTime);
+    }
+
+    /**
+     * Creates the user configuration of a build step running with this server.
+     *
+     * @param workingDirectory the working directory
+     * @return the user configuration
+     */
+    public IPythonUserConfig toUserConfig(String workingDirectory) {
+        IPythonUserConfig userConfig = new IPythonUserConfig(getKernel(), getLaunchTimeoutInMilliSeconds(), maxResults, workingDirectory);
+        userConfig.setSkipPrerequisiteCheck(skipPrerequisiteCheck);
+        userConfig.setPreloadModules(getPreloadModules());
+        userConfig.setMaxInboundMessageSize(getMaxInboundMessageSize() * MB);
+        userConfig.setFlowControlWindow(getFlowControlWindow() * KB);
+        userConfig.setKeepAliveTime(keepAliveTime);
+        userConfig.setCellTimeout(cellTimeout);
+        userConfig.setNotebookTimeout(notebookTimeout);
+        userConfig.setCellOutputLimit((long) getCellOutputLimit() * MB);
+        return userConfig;
+    }
+
+    /**
+     * Gets the cell timeout.
+     *
+     * @return the timeout in seconds, 0 when cells run without limit
+     */
+    public long getCellTimeout() {
+        return cellTimeout;
+    }
+
+    /**
+     * Sets the time a cell may run before the kernel is interrupted, e.g. a data loader blocked forever.
+     *
+     * @param cellTimeout the timeout in seconds, 0 for no limit
+     */
+    @DataBoundSetter
+    public void setCellTimeout(long cellTimeout) {
+        this.cellTimeout = Math.max(0, cellTimeout);
+    }
+
+    /**
+     * Gets the notebook timeout.
+     *
+     * @return the timeout in seconds, 0 when notebooks run without limit
+     */
+    public long getNotebookTimeout() {
+        return notebookTimeout;
+    }
+
+    /**
+     * Sets the time the cells of a notebook may run altogether before the kernel is interrupted.
+     *
+     * @param notebookTimeout the timeout in seconds, 0 for no limit
+     */
+    @DataBoundSetter
+    public void setNotebookTimeout(long notebookTimeout) {
+        this.notebookTimeout = Math.max(0, notebookTimeout);
+    }
+
+    /**
+     * Gets the size of the text of a cell kept in memory.
+     *
+     * @return the size in MB
+     */
+    public int getCellOutputLimit() {
+        return cellOutputLimit > 0 ? cellOutputLimit : (int) (IPythonUserConfig.DEFAULT_CELL_OUTPUT_LIMIT / MB);
+    }
+
+    /**
+     * Sets the size of the text of a cell kept in memory, e.g. a cell printing a large data frame. The text beyond
+     * it is written to a file of the task folder.
+     *
+     * @param cellOutputLimit the size in MB
+     */
+    @DataBoundSetter
+    public void setCellOutputLimit(int cellOutputLimit) {
+        this.cellOutputLimit = cellOutputLimit;
+    }
+
     @Override
     public Descriptor<Server> getDescriptor() {
         return null;
@@ -182,11 +370,16 @@ public class Server extends AbstractDescribableImpl<Server> {
         }
 
         /**
-         * Validate the server by testing it
+         * Validate the server by testing it, with the configuration the builds get
          *
-         * @param kernel        the kernel
-         * @param launchTimeout the launch timeout
-         * @param maxResults    the max results
+         * @param kernel                the kernel
+         * @param launchTimeout         the launch timeout
+         * @param maxResults            the max results
+         * @param skipPrerequisiteCheck whether the kernel prerequisite check is skipped
+         * @param preloadModules        the modules imported in the kernels before they are handed out
+         * @param maxInboundMessageSize the max message size in MB, empty for the default
+         * @param flowControlWindow     the flow control window in KB, empty for the default
+         * @param keepAliveTime         the keepalive interval in seconds, empty for none
          * @return the form validation
          * @throws Exception throws NumberFormatException when passing invalid maxResults
          */
@@ -194,14 +387,26 @@ public class Server extends AbstractDescribableImpl<Server> {
         public FormValidation doValidate(
                 @QueryParameter String kernel,
                 @QueryParameter String launchTimeout,
-                @QueryParameter String maxResults)
+                @QueryParameter String maxResults,
+                @QueryParameter boolean skipPrerequisiteCheck,
+                @QueryParameter String preloadModules,
+                @QueryParameter String maxInboundMessageSize,
+                @QueryParameter String flowControlWindow,
+                @QueryParameter String keepAliveTime)
                 throws Exception {
 
             if (Util.fixEmptyAndTrim(kernel) != null) {
                 try{
                     // Disable GRPC internal exceptions due to SEVERE log message when closing kernel interpreter
                     GRPC_IO_LOGGER.setLevel(Level.OFF);
-                    IPythonUserConfig userConfig = new IPythonUserConfig(kernel, Integer.parseInt(launchTimeout)*1000, Integer.parseInt(maxResults), ".");
+                    Server server = new Server(null, kernel, Long.parseLong(Util.fixNull(launchTimeout).trim()),
+                            Long.parseLong(Util.fixNull(maxResults).trim()));
+                    server.setSkipPrerequisiteCheck(skipPrerequisiteCheck);
+                    server.setPreloadModules(preloadModules);
+                    server.setMaxInboundMessageSize((int) parseOptional(maxInboundMessageSize));
+                    server.setFlowControlWindow((int) parseOptional(flowControlWindow));
+                    server.setKeepAliveTime(parseOptional(keepAliveTime));
+                    IPythonUserConfig userConfig = server.toUserConfig(".");
                     try (InterpreterManager interpreterManager = new IPythonInterpreterManager(userConfig)) {
                         interpreterManager.initiateInterpreter();
                         if (interpreterManager.testConnection()) {
@@ -220,6 +425,12 @@ public class Server extends AbstractDescribableImpl<Server> {
             }
             return FormValidation.warning("kernel name is required. Click on help for more info");
         }
+
+        private static long parseOptional(String value) {
+            value = Util.fixEmptyAndTrim(value);
+            // the defaults of the server apply to empty fields
+            return value == null ? 0 : Long.parseLong(value);
+        }
     }
 
 
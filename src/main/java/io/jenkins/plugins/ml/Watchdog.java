@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import hudson.Util;
+import org.apache.zeppelin.interpreter.InterpreterException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforces the cell and notebook timeouts of a notebook run. When a timeout fires the kernel is interrupted, so the
+ * running cell stops with the outputs it wrote so far, and the kernel is shut down if the cell is still running after
+ * the grace period.
+ */
+final class Watchdog implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Watchdog.class);
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "IPython watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final IPythonInterpreterManager interpreterManager;
+    private final long cellTimeout;
+    private final int gracePeriod;
+    private final ScheduledFuture<?> notebookTimer;
+    private ScheduledFuture<?> cellTimer;
+    // incremented for every cell, a late kill never hits the next cell
+    private int cell;
+    private boolean running;
+    private String expired;
+
+    /**
+     * Starts the notebook timeout.
+     *
+     * @param interpreterManager the kernel running the notebook
+     * @param cellTimeout        the cell timeout in seconds, 0 for none
+     * @param notebookTimeout    the notebook timeout in seconds, 0 for none
+     * @param gracePeriod        the seconds the interrupted cell gets to stop before the kernel is shut down
+     */
+    Watchdog(IPythonInterpreterManager interpreterManager, long cellTimeout, long notebookTimeout, int gracePeriod) {
+        this.interpreterManager = interpreterManager;
+        this.cellTimeout = cellTimeout;
+        this.gracePeriod = gracePeriod;
+        notebookTimer = notebookTimeout > 0 ? TIMER.schedule(
+                () -> expire("notebook timeout of " + Util.getTimeSpanString(notebookTimeout * 1000)),
+                notebookTimeout, TimeUnit.SECONDS) : null;
+    }
+
+    /**
+     * Starts the cell timeout, before code runs in the kernel or when the next cell of a batch starts.
+     */
+    synchronized void startCell() {
+        endCell();
+        cell++;
+        running = true;
+        if (cellTimeout > 0) {
+            cellTimer = TIMER.schedule(() -> expire("cell timeout of " + Util.getTimeSpanString(cellTimeout * 1000)),
+                    cellTimeout, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops the cell timeout, once the code returned.
+     */
+    synchronized void endCell() {
+        running = false;
+        if (cellTimer != null) {
+            cellTimer.cancel(false);
+            cellTimer = null;
+        }
+    }
+
+    /**
+     * Gets the timeout which fired.
+     *
+     * @return the description of the timeout, null while no timeout fired
+     */
+    synchronized String getExpired() {
+        return expired;
+    }
+
+    private void expire(String timeout) {
+        int expiredCell;
+        synchronized (this) {
+            if (expired != null) {
+                return;
+            }
+            expired = timeout;
+            if (!running) {
+                // between cells, the notebook stops before the next one
+                return;
+            }
+            expiredCell = cell;
+        }
+        LOGGER.info("Interrupting the kernel after the {}", timeout);
+        try {
+            interpreterManager.cancel();
+        } catch (InterpreterException e) {
+            LOGGER.warn("Failed to interrupt the kernel", e);
+        }
+        TIMER.schedule(() -> {
+            synchronized (this) {
+                if (!running || cell != expiredCell) {
+                    return;
+                }
+            }
+            LOGGER.warn("Cell still running {} seconds after the {}, shutting the kernel down", gracePeriod, timeout);
+            interpreterManager.kill();
+        }, gracePeriod, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        endCell();
+        if (notebookTimer != null) {
+            notebookTimer.cancel(false);
+        }
+    }
+}
@@ -23,9 +23,14 @@ import org.apache.zeppelin.interpreter.thrift.InterpreterCompletion;
 import org.apache.zeppelin.jupyter.JupyterZeppelinContext;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 
 public class JupyterInterpreter extends AbstractInterpreter {
-    private Map<String, io.jenkins.plugins.ml.jupyter.JupyterKernelInterpreter> kernelInterpreterMap = new HashMap();
+    // a kernel being opened is a pending future, other kernels are opened in parallel
+    private final ConcurrentMap<String, CompletableFuture<JupyterKernelInterpreter>> kernelInterpreterMap = new ConcurrentHashMap<>();
 
     public JupyterInterpreter(Properties properties) {
         super(properties);
@@ -40,32 +45,78 @@ public class JupyterInterpreter extends AbstractInterpreter {
         if (kernel == null) {
             return new InterpreterResult(Code.ERROR, "No kernel is specified");
         } else {
-            io.jenkins.plugins.ml.jupyter.JupyterKernelInterpreter kernelInterpreter = null;
-            synchronized (this.kernelInterpreterMap) {
-                if (this.kernelInterpreterMap.containsKey(kernel)) {
-                    kernelInterpreter = (io.jenkins.plugins.ml.jupyter.JupyterKernelInterpreter) this.kernelInterpreterMap.get(kernel);
-                } else {
-                    kernelInterpreter = new io.jenkins.plugins.ml.jupyter.JupyterKernelInterpreter(kernel, this.properties);
-                    kernelInterpreter.open();
-                    this.kernelInterpreterMap.put(kernel, kernelInterpreter);
-                }
+            return getOrOpenKernelInterpreter(kernel).interpret(st, context);
+        }
+    }
+
+    /**
+     * Gets the interpreter of the kernel, opening it in the calling thread when nobody else does.
+     * Callers asking for a kernel which is being opened wait for it.
+     */
+    private JupyterKernelInterpreter getOrOpenKernelInterpreter(String kernel) throws InterpreterException {
+        CompletableFuture<JupyterKernelInterpreter> opening = new CompletableFuture<>();
+        CompletableFuture<JupyterKernelInterpreter> existing = this.kernelInterpreterMap.putIfAbsent(kernel, opening);
+        if (existing != null) {
+            return await(existing);
+        }
+        JupyterKernelInterpreter kernelInterpreter = new JupyterKernelInterpreter(kernel, this.properties);
+        try {
+            kernelInterpreter.open();
+        } catch (InterpreterException | RuntimeException e) {
+            // a later call tries again
+            this.kernelInterpreterMap.remove(kernel, opening);
+            opening.completeExceptionally(e);
+            throw e;
+        }
+        opening.complete(kernelInterpreter);
+        return kernelInterpreter;
+    }
+
+    private static JupyterKernelInterpreter await(CompletableFuture<JupyterKernelInterpreter> future) throws InterpreterException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterpreterException("Interrupted while waiting for the kernel to be opened", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InterpreterException) {
+                throw (InterpreterException) e.getCause();
             }
+            throw new InterpreterException("Fail to open the kernel", e.getCause());
+        }
+    }
 
-            return kernelInterpreter.interpret(st, context);
+    /**
+     * Gets the interpreter of the kernel without waiting for it to be opened.
+     *
+     * @return the opened interpreter, null when the kernel is still being opened or failed to open
+     */
+    private JupyterKernelInterpreter getOpenedKernelInterpreter(String kernel) throws InterpreterException {
+        CompletableFuture<JupyterKernelInterpreter> future = this.kernelInterpreterMap.get(kernel);
+        if (future == null) {
+            throw new InterpreterException("No such interpreter: " + kernel);
+        }
+        if (!future.isDone() || future.isCompletedExceptionally()) {
+            return null;
         }
+        return future.join();
     }
 
     public void open() throws InterpreterException {
     }
 
     public void close() throws InterpreterException {
-        Iterator var1 = this.kernelInterpreterMap.values().iterator();
-
-        while (var1.hasNext()) {
-            io.jenkins.plugins.ml.jupyter.JupyterKernelInterpreter kernelInterpreter = (io.jenkins.plugins.ml.jupyter.JupyterKernelInterpreter) var1.next();
+        for (CompletableFuture<JupyterKernelInterpreter> future : this.kernelInterpreterMap.values()) {
+            JupyterKernelInterpreter kernelInterpreter;
+            try {
+                // a kernel being opened is closed once it is running
+                kernelInterpreter = await(future);
+            } catch (InterpreterException e) {
+                continue;
+            }
             kernelInterpreter.close();
         }
-
+        this.kernelInterpreterMap.clear();
     }
 
     public void cancel(InterpreterContext context) throws InterpreterException {
@@ -73,10 +124,8 @@ public class JupyterInterpreter extends AbstractInterpreter {
         if (kernel == null) {
             throw new InterpreterException("No kernel is specified");
         } else {
-            io.jenkins.plugins.ml.jupyter.JupyterKernelInterpreter kernelInterpreter = (io.jenkins.plugins.ml.jupyter.JupyterKernelInterpreter) this.kernelInterpreterMap.get(kernel);
-            if (kernelInterpreter == null) {
-                throw new InterpreterException("No such interpreter: " + kernel);
-            } else {
+            JupyterKernelInterpreter kernelInterpreter = getOpenedKernelInterpreter(kernel);
+            if (kernelInterpreter != null) {
                 kernelInterpreter.cancel(context);
             }
         }
@@ -91,12 +140,8 @@ public class JupyterInterpreter extends AbstractInterpreter {
         if (kernel == null) {
             throw new InterpreterException("No kernel is specified");
         } else {
-            io.jenkins.plugins.ml.jupyter.JupyterKernelInterpreter kernelInterpreter = (io.jenkins.plugins.ml.jupyter.JupyterKernelInterpreter) this.kernelInterpreterMap.get(kernel);
-            if (kernelInterpreter == null) {
-                throw new InterpreterException("No such interpreter: " + kernel);
-            } else {
-                return kernelInterpreter.getProgress(context);
-            }
+            JupyterKernelInterpreter kernelInterpreter = getOpenedKernelInterpreter(kernel);
+            return kernelInterpreter == null ? 0 : kernelInterpreter.getProgress(context);
         }
     }
 
@@ -105,12 +150,8 @@ public class JupyterInterpreter extends AbstractInterpreter {
         if (kernel == null) {
             throw new InterpreterException("No kernel is specified");
         } else {
-            io.jenkins.plugins.ml.jupyter.JupyterKernelInterpreter kernelInterpreter = (JupyterKernelInterpreter) this.kernelInterpreterMap.get(kernel);
-            if (kernelInterpreter == null) {
-                throw new InterpreterException("No such interpreter: " + kernel);
-            } else {
-                return kernelInterpreter.completion(buf, cursor, context);
-            }
+            JupyterKernelInterpreter kernelInterpreter = getOpenedKernelInterpreter(kernel);
+            return kernelInterpreter == null ? new ArrayList<>() : kernelInterpreter.completion(buf, cursor, context);
         }
     }
 }
@@ -17,8 +17,9 @@
 
 package io.jenkins.plugins.ml.jupyter;
 
-import io.grpc.ManagedChannelBuilder;
+import io.grpc.netty.NettyChannelBuilder;
 import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.ExecuteException;
 import org.apache.commons.exec.environment.EnvironmentUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -38,12 +39,13 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.net.URL;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Jupyter Kernel Interpreter for Zeppelin. One instance of this class represents one
@@ -57,10 +59,14 @@ import java.util.Properties;
 public class JupyterKernelInterpreter extends AbstractInterpreter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JupyterKernelInterpreter.class);
+    // printed by kernel_launcher.py once the kernel is running
+    private static final String KERNEL_READY_MARKER = "JENKINS_KERNEL_READY";
     protected JupyterKernelClient jupyterKernelClient;
     protected ZeppelinContext z;
     // working directory of jupyter kernel
     protected File kernelWorkDir;
+    // directory of the unix domain socket of the kernel server, null when it listens on a TCP port
+    private File kernelSocketDir;
     private JupyterKernelProcessLauncher jupyterKernelProcessLauncher;
     private String kernel;
     // python executable file for launching the jupyter kernel
@@ -111,17 +117,30 @@ public class JupyterKernelInterpreter extends AbstractInterpreter {
             kernelLaunchTimeout = Integer.parseInt(
                     getProperty("zeppelin.jupyter.kernel.launch.timeout", "30000"));
             this.z = buildZeppelinContext();
-            int kernelPort = RemoteInterpreterUtils.findRandomAvailablePortOnAllLocalInterfaces();
             int message_size = Integer.parseInt(getProperty("zeppelin.jupyter.kernel.grpc.message_size",
                     32 * 1024 * 1024 + ""));
-
-            ManagedChannelBuilder builder = ManagedChannelBuilder
-                    .forAddress("127.0.0.1", kernelPort)
-                    .usePlaintext(true)
-                    .maxInboundMessageSize(message_size);
+            int flowControlWindow = Integer.parseInt(getProperty("jenkins.plugin.kernel.grpc.flow_control_window",
+                    NettyChannelBuilder.DEFAULT_FLOW_CONTROL_WINDOW + ""));
+            long keepAliveTime = Long.parseLong(getProperty("jenkins.plugin.kernel.grpc.keepalive_time", "0"));
+
+            String kernelAddress;
+            NettyChannelBuilder builder;
+            File kernelSocket = createKernelSocket();
+            if (kernelSocket != null) {
+                // a socket per kernel, nobody else can take it between choosing and binding it
+                kernelAddress = "unix:" + kernelSocket.getAbsolutePath();
+                builder = KernelChannels.forDomainSocket(kernelSocket);
+            } else {
+                int kernelPort = RemoteInterpreterUtils.findRandomAvailablePortOnAllLocalInterfaces();
+                kernelAddress = String.valueOf(kernelPort);
+                builder = KernelChannels.forPort(kernelPort);
+            }
+            KernelChannels.configure(builder, message_size, flowControlWindow, keepAliveTime);
             jupyterKernelClient = new JupyterKernelClient(builder, getProperties());
-            launchJupyterKernel(kernelPort);
+            launchJupyterKernel(kernelAddress);
         } catch (Exception e) {
+            FileUtils.deleteQuietly(kernelSocketDir);
+            kernelSocketDir = null;
             throw new InterpreterException("Fail to open JupyterKernelInterpreter:\n" +
                     ExceptionUtils.getStackTrace(e), e);
         }
@@ -130,11 +149,26 @@ public class JupyterKernelInterpreter extends AbstractInterpreter {
     /**
      * non-empty return value mean the errors when checking kernel prerequisite.
      * empty value mean kernel prerequisite is met.
+     * Successful checks are cached on the agent until the python environment changes.
      *
      * @param pythonExec string for python executable
      * @return check result of checking kernel prerequisite.
      */
     public String checkKernelPrerequisite(String pythonExec) {
+        if (Boolean.parseBoolean(getProperty("jenkins.plugin.kernel.prerequisite.skip", "false"))) {
+            LOGGER.info("Prerequisite check for kernel " + getKernelName() + " is skipped");
+            return "";
+        }
+        try {
+            return KernelPrerequisiteCache.get().check(pythonExec, getRequiredPackages(),
+                    () -> runKernelPrerequisiteCheck(pythonExec));
+        } catch (Exception e) {
+            LOGGER.warn("Fail to checkKernelPrerequisite", e);
+            return "Fail to checkKernelPrerequisite: " + ExceptionUtils.getStackTrace(e);
+        }
+    }
+
+    private String runKernelPrerequisiteCheck(String pythonExec) {
         ProcessBuilder processBuilder = new ProcessBuilder(pythonExec, "-m", "pip", "freeze");
         File stderrFile = null;
         File stdoutFile = null;
@@ -170,25 +204,42 @@ public class JupyterKernelInterpreter extends AbstractInterpreter {
         return "";
     }
 
-    private void launchJupyterKernel(int kernelPort)
-            throws IOException {
-        LOGGER.info("Launching Jupyter Kernel at port: " + kernelPort);
-        // copy the python scripts to a temp directory, then launch jupyter kernel in that folder
-        this.kernelWorkDir = Files.createTempDirectory(
-                "zeppelin_jupyter_kernel_" + getKernelName()).toFile();
-        String[] kernelScripts = {"kernel_server.py", "kernel_pb2.py", "kernel_pb2_grpc.py"};
-        for (String kernelScript : kernelScripts) {
-            URL url = getClass().getClassLoader().getResource("grpc/jupyter"
-                    + "/" + kernelScript);
-            FileUtils.copyURLToFile(url, new File(kernelWorkDir, kernelScript));
+    /**
+     * Creates the unix domain socket of the kernel server in a directory of its own.
+     *
+     * @return the socket file, null when the kernel server is reached over TCP
+     */
+    private File createKernelSocket() throws IOException {
+        if (!KernelChannels.isDomainSocketAvailable()) {
+            return null;
         }
+        kernelSocketDir = Files.createTempDirectory("jenkins-ml-kernel").toFile();
+        File kernelSocket = new File(kernelSocketDir, "kernel.sock");
+        if (!KernelChannels.isValidSocketPath(kernelSocket)) {
+            LOGGER.warn("Path of the kernel socket is too long, falling back to TCP: " + kernelSocket);
+            FileUtils.deleteQuietly(kernelSocketDir);
+            kernelSocketDir = null;
+            return null;
+        }
+        return kernelSocket;
+    }
+
+    private void launchJupyterKernel(String kernelAddress)
+            throws IOException {
+        LOGGER.info("Launching Jupyter Kernel at: " + kernelAddress);
+        // the python scripts are staged once per plugin version and python executable
+        this.kernelWorkDir = KernelScripts.stage(pythonExecutable);
 
         CommandLine cmd = CommandLine.parse(pythonExecutable);
-        cmd.addArgument(kernelWorkDir.getAbsolutePath() + "/kernel_server.py");
+        cmd.addArgument(kernelWorkDir.getAbsolutePath() + "/kernel_launcher.py");
         cmd.addArgument(getKernelName());
-        cmd.addArgument(kernelPort + "");
+        cmd.addArgument(kernelAddress);
 
         Map<String, String> envs = setupKernelEnv();
+        List<String> preloadModules = KernelZygote.parseModules(getProperty("jenkins.plugin.kernel.preload", ""));
+        if (!preloadModules.isEmpty()) {
+            useKernelZygote(envs, preloadModules);
+        }
         final String workingDirectory = getProperty("jenkins.plugin.working.directory");
         jupyterKernelProcessLauncher = new JupyterKernelProcessLauncher(cmd, envs, workingDirectory);
         jupyterKernelProcessLauncher.launch();
@@ -204,6 +255,23 @@ public class JupyterKernelInterpreter extends AbstractInterpreter {
         }
     }
 
+    /**
+     * Lets the kernel server fork the kernel from a zygote which already imported the modules.
+     * Falls back to launching a new kernel process when the zygote is not available.
+     */
+    private void useKernelZygote(Map<String, String> envs, List<String> preloadModules) {
+        if (!KernelZygote.isSupported()) {
+            LOGGER.warn("Kernel zygote is not supported on this platform, the modules are not preloaded");
+            return;
+        }
+        try {
+            KernelZygote zygote = KernelZygote.get(pythonExecutable, getKernelName(), preloadModules);
+            envs.put(KernelZygote.SOCKET_ENV, zygote.getSocketPath());
+        } catch (IOException e) {
+            LOGGER.warn("Kernel zygote is not available, launching a new kernel process", e);
+        }
+    }
+
     protected Map<String, String> setupKernelEnv() throws IOException {
         return EnvironmentUtils.getProcEnvironment();
     }
@@ -228,6 +296,10 @@ public class JupyterKernelInterpreter extends AbstractInterpreter {
             jupyterKernelProcessLauncher = null;
             LOGGER.info("Jupyter Kernel is killed");
         }
+        if (kernelSocketDir != null) {
+            FileUtils.deleteQuietly(kernelSocketDir);
+            kernelSocketDir = null;
+        }
     }
 
     @Override
@@ -309,6 +381,8 @@ public class JupyterKernelInterpreter extends AbstractInterpreter {
 
     public class JupyterKernelProcessLauncher extends ProcessLauncher {
 
+        private final CountDownLatch readyLatch = new CountDownLatch(1);
+
         JupyterKernelProcessLauncher(CommandLine commandLine,
                                      Map<String, String> envs,
                                      String workingDirectory) {
@@ -317,34 +391,37 @@ public class JupyterKernelInterpreter extends AbstractInterpreter {
 
         @Override
         public void waitForReady(int timeout) {
-            // wait until jupyter kernel is started or timeout
-            long startTime = System.currentTimeMillis();
-            while (state == State.LAUNCHED) {
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    LOGGER.error("Interrupted by something", e);
-                }
-
-                try {
-                    StatusResponse response = jupyterKernelClient.status(StatusRequest.newBuilder().build());
-                    if (response.getStatus() == KernelStatus.RUNNING) {
-                        LOGGER.info("Jupyter Kernel is Running");
-                        onProcessRunning();
-                        break;
-                    } else {
-                        LOGGER.info("Wait for Jupyter Kernel to be started");
-                    }
-                } catch (Exception e) {
-                    // ignore the exception, because is may happen when grpc server has not started yet.
-                    LOGGER.info("Wait for Jupyter Kernel to be started");
-                }
-
-                if ((System.currentTimeMillis() - startTime) > timeout) {
+            // wait until the kernel server reports that the kernel is started, the process exits or timeout
+            try {
+                if (!readyLatch.await(timeout, TimeUnit.MILLISECONDS) && state == State.LAUNCHED) {
                     onTimeout();
-                    break;
                 }
+            } catch (InterruptedException e) {
+                LOGGER.error("Interrupted while waiting for Jupyter Kernel to be started", e);
+                Thread.currentThread().interrupt();
+                onTimeout();
+            }
+        }
+
+        @Override
+        protected void onProcessOutput(String line) {
+            if (KERNEL_READY_MARKER.equals(line.trim()) && state == State.LAUNCHED) {
+                LOGGER.info("Jupyter Kernel is Running");
+                onProcessRunning();
+                readyLatch.countDown();
             }
         }
+
+        @Override
+        public void onProcessComplete(int exitValue) {
+            super.onProcessComplete(exitValue);
+            readyLatch.countDown();
+        }
+
+        @Override
+        public void onProcessFailed(ExecuteException e) {
+            super.onProcessFailed(e);
+            readyLatch.countDown();
+        }
     }
 }
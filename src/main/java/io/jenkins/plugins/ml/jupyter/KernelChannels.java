@@ -0,0 +1,183 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml.jupyter;
+
+import io.grpc.netty.NettyChannelBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.commons.lang3.SystemUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the gRPC channels between the plugin and the kernel servers. On Linux a kernel server listens on a unix
+ * domain socket, which avoids racing other launches for a free port and the loopback TCP overhead.
+ * <p>
+ * All channels of the agent JVM share one event loop group and one bounded executor, so the number of gRPC threads
+ * does not grow with the number of kernels.
+ */
+final class KernelChannels {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KernelChannels.class);
+    // the length of sun_path in sockaddr_un, including the terminating null
+    private static final int MAX_SOCKET_PATH_LENGTH = 107;
+    // grpc does not ping more often, kernel_launcher.py permits pings at this rate
+    private static final long MIN_KEEP_ALIVE_SECONDS = 10;
+
+    static final int EVENT_LOOP_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    static final int EXECUTOR_THREADS = Math.min(16, Math.max(4, Runtime.getRuntime().availableProcessors()));
+    static final String THREAD_NAME_PREFIX = "kernel-grpc";
+
+    private static Boolean domainSocketAvailable;
+    private static EventLoopGroup domainSocketEventLoopGroup;
+    private static EventLoopGroup tcpEventLoopGroup;
+    private static ExecutorService executor;
+
+    private KernelChannels() {
+    }
+
+    /**
+     * Whether kernel servers can be reached over a unix domain socket.
+     *
+     * @return true on Linux when the native epoll transport can be loaded
+     */
+    static synchronized boolean isDomainSocketAvailable() {
+        if (domainSocketAvailable == null) {
+            domainSocketAvailable = false;
+            if (SystemUtils.IS_OS_LINUX && !Boolean.getBoolean(KernelChannels.class.getName() + ".disableDomainSocket")) {
+                try {
+                    domainSocketAvailable = Epoll.isAvailable();
+                    if (!domainSocketAvailable) {
+                        LOGGER.info("Native epoll transport is not available, kernels are reached over TCP",
+                                Epoll.unavailabilityCause());
+                    }
+                } catch (LinkageError e) {
+                    LOGGER.info("Native epoll transport is not available, kernels are reached over TCP", e);
+                }
+            }
+        }
+        return domainSocketAvailable;
+    }
+
+    /**
+     * Whether the path fits in a unix domain socket address.
+     *
+     * @param socket the socket file
+     * @return true when the path is short enough
+     */
+    static boolean isValidSocketPath(File socket) {
+        return socket.getAbsolutePath().length() < MAX_SOCKET_PATH_LENGTH;
+    }
+
+    /**
+     * Creates the channel builder of a kernel server listening on a unix domain socket.
+     *
+     * @param socket the socket file
+     * @return the channel builder
+     */
+    static NettyChannelBuilder forDomainSocket(File socket) {
+        return NettyChannelBuilder.forAddress(new DomainSocketAddress(socket))
+                .eventLoopGroup(getDomainSocketEventLoopGroup())
+                .channelType(EpollDomainSocketChannel.class)
+                .executor(getExecutor())
+                .usePlaintext();
+    }
+
+    /**
+     * Creates the channel builder of a kernel server listening on a loopback TCP port.
+     *
+     * @param port the port
+     * @return the channel builder
+     */
+    static NettyChannelBuilder forPort(int port) {
+        return NettyChannelBuilder.forAddress("127.0.0.1", port)
+                .eventLoopGroup(getTcpEventLoopGroup())
+                .channelType(NioSocketChannel.class)
+                .executor(getExecutor())
+                .usePlaintext();
+    }
+
+    /**
+     * Applies the channel settings of the server.
+     *
+     * @param builder               the channel builder
+     * @param maxInboundMessageSize the max size of a message from the kernel server in bytes
+     * @param flowControlWindow     the HTTP/2 flow control window in bytes
+     * @param keepAliveTime         the keepalive ping interval in seconds, 0 to disable pings
+     * @return the channel builder
+     */
+    static NettyChannelBuilder configure(NettyChannelBuilder builder, int maxInboundMessageSize,
+                                         int flowControlWindow, long keepAliveTime) {
+        builder.maxInboundMessageSize(maxInboundMessageSize)
+                .flowControlWindow(flowControlWindow);
+        if (keepAliveTime > 0) {
+            builder.keepAliveTime(Math.max(keepAliveTime, MIN_KEEP_ALIVE_SECONDS), TimeUnit.SECONDS);
+        }
+        return builder;
+    }
+
+    private static synchronized EventLoopGroup getDomainSocketEventLoopGroup() {
+        if (domainSocketEventLoopGroup == null) {
+            domainSocketEventLoopGroup = new EpollEventLoopGroup(EVENT_LOOP_THREADS,
+                    new DefaultThreadFactory(THREAD_NAME_PREFIX + "-epoll", true));
+        }
+        return domainSocketEventLoopGroup;
+    }
+
+    private static synchronized EventLoopGroup getTcpEventLoopGroup() {
+        if (tcpEventLoopGroup == null) {
+            tcpEventLoopGroup = new NioEventLoopGroup(EVENT_LOOP_THREADS,
+                    new DefaultThreadFactory(THREAD_NAME_PREFIX + "-nio", true));
+        }
+        return tcpEventLoopGroup;
+    }
+
+    /**
+     * The executor of the gRPC callbacks, bounded in threads but not in queued callbacks because gRPC cannot handle
+     * rejected callbacks. The threads are daemons and exit when idle, they must not keep the agent alive.
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(EXECUTOR_THREADS, EXECUTOR_THREADS,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new DefaultThreadFactory(THREAD_NAME_PREFIX + "-executor", true));
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml.jupyter;
+
+import io.jenkins.plugins.ml.utils.AgentCache;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent cache of successful kernel prerequisite checks on an agent.
+ *
+ * An entry is keyed by the python executable found on the PATH and the required packages. It stays valid as long as
+ * the executable and the site-packages directories of that python keep their modification time and inode, which
+ * change whenever a package is installed or removed.
+ */
+public final class KernelPrerequisiteCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KernelPrerequisiteCache.class);
+    private static final String CACHE_FILE = "kernel-prerequisites.properties";
+    private static final String DIRECTORIES_SUFFIX = ".directories";
+    private static final String FINGERPRINT_SUFFIX = ".fingerprint";
+    private static final long SITE_LOOKUP_TIMEOUT_SECONDS = 60;
+    private static final String SITE_PACKAGES_SCRIPT = "import site, sysconfig\n"
+            + "paths = [sysconfig.get_paths()['purelib'], sysconfig.get_paths()['platlib']]\n"
+            + "try:\n"
+            + "    paths.append(site.getusersitepackages())\n"
+            + "except Exception:\n"
+            + "    pass\n"
+            + "print('\\n'.join(sorted(set(p for p in paths if p))))\n";
+
+    private static KernelPrerequisiteCache instance;
+
+    private final File cacheFile;
+    private Properties entries;
+
+    KernelPrerequisiteCache(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Gets the cache of this agent.
+     *
+     * @return the prerequisite cache
+     */
+    public static synchronized KernelPrerequisiteCache get() {
+        if (instance == null) {
+            instance = new KernelPrerequisiteCache(new File(AgentCache.getRoot(), CACHE_FILE));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the cached result of a prerequisite check, or runs the check when there is no valid entry.
+     * Only successful checks, an empty result, are stored.
+     *
+     * @param pythonExec       the python executable
+     * @param requiredPackages the packages required by the kernel
+     * @param check            the prerequisite check
+     * @return the check result, empty when the prerequisites are met
+     * @throws Exception when the check fails
+     */
+    public String check(String pythonExec, List<String> requiredPackages, Callable<String> check) throws Exception {
+        Path executable = resolveExecutable(pythonExec);
+        if (executable == null) {
+            // let the check report the missing executable
+            return check.call();
+        }
+        String key = executable + "#" + StringUtils.join(requiredPackages, ",");
+        synchronized (this) {
+            Properties cached = load();
+            String directories = cached.getProperty(key + DIRECTORIES_SUFFIX);
+            String fingerprint = cached.getProperty(key + FINGERPRINT_SUFFIX);
+            if (directories != null && fingerprint != null
+                    && fingerprint.equals(fingerprint(executable, split(directories)))) {
+                LOGGER.debug("Kernel prerequisite check of {} is cached", executable);
+                return "";
+            }
+        }
+        String result = check.call();
+        if (StringUtils.isEmpty(result)) {
+            List<String> directories = sitePackages(executable);
+            String fingerprint = fingerprint(executable, directories);
+            synchronized (this) {
+                Properties cached = load();
+                cached.setProperty(key + DIRECTORIES_SUFFIX, StringUtils.join(directories, File.pathSeparator));
+                cached.setProperty(key + FINGERPRINT_SUFFIX, fingerprint);
+                store(cached);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the executable on the PATH unless it is given as a path.
+     *
+     * @param pythonExec the python executable
+     * @return the absolute path of the executable, or null when it is not found
+     */
+    static Path resolveExecutable(String pythonExec) {
+        if (pythonExec.contains("/") || pythonExec.contains(File.separator)) {
+            Path path = Paths.get(pythonExec).toAbsolutePath().normalize();
+            return Files.isRegularFile(path) ? path : null;
+        }
+        String pathEnv = System.getenv("PATH");
+        if (pathEnv == null) {
+            return null;
+        }
+        boolean windows = File.pathSeparatorChar == ';';
+        for (String directory : pathEnv.split(File.pathSeparator)) {
+            if (directory.isEmpty()) {
+                continue;
+            }
+            Path candidate = Paths.get(directory, pythonExec).toAbsolutePath().normalize();
+            if (Files.isRegularFile(candidate) && Files.isExecutable(candidate)) {
+                return candidate;
+            }
+            if (windows) {
+                candidate = Paths.get(directory, pythonExec + ".exe").toAbsolutePath().normalize();
+                if (Files.isRegularFile(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds a fingerprint from the modification time and the file key (inode) of the executable and directories.
+     *
+     * @param executable  the python executable
+     * @param directories the site-packages directories
+     * @return the fingerprint
+     */
+    static String fingerprint(Path executable, List<String> directories) {
+        StringBuilder fingerprint = new StringBuilder();
+        appendAttributes(fingerprint, executable);
+        try {
+            appendAttributes(fingerprint, executable.toRealPath());
+        } catch (IOException e) {
+            fingerprint.append("missing;");
+        }
+        for (String directory : directories) {
+            appendAttributes(fingerprint, Paths.get(directory));
+        }
+        return fingerprint.toString();
+    }
+
+    private static void appendAttributes(StringBuilder fingerprint, Path path) {
+        fingerprint.append(path).append('=');
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            fingerprint.append(attributes.lastModifiedTime().toMillis())
+                    .append(',').append(attributes.fileKey());
+        } catch (IOException e) {
+            fingerprint.append("missing");
+        }
+        fingerprint.append(';');
+    }
+
+    private static List<String> sitePackages(Path executable) throws IOException, InterruptedException {
+        // written to a file, reading a pipe would block on a hung interpreter before the timeout applies
+        Path outputFile = Files.createTempFile("site-packages", ".txt");
+        String output;
+        try {
+            Process process = new ProcessBuilder(executable.toString(), "-c", SITE_PACKAGES_SCRIPT)
+                    .redirectErrorStream(true)
+                    .redirectOutput(outputFile.toFile())
+                    .start();
+            if (!process.waitFor(SITE_LOOKUP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("Timed out while looking up site-packages of " + executable);
+            }
+            output = new String(Files.readAllBytes(outputFile), StandardCharsets.UTF_8);
+            if (process.exitValue() != 0) {
+                throw new IOException("Fail to look up site-packages of " + executable + ":\n" + output);
+            }
+        } finally {
+            Files.deleteIfExists(outputFile);
+        }
+        List<String> directories = new ArrayList<>();
+        for (String line : output.split("\\r?\\n")) {
+            if (!line.trim().isEmpty()) {
+                directories.add(line.trim());
+            }
+        }
+        return directories;
+    }
+
+    private static List<String> split(String directories) {
+        if (directories.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>();
+        Collections.addAll(result, directories.split(File.pathSeparator));
+        return result;
+    }
+
+    private Properties load() {
+        if (entries == null) {
+            entries = new Properties();
+            try (InputStream in = Files.newInputStream(cacheFile.toPath())) {
+                entries.load(in);
+            } catch (NoSuchFileException e) {
+                // nothing cached yet
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read kernel prerequisite cache {}", cacheFile, e);
+            }
+        }
+        return entries;
+    }
+
+    private void store(Properties cached) {
+        try {
+            Files.createDirectories(cacheFile.getParentFile().toPath());
+            Path temp = Files.createTempFile(cacheFile.getParentFile().toPath(), CACHE_FILE, ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    cached.store(out, "Kernel prerequisite checks");
+                }
+                Files.move(temp, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write kernel prerequisite cache {}", cacheFile, e);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml.jupyter;
+
+import hudson.Util;
+import io.jenkins.plugins.ml.utils.AgentCache;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stages the python scripts of the kernel server once into a content addressed, read-only directory of the agent
+ * cache. The directory name is the digest of the scripts and the python executable, so every launch with the same
+ * plugin version and python reuses the same directory and its precompiled bytecode.
+ */
+final class KernelScripts {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KernelScripts.class);
+    private static final String CACHE_DIRECTORY = "kernel-scripts";
+    // per launch directories created by previous versions of the plugin
+    private static final String LEGACY_DIRECTORY_PREFIX = "zeppelin_jupyter_kernel_";
+    private static final long LEGACY_DIRECTORY_MAX_AGE = TimeUnit.HOURS.toMillis(1);
+    private static final long COMPILE_TIMEOUT_SECONDS = 60;
+
+    private static final Map<String, File> staged = new LinkedHashMap<>();
+    private static boolean legacyDirectoriesCleaned;
+
+    private KernelScripts() {
+    }
+
+    /**
+     * Gets the directory holding the kernel scripts for the python executable, staging it when necessary.
+     *
+     * @param pythonExecutable the python executable launching the kernel server
+     * @return the read-only directory with the kernel scripts
+     * @throws IOException when the scripts cannot be staged
+     */
+    static synchronized File stage(String pythonExecutable) throws IOException {
+        File directory = staged.get(pythonExecutable);
+        if (directory != null && directory.isDirectory()) {
+            return directory;
+        }
+        cleanLegacyDirectories();
+
+        Map<String, byte[]> scripts = readScripts();
+        File parent = AgentCache.getDirectory(CACHE_DIRECTORY);
+        directory = new File(parent, digest(pythonExecutable, scripts.values(), scripts.keySet()));
+        if (!directory.isDirectory()) {
+            Path temp = Files.createTempDirectory(parent.toPath(), directory.getName() + ".tmp");
+            try {
+                for (Map.Entry<String, byte[]> script : scripts.entrySet()) {
+                    Files.write(temp.resolve(script.getKey()), script.getValue());
+                }
+                compile(pythonExecutable, temp.toFile());
+                makeReadOnly(temp.toFile());
+                Files.move(temp, directory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                LOGGER.info("Staged kernel scripts to {}", directory);
+            } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                // staged concurrently by another agent process
+                LOGGER.debug("Kernel scripts are already staged to {}", directory);
+            } finally {
+                if (Files.exists(temp)) {
+                    makeWritable(temp.toFile());
+                    FileUtils.deleteQuietly(temp.toFile());
+                }
+            }
+        }
+        staged.put(pythonExecutable, directory);
+        return directory;
+    }
+
+    private static Map<String, byte[]> readScripts() throws IOException {
+        Map<String, byte[]> scripts = new LinkedHashMap<>();
+        for (String kernelScript : new String[]{"kernel_server.py", "kernel_pb2.py", "kernel_pb2_grpc.py"}) {
+            scripts.put(kernelScript, read(KernelScripts.class.getClassLoader().getResource("grpc/jupyter/" + kernelScript)));
+        }
+        for (String launcherScript : new String[]{"kernel_launcher.py", "kernel_zygote.py"}) {
+            scripts.put(launcherScript, read(KernelScripts.class.getResource(launcherScript)));
+        }
+        return scripts;
+    }
+
+    private static byte[] read(URL url) throws IOException {
+        if (url == null) {
+            throw new IOException("Kernel script is missing from the plugin");
+        }
+        try (InputStream in = url.openStream()) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    private static String digest(String pythonExecutable, Collection<byte[]> contents, Collection<String> names) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            Path executable = KernelPrerequisiteCache.resolveExecutable(pythonExecutable);
+            digest.update((executable != null ? executable.toString() : pythonExecutable).getBytes(StandardCharsets.UTF_8));
+            for (String name : names) {
+                digest.update(name.getBytes(StandardCharsets.UTF_8));
+            }
+            for (byte[] content : contents) {
+                digest.update(content);
+            }
+            return Util.toHexString(digest.digest()).substring(0, 32);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void compile(String pythonExecutable, File directory) {
+        try {
+            Process process = new ProcessBuilder(pythonExecutable, "-m", "compileall", "-q", directory.getAbsolutePath())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            if (!process.waitFor(COMPILE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                LOGGER.warn("Timed out while compiling kernel scripts");
+            } else if (process.exitValue() != 0) {
+                LOGGER.warn("Failed to compile kernel scripts, exit value {}", process.exitValue());
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to compile kernel scripts", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void makeReadOnly(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                makeReadOnly(child);
+            }
+        }
+        if (!file.setWritable(false, false)) {
+            LOGGER.debug("Failed to make {} read-only", file);
+        }
+    }
+
+    private static void makeWritable(File file) {
+        if (!file.setWritable(true)) {
+            LOGGER.debug("Failed to make {} writable", file);
+        }
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                makeWritable(child);
+            }
+        }
+    }
+
+    /**
+     * Deletes stale per launch directories of the kernel scripts left in the temp directory by older versions.
+     */
+    private static void cleanLegacyDirectories() {
+        if (legacyDirectoriesCleaned) {
+            return;
+        }
+        legacyDirectoriesCleaned = true;
+        long threshold = System.currentTimeMillis() - LEGACY_DIRECTORY_MAX_AGE;
+        Path temp = Paths.get(System.getProperty("java.io.tmpdir"));
+        int deleted = 0;
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(temp, LEGACY_DIRECTORY_PREFIX + "*")) {
+            for (Path directory : directories) {
+                File file = directory.toFile();
+                if (file.isDirectory() && file.lastModified() < threshold && FileUtils.deleteQuietly(file)) {
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to clean stale kernel directories in {}", temp, e);
+        }
+        if (deleted > 0) {
+            LOGGER.info("Deleted {} stale kernel directories in {}", deleted, temp);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml.jupyter;
+
+import io.jenkins.plugins.ml.util.ProcessLauncher;
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.ExecuteException;
+import org.apache.commons.exec.environment.EnvironmentUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A python process which imports heavy modules once and forks the ipykernel of every kernel launched with the same
+ * python executable, kernel and modules. Forked kernels start with the modules already imported.
+ * One zygote runs per configuration and agent JVM, it is relaunched when it exits.
+ */
+public final class KernelZygote {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KernelZygote.class);
+    // environment variable telling kernel_launcher.py to request the kernel from the zygote
+    static final String SOCKET_ENV = "JENKINS_ML_ZYGOTE";
+    // printed by kernel_zygote.py
+    private static final String READY_MARKER = "JENKINS_ZYGOTE_READY";
+    private static final String FORK_MARKER = "JENKINS_ZYGOTE_FORK";
+    // importing the modules may take much longer than launching a kernel
+    private static final int LAUNCH_TIMEOUT = (int) TimeUnit.MINUTES.toMillis(5);
+
+    private static final Map<String, KernelZygote> zygotes = new LinkedHashMap<>();
+    private static File socketDirectory;
+
+    private final String pythonExecutable;
+    private final String kernelName;
+    private final List<String> modules;
+    private final File socket;
+    private ZygoteProcessLauncher launcher;
+
+    private volatile long pid = -1;
+    private volatile long preloadMillis;
+    private volatile long launchedAt;
+    private volatile String failedModules = "";
+    private volatile double lastForkMillis;
+    private final AtomicLong launches = new AtomicLong();
+    private final AtomicLong forks = new AtomicLong();
+    private final AtomicLong forkMicros = new AtomicLong();
+
+    private KernelZygote(String pythonExecutable, String kernelName, List<String> modules, File socket) {
+        this.pythonExecutable = pythonExecutable;
+        this.kernelName = kernelName;
+        this.modules = modules;
+        this.socket = socket;
+    }
+
+    /**
+     * Whether kernels can be forked on this platform.
+     *
+     * @return false on windows
+     */
+    public static boolean isSupported() {
+        return !SystemUtils.IS_OS_WINDOWS;
+    }
+
+    /**
+     * Parses the modules to preload, separated by commas or whitespace.
+     *
+     * @param modules the modules
+     * @return the distinct module names, empty when nothing is preloaded
+     */
+    public static List<String> parseModules(String modules) {
+        Set<String> parsed = new LinkedHashSet<>();
+        if (modules != null) {
+            for (String module : modules.split("[,\\s]+")) {
+                if (!module.isEmpty()) {
+                    parsed.add(module);
+                }
+            }
+        }
+        return new ArrayList<>(parsed);
+    }
+
+    /**
+     * Gets the running zygote of the configuration, launching it when necessary.
+     *
+     * @param pythonExecutable the python executable of the kernel
+     * @param kernelName       the kernel name
+     * @param modules          the modules to preload
+     * @return the running zygote
+     * @throws IOException when the zygote cannot be launched
+     */
+    static KernelZygote get(String pythonExecutable, String kernelName, List<String> modules) throws IOException {
+        KernelZygote zygote;
+        synchronized (KernelZygote.class) {
+            String key = pythonExecutable + '\u0000' + kernelName + '\u0000' + String.join(",", modules);
+            zygote = zygotes.get(key);
+            if (zygote == null) {
+                if (socketDirectory == null) {
+                    socketDirectory = Files.createTempDirectory("jenkins-ml-zygote").toFile();
+                    Runtime.getRuntime().addShutdownHook(new Thread(KernelZygote::shutdownAll, "kernel-zygote-shutdown"));
+                }
+                zygote = new KernelZygote(pythonExecutable, kernelName, modules,
+                        new File(socketDirectory, zygotes.size() + ".sock"));
+                zygotes.put(key, zygote);
+            }
+        }
+        zygote.ensureRunning();
+        return zygote;
+    }
+
+    /**
+     * Describes the lifecycle, memory use and fork latency of the zygotes of this agent.
+     *
+     * @return one line per zygote
+     */
+    public static List<String> describe() {
+        List<KernelZygote> all;
+        synchronized (KernelZygote.class) {
+            all = new ArrayList<>(zygotes.values());
+        }
+        List<String> lines = new ArrayList<>();
+        for (KernelZygote zygote : all) {
+            lines.add(zygote.toString());
+        }
+        return lines;
+    }
+
+    String getSocketPath() {
+        return socket.getAbsolutePath();
+    }
+
+    private synchronized void ensureRunning() throws IOException {
+        if (launcher != null && launcher.isRunning()) {
+            return;
+        }
+        if (launcher != null) {
+            LOGGER.warn("Kernel zygote {} is not running, relaunching it", pid);
+        }
+        File scripts = KernelScripts.stage(pythonExecutable);
+        CommandLine cmd = CommandLine.parse(pythonExecutable);
+        cmd.addArgument(new File(scripts, "kernel_zygote.py").getAbsolutePath());
+        cmd.addArgument(socket.getAbsolutePath());
+        cmd.addArgument(kernelName);
+        if (!modules.isEmpty()) {
+            cmd.addArgument(String.join(",", modules));
+        }
+        launcher = new ZygoteProcessLauncher(cmd, EnvironmentUtils.getProcEnvironment(), scripts.getAbsolutePath());
+        launcher.launch();
+        launcher.waitForReady(LAUNCH_TIMEOUT);
+        if (!launcher.isRunning()) {
+            throw new IOException("Fail to launch kernel zygote for " + kernelName + ".\n" + launcher.getErrorMessage());
+        }
+        // the fork statistics are collected from the output, do not keep it in memory
+        launcher.stopCatchLaunchOutput();
+        launchedAt = System.currentTimeMillis();
+        launches.incrementAndGet();
+        LOGGER.info("Kernel zygote {} preloaded {} in {} ms", pid, modules, preloadMillis);
+        if (!failedModules.isEmpty()) {
+            LOGGER.warn("Kernel zygote {} failed to preload {}", pid, failedModules);
+        }
+    }
+
+    private void onReady(String line) {
+        for (String token : line.split(" ")) {
+            int separator = token.indexOf('=');
+            if (separator < 0) {
+                continue;
+            }
+            String value = token.substring(separator + 1);
+            switch (token.substring(0, separator)) {
+                case "pid":
+                    pid = Long.parseLong(value);
+                    break;
+                case "preload_ms":
+                    preloadMillis = Long.parseLong(value);
+                    break;
+                case "failed":
+                    failedModules = value;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void onFork(String line) {
+        for (String token : line.split(" ")) {
+            if (token.startsWith("fork_ms=")) {
+                double millis = Double.parseDouble(token.substring("fork_ms=".length()));
+                lastForkMillis = millis;
+                forks.incrementAndGet();
+                forkMicros.addAndGet((long) (millis * 1000));
+            }
+        }
+    }
+
+    /**
+     * Resident memory of the zygote, shared copy-on-write with the forked kernels.
+     */
+    private String getResidentMemory() {
+        File status = new File("/proc/" + pid + "/status");
+        if (pid > 0 && status.isFile()) {
+            try {
+                for (String line : Files.readAllLines(status.toPath(), StandardCharsets.UTF_8)) {
+                    if (line.startsWith("VmRSS:")) {
+                        return line.substring("VmRSS:".length()).trim();
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Failed to read the memory of kernel zygote {}", pid, e);
+            }
+        }
+        return "unknown";
+    }
+
+    private synchronized void stop() {
+        if (launcher != null) {
+            launcher.stop();
+            launcher = null;
+        }
+    }
+
+    private static void shutdownAll() {
+        List<KernelZygote> all;
+        synchronized (KernelZygote.class) {
+            all = new ArrayList<>(zygotes.values());
+        }
+        for (KernelZygote zygote : all) {
+            zygote.stop();
+        }
+        FileUtils.deleteQuietly(socketDirectory);
+    }
+
+    @Override
+    public String toString() {
+        boolean running;
+        synchronized (this) {
+            running = launcher != null && launcher.isRunning();
+        }
+        long forkCount = forks.get();
+        return String.format("Kernel zygote %s %s: %s, pid %d, up %d s, launched %d times, preload %d ms%s, " +
+                        "%d forks, last fork %.1f ms, mean fork %.1f ms, RSS %s",
+                kernelName, modules, running ? "running" : "stopped", pid,
+                running ? TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - launchedAt) : 0,
+                launches.get(), preloadMillis, failedModules.isEmpty() ? "" : " (failed " + failedModules + ")",
+                forkCount, lastForkMillis, forkCount == 0 ? 0 : forkMicros.get() / 1000.0 / forkCount,
+                running ? getResidentMemory() : "unknown");
+    }
+
+    private final class ZygoteProcessLauncher extends ProcessLauncher {
+
+        private final CountDownLatch readyLatch = new CountDownLatch(1);
+
+        ZygoteProcessLauncher(CommandLine commandLine, Map<String, String> envs, String workingDirectory) {
+            super(commandLine, envs, workingDirectory);
+        }
+
+        @Override
+        public void waitForReady(int timeout) {
+            try {
+                if (!readyLatch.await(timeout, TimeUnit.MILLISECONDS) && state == State.LAUNCHED) {
+                    onTimeout();
+                }
+            } catch (InterruptedException e) {
+                LOGGER.error("Interrupted while waiting for the kernel zygote to be started", e);
+                Thread.currentThread().interrupt();
+                onTimeout();
+            }
+        }
+
+        @Override
+        protected void onProcessOutput(String line) {
+            if (line.startsWith(FORK_MARKER)) {
+                onFork(line);
+            } else if (line.startsWith(READY_MARKER) && state == State.LAUNCHED) {
+                onReady(line);
+                onProcessRunning();
+                readyLatch.countDown();
+            }
+        }
+
+        @Override
+        public void onProcessComplete(int exitValue) {
+            super.onProcessComplete(exitValue);
+            readyLatch.countDown();
+        }
+
+        @Override
+        public void onProcessFailed(ExecuteException e) {
+            super.onProcessFailed(e);
+            readyLatch.countDown();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml.model;
+
+import java.io.Serializable;
+
+/**
+ * The result of a notebook cell.
+ */
+public class CellResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The status of a cell.
+     */
+    public enum Status {
+        /**
+         * The cell succeeded.
+         */
+        SUCCESS,
+        /**
+         * The cell failed.
+         */
+        ERROR,
+        /**
+         * The cell failed as expected by its raises-exception tag.
+         */
+        EXPECTED_ERROR,
+        /**
+         * The cell was skipped by its skip-execution tag.
+         */
+        SKIPPED,
+        /**
+         * The outputs of the cell were replayed from the cell cache.
+         */
+        CACHED,
+        /**
+         * The cell was interrupted by the cell or the notebook timeout.
+         */
+        TIMEOUT
+    }
+
+    private final int index;
+    private final Status status;
+    private final long duration;
+
+    /**
+     * Instantiates a new Cell result.
+     *
+     * @param index    the index of the cell in the notebook
+     * @param status   the status
+     * @param duration the duration in milli seconds
+     */
+    public CellResult(int index, Status status, long duration) {
+        this.index = index;
+        this.status = status;
+        this.duration = duration;
+    }
+
+    /**
+     * Gets index.
+     *
+     * @return the index of the cell in the notebook
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets status.
+     *
+     * @return the status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets duration.
+     *
+     * @return the duration in milli seconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+}
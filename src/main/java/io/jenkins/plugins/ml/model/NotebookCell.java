@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A cell of a notebook, code cells unless the type says otherwise.
+ */
+public class NotebookCell {
+
+    /**
+     * nbformat tag of a cell which is expected to raise an exception.
+     */
+    public static final String TAG_RAISES_EXCEPTION = "raises-exception";
+    /**
+     * nbformat tag of a cell which is not executed.
+     */
+    public static final String TAG_SKIP_EXECUTION = "skip-execution";
+    /**
+     * nbformat type of a code cell.
+     */
+    public static final String TYPE_CODE = "code";
+    /**
+     * nbformat type of a markdown cell.
+     */
+    public static final String TYPE_MARKDOWN = "markdown";
+
+    private final int index;
+    private final String type;
+    private final String source;
+    private final List<String> tags;
+
+    /**
+     * Instantiates a new Notebook cell.
+     *
+     * @param index  the index of the cell in the notebook, markdown cells included
+     * @param type   the nbformat cell type, e.g. code or markdown
+     * @param source the source
+     * @param tags   the tags of the cell
+     */
+    public NotebookCell(int index, String type, String source, List<String> tags) {
+        this.index = index;
+        this.type = type;
+        this.source = source;
+        this.tags = tags;
+    }
+
+    /**
+     * Instantiates a new code cell.
+     *
+     * @param index  the index of the cell in the notebook, markdown cells included
+     * @param source the source code
+     * @param tags   the tags of the cell
+     */
+    public NotebookCell(int index, String source, List<String> tags) {
+        this(index, TYPE_CODE, source, tags);
+    }
+
+    /**
+     * Instantiates a new Notebook cell without tags.
+     *
+     * @param index  the index of the cell in the notebook
+     * @param source the source code
+     */
+    public NotebookCell(int index, String source) {
+        this(index, source, Collections.emptyList());
+    }
+
+    /**
+     * Gets index.
+     *
+     * @return the index of the cell in the notebook
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets type.
+     *
+     * @return the nbformat cell type
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Is code boolean.
+     *
+     * @return true for a code cell
+     */
+    public boolean isCode() {
+        return TYPE_CODE.equals(type);
+    }
+
+    /**
+     * Gets source.
+     *
+     * @return the source code
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Gets tags.
+     *
+     * @return the tags
+     */
+    public List<String> getTags() {
+        return tags;
+    }
+
+    /**
+     * Has tag boolean.
+     *
+     * @param tag the tag
+     * @return true when the cell is tagged
+     */
+    public boolean hasTag(String tag) {
+        return tags.contains(tag);
+    }
+}
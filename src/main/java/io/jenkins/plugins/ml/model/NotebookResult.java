@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of the cells of a notebook run by a build step.
+ */
+public class NotebookResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String notebook;
+    private final List<CellResult> cells = new ArrayList<>();
+    private int totalCells;
+    private boolean aborted;
+    private LinkedHashMap<String, String> parameters;
+
+    /**
+     * Instantiates a new Notebook result.
+     *
+     * @param notebook the notebook path, or the task of inline code
+     */
+    public NotebookResult(String notebook) {
+        this.notebook = notebook;
+    }
+
+    /**
+     * Gets notebook.
+     *
+     * @return the notebook path
+     */
+    public String getNotebook() {
+        return notebook;
+    }
+
+    /**
+     * Gets the results of the cells which were run or skipped.
+     *
+     * @return the cell results
+     */
+    public List<CellResult> getCells() {
+        return cells;
+    }
+
+    /**
+     * Adds the result of a cell.
+     *
+     * @param cell the cell result
+     */
+    public void addCell(CellResult cell) {
+        cells.add(cell);
+    }
+
+    /**
+     * Gets the number of code cells of the notebook.
+     *
+     * @return the total cells
+     */
+    public int getTotalCells() {
+        return totalCells;
+    }
+
+    /**
+     * Sets the number of code cells of the notebook.
+     *
+     * @param totalCells the total cells
+     */
+    public void setTotalCells(int totalCells) {
+        this.totalCells = totalCells;
+    }
+
+    /**
+     * Whether the notebook could not be run, e.g. the kernel failed.
+     *
+     * @return true when aborted
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * Marks the notebook as not run.
+     *
+     * @param aborted true when aborted
+     */
+    public void setAborted(boolean aborted) {
+        this.aborted = aborted;
+    }
+
+    /**
+     * Gets the parameters the notebook was run with.
+     *
+     * @return the parameters as python literals, empty when not parameterized
+     */
+    public Map<String, String> getParameters() {
+        return parameters == null ? Collections.emptyMap() : parameters;
+    }
+
+    /**
+     * Sets the parameters the notebook was run with.
+     *
+     * @param parameters the parameters as python literals
+     */
+    public void setParameters(Map<String, String> parameters) {
+        this.parameters = parameters.isEmpty() ? null : new LinkedHashMap<>(parameters);
+    }
+
+    /**
+     * Gets the first failed cell.
+     *
+     * @return the failed cell, null when no cell failed
+     */
+    public CellResult getFailedCell() {
+        for (CellResult cell : cells) {
+            if (cell.getStatus() == CellResult.Status.ERROR || cell.getStatus() == CellResult.Status.TIMEOUT) {
+                return cell;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether a cell failed or the notebook could not be run.
+     *
+     * @return true when failed
+     */
+    public boolean isFailed() {
+        return aborted || getFailedCell() != null;
+    }
+
+    /**
+     * Gets the time spent in the cells.
+     *
+     * @return the duration in milli seconds
+     */
+    public long getDuration() {
+        long duration = 0;
+        for (CellResult cell : cells) {
+            duration += cell.getDuration();
+        }
+        return duration;
+    }
+}
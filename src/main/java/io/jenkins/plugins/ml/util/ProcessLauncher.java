@@ -27,6 +27,7 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Abstract class for launching java process.
@@ -40,7 +41,7 @@ public abstract class ProcessLauncher implements ExecuteResultHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(ProcessLauncher.class);
     private final String workingDirectory;
     protected String errorMessage = null;
-    protected State state = State.NEW;
+    protected volatile State state = State.NEW;
     private CommandLine commandLine;
     private Map<String, String> envs;
     private ExecuteWatchdog watchdog;
@@ -53,6 +54,7 @@ public abstract class ProcessLauncher implements ExecuteResultHandler {
         this.commandLine = commandLine;
         this.envs = envs;
         this.processOutput = new ProcessLogOutputStream();
+        this.processOutput.lineListener = this::onProcessOutput;
         this.workingDirectory = workingDirectory;
     }
 
@@ -63,6 +65,7 @@ public abstract class ProcessLauncher implements ExecuteResultHandler {
         this.commandLine = commandLine;
         this.envs = envs;
         this.processOutput = processLogOutput;
+        this.processOutput.lineListener = this::onProcessOutput;
         this.workingDirectory = workingDirectory;
     }
 
@@ -116,6 +119,14 @@ public abstract class ProcessLauncher implements ExecuteResultHandler {
         transition(State.RUNNING);
     }
 
+    /**
+     * Called for every line printed by the process, e.g. to detect that the process is ready.
+     *
+     * @param line the output line
+     */
+    protected void onProcessOutput(String line) {
+    }
+
     @Override
     public void onProcessComplete(int exitValue) {
         LOGGER.warn("Process is exited with exit value " + exitValue);
@@ -177,6 +188,7 @@ public abstract class ProcessLauncher implements ExecuteResultHandler {
         private boolean catchLaunchOutput = true;
         private StringBuilder launchOutput = new StringBuilder();
         private InterpreterContext redirectedContext;
+        private Consumer<String> lineListener;
 
         public void stopCatchLaunchOutput() {
             this.catchLaunchOutput = false;
@@ -204,6 +216,9 @@ public abstract class ProcessLauncher implements ExecuteResultHandler {
                     e.printStackTrace();
                 }
             }
+            if (lineListener != null) {
+                lineListener.accept(s);
+            }
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * AgentCache - Locates the directories used by the plugin to keep data on an agent across builds.
+ * The root defaults to a folder in the home directory of the agent user and can be changed with the
+ * {@value #CACHE_DIRECTORY_PROPERTY} system property.
+ */
+public final class AgentCache {
+
+    /**
+     * System property to change the root directory of the agent cache.
+     */
+    public static final String CACHE_DIRECTORY_PROPERTY = AgentCache.class.getName() + ".directory";
+
+    private AgentCache() {
+    }
+
+    /**
+     * Gets the root directory of the agent cache.
+     *
+     * @return the root directory, may not exist yet
+     */
+    public static File getRoot() {
+        String directory = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+        if (directory != null && !directory.trim().isEmpty()) {
+            return new File(directory.trim());
+        }
+        return new File(System.getProperty("user.home"), ".jenkins-machine-learning");
+    }
+
+    /**
+     * Gets a sub directory of the agent cache, creating it when necessary.
+     *
+     * @param name the name of the sub directory
+     * @return the existing directory
+     * @throws IOException when the directory cannot be created
+     */
+    public static File getDirectory(String name) throws IOException {
+        File directory = new File(getRoot(), name);
+        Files.createDirectories(directory.toPath());
+        return directory;
+    }
+}
@@ -24,21 +24,21 @@
 
 package io.jenkins.plugins.ml.utils;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonElement;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import hudson.AbortException;
 import hudson.FilePath;
-import org.apache.zeppelin.jupyter.JupyterUtil;
-import org.apache.zeppelin.jupyter.zformat.Note;
-import org.apache.zeppelin.jupyter.zformat.Paragraph;
+import io.jenkins.plugins.ml.model.NotebookCell;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.List;
 
 
+/**
+ * Converts notebooks, every conversion streams the notebook through a {@link NotebookParser} so that the outputs
+ * embedded in a notebook are never parsed.
+ */
 public class ConvertHelper {
 
     /**
@@ -47,6 +47,7 @@ public class ConvertHelper {
      * code ace/mode/python
      */
     public static final String MARKDOWN_ANNOTATION = "ace/mode/markdown";
+    private static final String CODE_ANNOTATION = "ace/mode/python";
 
     /**
      * @param jupyterFile Path for the jupyter notebook
@@ -55,36 +56,41 @@ public class ConvertHelper {
      * @throws InterruptedException exception on input stream reading
      */
     public static String jupyterToText(FilePath jupyterFile) throws IOException, InterruptedException {
-        if (!jupyterFile.exists()) throw new AbortException("Invalid file");
-        // Convert Jupyter Notebook to JSON
-        try (final InputStreamReader inputStreamReader = new InputStreamReader(jupyterFile.read(), Charset.forName("UTF-8"))) {
-            Note n = new JupyterUtil().getNote(inputStreamReader, "python", "\n", "#");
-            StringBuilder outText = new StringBuilder();
-            for (Paragraph para : n.getParagraphs()) {
-                // skipping markdowns
-                if (para.getConfig().get("editorMode").equals(MARKDOWN_ANNOTATION)) continue;
-                outText.append(para.getText());
-            }
-            return outText.toString();
+        StringBuilder outText = new StringBuilder();
+        for (String text : jupyterToTextArray(jupyterFile)) {
+            outText.append(text);
         }
-
+        return outText.toString();
     }
 
     /**
      * @param jupyterFile Path for the jupyter notebook
-     * @return JSON object
+     * @return JSON object of a Zeppelin note named after the notebook file, the paragraphs have no results, raw cells
+     * are left out since Zeppelin would run them
      * @throws IOException when file path does not exist
      * @throws InterruptedException exception on input stream reading
      */
     public static JsonObject jupyterToJSON(FilePath jupyterFile) throws IOException, InterruptedException {
-        if (!jupyterFile.exists()) throw new AbortException("Invalid file");
-        try (final InputStreamReader inputStreamReader = new InputStreamReader(jupyterFile.read(), Charset.forName("UTF-8"))) {
-            Note n = new JupyterUtil().getNote(inputStreamReader, "python", "\n", "#");
-            Gson gson = new Gson();
-            JsonElement tree = gson.toJsonTree(n);
-            return tree.getAsJsonObject();
+        JsonArray paragraphs = new JsonArray();
+        try (NotebookParser parser = open(jupyterFile)) {
+            for (NotebookCell cell = parser.next(); cell != null; cell = parser.next()) {
+                boolean markdown = NotebookCell.TYPE_MARKDOWN.equals(cell.getType());
+                if (!markdown && !cell.isCode()) {
+                    continue;
+                }
+                JsonObject config = new JsonObject();
+                config.addProperty("editorMode", markdown ? MARKDOWN_ANNOTATION : CODE_ANNOTATION);
+                JsonObject paragraph = new JsonObject();
+                paragraph.addProperty("text", toParagraphText(markdown ? "#" : "\n", cell.getSource()));
+                paragraph.add("config", config);
+                paragraphs.add(paragraph);
+            }
         }
-
+        JsonObject note = new JsonObject();
+        note.add("paragraphs", paragraphs);
+        // the name Zeppelin gives to an imported note
+        note.addProperty("name", jupyterFile.getBaseName());
+        return note;
     }
 
     /**
@@ -94,18 +100,44 @@ public class ConvertHelper {
      * @throws InterruptedException exception on input stream reading
      */
     public static ArrayList<String> jupyterToTextArray(FilePath jupyterFile) throws IOException, InterruptedException {
-        if (!jupyterFile.exists()) throw new AbortException("Invalid file");
-        // Convert Jupyter Notebook to JSON
-        try (final InputStreamReader inputStreamReader = new InputStreamReader(jupyterFile.read(), Charset.forName("UTF-8"))) {
-            Note n = new JupyterUtil().getNote(inputStreamReader, "python", "\n", "#");
-            ArrayList outTextArray = new ArrayList();
-            for (Paragraph para : n.getParagraphs()) {
-                // skipping markdowns
-                if (para.getConfig().get("editorMode").equals(MARKDOWN_ANNOTATION)) continue;
-                outTextArray.add(para.getText());
-            }
-            return outTextArray;
+        ArrayList<String> outTextArray = new ArrayList<>();
+        for (NotebookCell cell : jupyterToCells(jupyterFile)) {
+            outTextArray.add(toParagraphText("\n", cell.getSource()));
         }
+        return outTextArray;
+    }
 
+    /**
+     * @param jupyterFile Path for the jupyter notebook
+     * @return Code cells with their index in the notebook and their tags
+     * @throws IOException          when file path does not exist
+     * @throws InterruptedException exception on input stream reading
+     */
+    public static List<NotebookCell> jupyterToCells(FilePath jupyterFile) throws IOException, InterruptedException {
+        try (NotebookParser parser = open(jupyterFile)) {
+            return parser.readCodeCells();
+        }
+    }
+
+    /**
+     * @param zeppelinFile Path for the Zeppelin note
+     * @return Code paragraphs with their index in the note
+     * @throws IOException          when file path does not exist
+     * @throws InterruptedException exception on input stream reading
+     */
+    public static List<NotebookCell> zeppelinToCells(FilePath zeppelinFile) throws IOException, InterruptedException {
+        return jupyterToCells(zeppelinFile);
+    }
+
+    private static NotebookParser open(FilePath file) throws IOException, InterruptedException {
+        if (!file.exists()) throw new AbortException("Invalid file");
+        return new NotebookParser(file.read(), file.getName());
+    }
+
+    /**
+     * Text of a paragraph the way Zeppelin converts a cell, the interpreter line followed by the source.
+     */
+    private static String toParagraphText(String interpreter, String source) {
+        return interpreter + "\n" + source + (source.isEmpty() || source.endsWith("\n") ? "" : "\n");
     }
 }
@@ -0,0 +1,232 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * DiskLruStore - A bounded store of files in the agent cache, keyed by hex digests. Reading an entry marks it as
+ * recently used by touching it, the least recently used entries are deleted once the store outgrows its size.
+ * Entries are written to a temporary file and moved in place, so a reader never sees a partial entry.
+ */
+public final class DiskLruStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiskLruStore.class);
+    private static final Map<String, DiskLruStore> STORES = new HashMap<>();
+    private static final Pattern KEY = Pattern.compile("^[0-9a-f]{8,128}$");
+
+    private final File directory;
+    private volatile long maxBytes;
+    // approximate, the store is rescanned when it seems full
+    private long size;
+    private long hits;
+    private long misses;
+
+    DiskLruStore(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.size = scan().stream().mapToLong(File::length).sum();
+        // left behind by agents which stopped while writing an entry
+        long threshold = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+        File[] temporaryFiles = directory.listFiles((dir, name) -> name.endsWith(".tmp"));
+        if (temporaryFiles != null) {
+            for (File temporaryFile : temporaryFiles) {
+                if (temporaryFile.lastModified() < threshold && !temporaryFile.delete()) {
+                    LOGGER.debug("Failed to delete {}", temporaryFile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the store of a sub directory of the agent cache.
+     *
+     * @param name     the name of the sub directory
+     * @param maxBytes the size of the store, the latest size wins when the store is shared
+     * @return the store
+     * @throws IOException when the directory cannot be created
+     */
+    public static synchronized DiskLruStore get(String name, long maxBytes) throws IOException {
+        DiskLruStore store = STORES.get(name);
+        if (store == null) {
+            store = new DiskLruStore(AgentCache.getDirectory(name), maxBytes);
+            STORES.put(name, store);
+        }
+        store.maxBytes = maxBytes;
+        return store;
+    }
+
+    /**
+     * Gets an entry and marks it as recently used.
+     *
+     * @param key the hex digest of the entry
+     * @return the file of the entry, null when missing
+     */
+    public synchronized File get(String key) {
+        File entry = getFile(key);
+        if (!entry.isFile()) {
+            misses++;
+            return null;
+        }
+        hits++;
+        if (!entry.setLastModified(System.currentTimeMillis())) {
+            LOGGER.debug("Failed to touch {}", entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Creates a temporary file in the store, to be written and then moved in place with {@link #put(String, File)}.
+     *
+     * @return the temporary file
+     * @throws IOException when the file cannot be created
+     */
+    public File createTempFile() throws IOException {
+        return Files.createTempFile(directory.toPath(), "entry", ".tmp").toFile();
+    }
+
+    /**
+     * Moves a file in place as an entry and evicts the least recently used entries beyond the size of the store.
+     *
+     * @param key  the hex digest of the entry
+     * @param file the file, from {@link #createTempFile()}
+     * @throws IOException when the file cannot be moved
+     */
+    public synchronized void put(String key, File file) throws IOException {
+        File entry = getFile(key);
+        long previous = entry.isFile() ? entry.length() : 0;
+        Files.createDirectories(entry.getParentFile().toPath());
+        try {
+            Files.move(file.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(file.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        size += entry.length() - previous;
+        if (size > maxBytes) {
+            evict();
+        }
+    }
+
+    /**
+     * Removes an entry, e.g. when it cannot be read.
+     *
+     * @param key the hex digest of the entry
+     */
+    public synchronized void remove(String key) {
+        File entry = getFile(key);
+        long length = entry.length();
+        if (delete(entry)) {
+            size -= length;
+        }
+    }
+
+    /**
+     * Gets the number of entries found by {@link #get(String)} since the agent started.
+     *
+     * @return the hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of entries missed by {@link #get(String)} since the agent started.
+     *
+     * @return the misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private File getFile(String key) {
+        if (!KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid key " + key);
+        }
+        // two levels, so that a directory does not hold too many files
+        return new File(new File(directory, key.substring(0, 2)), key);
+    }
+
+    private void evict() {
+        List<File> entries = scan();
+        entries.sort(Comparator.comparingLong(File::lastModified));
+        size = entries.stream().mapToLong(File::length).sum();
+        for (File entry : entries) {
+            if (size <= maxBytes) {
+                break;
+            }
+            long length = entry.length();
+            if (delete(entry)) {
+                size -= length;
+                LOGGER.debug("Evicted {}", entry);
+            }
+        }
+    }
+
+    private static boolean delete(File entry) {
+        // read-only entries cannot be deleted on Windows
+        return entry.delete() || entry.setWritable(true) && entry.delete();
+    }
+
+    private List<File> scan() {
+        List<File> entries = new ArrayList<>();
+        File[] shards = directory.listFiles(File::isDirectory);
+        if (shards == null) {
+            return entries;
+        }
+        for (File shard : shards) {
+            File[] files = shard.listFiles(File::isFile);
+            if (files != null) {
+                entries.addAll(Arrays.asList(files));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Gets the directory of the store.
+     *
+     * @return the directory
+     */
+    public Path getDirectory() {
+        return directory.toPath();
+    }
+}
@@ -25,18 +25,25 @@
 package io.jenkins.plugins.ml.utils;
 
 import hudson.FilePath;
+import jenkins.util.SystemProperties;
+import org.apache.commons.codec.binary.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.imageio.ImageIO;
-import javax.xml.bind.DatatypeConverter;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.UUID;
 
 /**
@@ -45,6 +52,13 @@ import java.util.UUID;
 public final class Dumper {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Dumper.class);
+    // chars of base64 decoded at once
+    private static final int DECODE_CHUNK_SIZE = 64 * 1024;
+    /**
+     * Decodes every image after writing it, to reject data which is not an image. Off by default, the pixels of an
+     * image are not needed to save it.
+     */
+    static final boolean VALIDATE_IMAGES = SystemProperties.getBoolean(Dumper.class.getName() + ".validateImages");
 
     private Dumper() {
     }
@@ -60,39 +74,245 @@ public final class Dumper {
      */
     public static void dumpHtml(String data, String foldername, FilePath ws)
             throws IOException, InterruptedException {
-        UUID random = UUID.nameUUIDFromBytes(data.getBytes(StandardCharsets.UTF_8));
+        dumpHtml(data, foldername, ws, null);
+    }
+
+    /**
+     * Dump html output from Zeppelin API as html files under the @param foldername , through the output store.
+     *
+     * @param data       the data
+     * @param foldername the folder name
+     * @param ws         the workspace
+     * @param store      the output store of the agent, null to write the file
+     * @throws IOException          the io exception
+     * @throws InterruptedException the interrupted exception
+     */
+    public static void dumpHtml(String data, String foldername, FilePath ws, OutputStore store)
+            throws IOException, InterruptedException {
+        MessageDigest sha256 = store != null ? newDigest("SHA-256", "html") : null;
+        UUID random = nameUUID(data, sha256);
         // Added a random number to save images
         String filename = File.separator + random + ".html";
         FilePath dumpPath = new FilePath(ws, foldername + filename);
-        dumpPath.write(data, "UTF-8");
+        if (store == null) {
+            dumpPath.write(data, "UTF-8");
+        } else {
+            String key = Hex.encodeHexString(sha256.digest());
+            Path htmlFile = new File(dumpPath.getRemote()).toPath();
+            if (store.link(key, htmlFile) == null) {
+                File entry = store.createTempFile();
+                Files.write(entry.toPath(), data.getBytes(StandardCharsets.UTF_8));
+                store.add(key, entry, htmlFile);
+            }
+        }
         LOGGER.info("Archived " + filename);
     }
 
     /**
-     * Dump image output from Zeppelin API as html files under the @param foldername .
+     * Dump image output from Zeppelin API as image files under the @param foldername . The base64 data is decoded
+     * straight to the file, in chunks, and the file keeps the format of the image: png, jpeg, gif, webp or svg.
      *
-     * @param data       the data for the Image
+     * @param data       the data for the Image, base64 encoded or an SVG document
      * @param foldername the folder name
      * @param ws         the workspace
      * @throws IOException raise when write fails
      */
     public static void dumpImage(String data, String foldername, FilePath ws) throws IOException {
+        dumpImage(data, foldername, ws, null);
+    }
 
-        UUID random = UUID.nameUUIDFromBytes(data.getBytes(StandardCharsets.UTF_8));
+    /**
+     * Dump image output from Zeppelin API as image files under the @param foldername , through the output store.
+     * An image found in the store is linked to the folder without being decoded.
+     *
+     * @param data       the data for the Image, base64 encoded or an SVG document
+     * @param foldername the folder name
+     * @param ws         the workspace
+     * @param store      the output store of the agent, null to write the file
+     * @throws IOException raise when write fails
+     */
+    public static void dumpImage(String data, String foldername, FilePath ws, OutputStore store) throws IOException {
+        MessageDigest sha256 = store != null ? newDigest("SHA-256", "image") : null;
         // Added a random number to save images
-        String filename = File.separator + random + ".png";
-        FilePath dumpPath = new FilePath(ws, foldername + filename);
-        /* Decoding the data */
-        byte[] imageBytes = DatatypeConverter.parseBase64Binary(data);
+        UUID random = nameUUID(data, sha256);
+        Path folder = new File(new FilePath(ws, foldername).getRemote()).toPath();
+        String key = null;
+        if (store != null) {
+            key = Hex.encodeHexString(sha256.digest());
+            // the file of an entry is named by its digest, the format is read from the entry
+            Path probe = folder.resolve(random + ".tmp");
+            File entry = store.link(key, probe);
+            if (entry != null) {
+                Path imgFile = folder.resolve(random + "." + sniffExtension(entry.toPath()));
+                Files.move(probe, imgFile, StandardCopyOption.REPLACE_EXISTING);
+                LOGGER.info("Linked " + imgFile.getFileName());
+                return;
+            }
+        }
+        Files.createDirectories(folder);
+        File decoded = store != null ? store.createTempFile()
+                : Files.createTempFile(folder, "image", ".tmp").toFile();
+        String extension;
+        try {
+            extension = data.startsWith("<") ? writeSvg(data, decoded.toPath()) : decode(data, decoded.toPath());
+            if (VALIDATE_IMAGES && !"svg".equals(extension) && ImageIO.read(decoded) == null) {
+                throw new IOException("Invalid image " + random);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(decoded.toPath());
+            throw e;
+        }
+        Path imgFile = folder.resolve(random + "." + extension);
+        if (store != null) {
+            store.add(key, decoded, imgFile);
+        } else {
+            Files.move(decoded.toPath(), imgFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        LOGGER.info("Archived " + imgFile.getFileName());
+    }
+
+    private static String writeSvg(String data, Path file) throws IOException {
+        // SVG is not base64 encoded
+        Files.write(file, data.getBytes(StandardCharsets.UTF_8));
+        return "svg";
+    }
+
+    /**
+     * Decodes base64 data to a file.
+     *
+     * @return the extension of the image
+     */
+    private static String decode(String data, Path file) throws IOException {
+        Base64.Decoder decoder = Base64.getDecoder();
+        char[] chars = new char[DECODE_CHUNK_SIZE];
+        // the characters of a partial group of 4 are kept for the next chunk
+        byte[] encoded = new byte[DECODE_CHUNK_SIZE + 3];
+        int length = 0;
+        int position = 0;
+        String extension = "png";
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (position < data.length()) {
+                int end = Math.min(data.length(), position + DECODE_CHUNK_SIZE);
+                data.getChars(position, end, chars, 0);
+                // the decoder does not skip line breaks, only whole groups of 4 are decoded before the last chunk
+                for (int i = 0; i < end - position; i++) {
+                    if (!Character.isWhitespace(chars[i])) {
+                        encoded[length++] = (byte) chars[i];
+                    }
+                }
+                int whole = end == data.length() ? length : length - length % 4;
+                ByteBuffer decoded = decoder.decode(ByteBuffer.wrap(encoded, 0, whole));
+                if (position == 0) {
+                    // the format is known from the first bytes of the image
+                    extension = sniffExtension(decoded);
+                }
+                System.arraycopy(encoded, whole, encoded, 0, length - whole);
+                length -= whole;
+                position = end;
+                while (decoded.hasRemaining()) {
+                    channel.write(decoded);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid image data: " + e.getMessage(), e);
+        }
+        return extension;
+    }
 
-        /* read decoded image data */
-        BufferedImage img = ImageIO.read(new ByteArrayInputStream(imageBytes));
-        File imgFile = new File(dumpPath.getRemote());
-        if (!imgFile.getParentFile().exists()) {
-            Files.createDirectories(Paths.get(imgFile.getParent()));
+    private static String sniffExtension(Path image) throws IOException {
+        ByteBuffer start = ByteBuffer.allocate(16);
+        try (FileChannel channel = FileChannel.open(image, StandardOpenOption.READ)) {
+            while (start.hasRemaining() && channel.read(start) >= 0) {
+                // reads the magic number
+            }
         }
-        ImageIO.write(img, "png", imgFile);
-        LOGGER.info("Archived " + filename);
+        start.flip();
+        return sniffExtension(start);
+    }
 
+    /**
+     * Gets the extension of an image from its magic number.
+     *
+     * @param image the start of the image
+     * @return the extension, png when the format is unknown
+     */
+    static String sniffExtension(ByteBuffer image) {
+        int start = image.position();
+        if (startsWith(image, start, 0xFF, 0xD8, 0xFF)) {
+            return "jpeg";
+        }
+        if (startsWith(image, start, 'G', 'I', 'F', '8')) {
+            return "gif";
+        }
+        if (startsWith(image, start, 'R', 'I', 'F', 'F') && image.remaining() >= 12
+                && startsWith(image, start + 8, 'W', 'E', 'B', 'P')) {
+            return "webp";
+        }
+        if (startsWith(image, start, '<') || startsWith(image, start, 0xEF, 0xBB, 0xBF, '<')) {
+            return "svg";
+        }
+        return "png";
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int offset, int... magic) {
+        if (buffer.limit() - offset < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((buffer.get(offset + i) & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link UUID#nameUUIDFromBytes(byte[])} of the UTF-8 bytes, without copying the data.
+     *
+     * @param also another digest of the data, may be null
+     */
+    private static UUID nameUUID(String data, MessageDigest also) {
+        MessageDigest md5 = newDigest("MD5", null);
+        char[] chars = new char[DECODE_CHUNK_SIZE];
+        int position = 0;
+        while (position < data.length()) {
+            int end = Math.min(data.length(), position + DECODE_CHUNK_SIZE);
+            if (end < data.length() && Character.isHighSurrogate(data.charAt(end - 1))) {
+                // keep surrogate pairs in one chunk
+                end--;
+            }
+            data.getChars(position, end, chars, 0);
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(chars, 0, end - position));
+            if (also != null) {
+                also.update(bytes.duplicate());
+            }
+            md5.update(bytes);
+            position = end;
+        }
+        byte[] hash = md5.digest();
+        // version 3 and IETF variant, as nameUUIDFromBytes
+        hash[6] = (byte) ((hash[6] & 0x0f) | 0x30);
+        hash[8] = (byte) ((hash[8] & 0x3f) | 0x80);
+        long msb = 0;
+        long lsb = 0;
+        for (int i = 0; i < 8; i++) {
+            msb = (msb << 8) | (hash[i] & 0xff);
+            lsb = (lsb << 8) | (hash[i + 8] & 0xff);
+        }
+        return new UUID(msb, lsb);
+    }
+
+    private static MessageDigest newDigest(String algorithm, String kind) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalError(algorithm + " not supported", e);
+        }
+        if (kind != null) {
+            digest.update((kind + '\0').getBytes(StandardCharsets.UTF_8));
+        }
+        return digest;
     }
 }
@@ -0,0 +1,241 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml.utils;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import hudson.AbortException;
+import io.jenkins.plugins.ml.model.NotebookCell;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the cells of a Jupyter notebook (nbformat 4) or a Zeppelin note one at a time. The outputs and attachments
+ * of the cells are skipped while streaming, so the embedded images of a large notebook are never held in memory.
+ */
+public class NotebookParser implements Closeable {
+
+    private final JsonReader reader;
+    private final String name;
+    // cells of a Jupyter notebook, paragraphs of a Zeppelin note
+    private boolean zeppelin;
+    private boolean started;
+    private boolean done;
+    private int index;
+
+    /**
+     * Instantiates a new Notebook parser.
+     *
+     * @param in   the notebook, closed with the parser
+     * @param name the name of the notebook in errors
+     */
+    public NotebookParser(InputStream in, String name) {
+        this.reader = new JsonReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        this.name = name;
+    }
+
+    /**
+     * Reads the next cell, markdown and raw cells included.
+     *
+     * @return the cell, null after the last cell
+     * @throws IOException when the notebook cannot be read or is not a notebook
+     */
+    public NotebookCell next() throws IOException {
+        try {
+            if (!started) {
+                started = true;
+                seekCells();
+            }
+            if (done || !reader.hasNext()) {
+                done = true;
+                return null;
+            }
+            return zeppelin ? readParagraph(index++) : readCell(index++);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new AbortException("Invalid notebook " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the remaining code cells.
+     *
+     * @return the code cells
+     * @throws IOException when the notebook cannot be read or is not a notebook
+     */
+    public List<NotebookCell> readCodeCells() throws IOException {
+        List<NotebookCell> cells = new ArrayList<>();
+        for (NotebookCell cell = next(); cell != null; cell = next()) {
+            if (cell.isCode()) {
+                cells.add(cell);
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Positions the reader in the array of cells, skipping the metadata before it.
+     */
+    private void seekCells() throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            throw new AbortException("Invalid notebook " + name + ", only nbformat 4 notebooks are supported");
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if ((key.equals("cells") || key.equals("paragraphs")) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                zeppelin = key.equals("paragraphs");
+                reader.beginArray();
+                return;
+            }
+            reader.skipValue();
+        }
+        throw new AbortException("Invalid notebook " + name + ", only nbformat 4 notebooks are supported");
+    }
+
+    private NotebookCell readCell(int position) throws IOException {
+        String type = null;
+        String source = "";
+        List<String> tags = Collections.emptyList();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "cell_type":
+                    type = reader.nextString();
+                    break;
+                case "source":
+                    source = readMultiline();
+                    break;
+                case "metadata":
+                    tags = readTags();
+                    break;
+                default:
+                    // outputs and attachments are streamed over without being parsed
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new NotebookCell(position, type, source, tags);
+    }
+
+    private NotebookCell readParagraph(int position) throws IOException {
+        String text = "";
+        String editorMode = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "text":
+                    text = readString();
+                    break;
+                case "config":
+                    editorMode = readEditorMode();
+                    break;
+                default:
+                    // results are streamed over without being parsed
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        String type = ConvertHelper.MARKDOWN_ANNOTATION.equals(editorMode) ? NotebookCell.TYPE_MARKDOWN
+                : NotebookCell.TYPE_CODE;
+        return new NotebookCell(position, type, text, Collections.emptyList());
+    }
+
+    /**
+     * Multiline strings of nbformat are either a string or a list of lines.
+     */
+    private String readMultiline() throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            return readString();
+        }
+        StringBuilder text = new StringBuilder();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            text.append(readString());
+        }
+        reader.endArray();
+        return text.toString();
+    }
+
+    private String readString() throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return "";
+        }
+        return reader.nextString();
+    }
+
+    private List<String> readTags() throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return Collections.emptyList();
+        }
+        List<String> tags = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("tags") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    tags.add(readString());
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return tags;
+    }
+
+    private String readEditorMode() throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+        String editorMode = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("editorMode") && reader.peek() == JsonToken.STRING) {
+                editorMode = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return editorMode;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.ml.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * OutputStore - Content addressed images and HTMLs shared by the builds of an agent. A task folder gets a hard link
+ * to the entry of an output, so an output the agent saved before is neither decoded nor written again. Entries are
+ * copied instead when the workspace is on another file system than the agent cache. Entries are read-only, a build
+ * step editing an output in place would otherwise change it for every build linked to it.
+ */
+public final class OutputStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutputStore.class);
+    /**
+     * Sub directory of the agent cache.
+     */
+    static final String STORE_NAME = "outputs";
+
+    private final DiskLruStore store;
+    private int hits;
+    private int misses;
+
+    OutputStore(DiskLruStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Opens the store of the agent for a build, the hits and misses are counted per build.
+     *
+     * @param maxBytes the size of the store
+     * @return the store
+     * @throws IOException when the store cannot be created
+     */
+    public static OutputStore open(long maxBytes) throws IOException {
+        return new OutputStore(DiskLruStore.get(STORE_NAME, maxBytes));
+    }
+
+    /**
+     * Links the entry of an output to a file of a task folder.
+     *
+     * @param key    the hex digest of the output
+     * @param target the file of the task folder
+     * @return the entry, null when the output is not in the store
+     * @throws IOException when the file cannot be linked nor copied
+     */
+    File link(String key, Path target) throws IOException {
+        File entry = store.get(key);
+        if (entry != null) {
+            try {
+                link(entry.toPath(), target);
+            } catch (NoSuchFileException e) {
+                // evicted by another build in the meantime
+                entry = null;
+            }
+        }
+        synchronized (this) {
+            if (entry == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Creates a temporary file in the store, to be written and then added with {@link #add(String, File, Path)}.
+     *
+     * @return the temporary file
+     * @throws IOException when the file cannot be created
+     */
+    File createTempFile() throws IOException {
+        return store.createTempFile();
+    }
+
+    /**
+     * Adds an output to the store and links it to a file of a task folder.
+     *
+     * @param key    the hex digest of the output
+     * @param file   the output, from {@link #createTempFile()}
+     * @param target the file of the task folder
+     * @throws IOException when the file cannot be linked nor copied
+     */
+    void add(String key, File file, Path target) throws IOException {
+        // the links share the permissions of the entry
+        if (!file.setReadOnly()) {
+            LOGGER.debug("Failed to make {} read-only", file);
+        }
+        // linked before it is moved, an eviction right after the move leaves the task folder intact
+        link(file.toPath(), target);
+        store.put(key, file);
+    }
+
+    private static void link(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, source);
+        } catch (FileSystemException | UnsupportedOperationException e) {
+            LOGGER.debug("Failed to link {}, copying it", target, e);
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Gets the number of outputs found in the store.
+     *
+     * @return the hits
+     */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of outputs written to the store.
+     *
+     * @return the misses
+     */
+    public synchronized int getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Prefixes every line written to a shared console, e.g. the output of notebooks running concurrently.
+ * Lines are written to the console at once so lines of different streams do not get mixed up.
+ */
+public class PrefixedOutputStream extends OutputStream {
+
+    // a longer line is written in parts, each with the prefix
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    private final PrintStream console;
+    private final byte[] prefix;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+    /**
+     * Instantiates a new Prefixed output stream.
+     *
+     * @param console the shared console
+     * @param prefix  the prefix of every line
+     */
+    public PrefixedOutputStream(PrintStream console, String prefix) {
+        this.console = console;
+        this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        line.write(b);
+        if (b == '\n' || line.size() >= MAX_LINE_LENGTH) {
+            writeLine();
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            write(b[i]);
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        console.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (line.size() > 0) {
+            line.write('\n');
+            writeLine();
+        }
+        console.flush();
+    }
+
+    private void writeLine() {
+        synchronized (console) {
+            console.write(prefix, 0, prefix.length);
+            console.write(line.toByteArray(), 0, line.size());
+        }
+        line.reset();
+    }
+}
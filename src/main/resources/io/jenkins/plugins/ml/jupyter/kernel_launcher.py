@@ -0,0 +1,144 @@
+#   The MIT License
+#
+#   Copyright 2020 Loghi Perinpanayagam.
+#
+#   Permission is hereby granted, free of charge, to any person obtaining a copy
+#   of this software and associated documentation files (the "Software"), to deal
+#   in the Software without restriction, including without limitation the rights
+#   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+#   copies of the Software, and to permit persons to whom the Software is
+#   furnished to do so, subject to the following conditions:
+#
+#   The above copyright notice and this permission notice shall be included in
+#   all copies or substantial portions of the Software.
+#
+#   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+#   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+#   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+#   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+#   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+#   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+#   THE SOFTWARE.
+
+"""Starts the jupyter kernel server of Zeppelin and reports on stdout once the kernel is running.
+
+When JENKINS_ML_ZYGOTE points to the socket of a kernel zygote, the kernel is forked by the zygote
+instead of being started by jupyter_client.
+"""
+
+import json
+import os
+import signal
+import socket
+import sys
+import tempfile
+import time
+import uuid
+from concurrent import futures
+
+import grpc
+
+import kernel_pb2
+import kernel_pb2_grpc
+from kernel_server import KernelServer
+
+# read by JupyterKernelProcessLauncher to detect that the kernel is ready
+READY_MARKER = 'JENKINS_KERNEL_READY'
+ZYGOTE_ENV = 'JENKINS_ML_ZYGOTE'
+_ONE_DAY_IN_SECONDS = 60 * 60 * 24
+_KERNEL_READY_TIMEOUT = 60
+
+
+class ForkedKernelManager(object):
+    """The part of the jupyter_client KernelManager used by KernelServer, for a kernel forked by the zygote."""
+
+    def __init__(self, pid, client, files):
+        self.pid = pid
+        self.client = client
+        self.files = files
+
+    def is_alive(self):
+        try:
+            os.kill(self.pid, 0)
+            return True
+        except OSError:
+            return False
+
+    def interrupt_kernel(self):
+        os.kill(self.pid, signal.SIGINT)
+
+    def shutdown_kernel(self, now=False, restart=False):
+        if not now:
+            try:
+                self.client.shutdown()
+            except Exception:
+                pass
+            deadline = time.time() + 5
+            while self.is_alive() and time.time() < deadline:
+                time.sleep(0.1)
+        if self.is_alive():
+            os.kill(self.pid, signal.SIGKILL)
+        for path in self.files:
+            try:
+                os.remove(path)
+            except OSError:
+                pass
+
+
+def start_forked_kernel(kernel, zygote_socket):
+    from jupyter_client.blocking import BlockingKernelClient
+    from jupyter_client.connect import write_connection_file
+
+    fd, connection_file = tempfile.mkstemp(prefix='jenkins-kernel-', suffix='.json')
+    os.close(fd)
+    write_connection_file(fname=connection_file, ip='127.0.0.1', key=uuid.uuid4().hex.encode('ascii'))
+    log_file = connection_file + '.log'
+
+    request = {'connection_file': connection_file, 'cwd': os.getcwd(), 'log': log_file, 'parent': os.getpid()}
+    zygote = socket.socket(socket.AF_UNIX, socket.SOCK_STREAM)
+    try:
+        zygote.connect(zygote_socket)
+        zygote.sendall((json.dumps(request) + '\n').encode('utf-8'))
+        reply = json.loads(zygote.makefile('r').readline())
+    finally:
+        zygote.close()
+
+    client = BlockingKernelClient(connection_file=connection_file)
+    client.load_connection_file()
+    client.start_channels()
+    client.wait_for_ready(timeout=_KERNEL_READY_TIMEOUT)
+    kernel._km = ForkedKernelManager(reply['pid'], client, [connection_file, log_file])
+    kernel._kc = client
+    kernel._status = kernel_pb2.RUNNING
+    print('Kernel %d forked by zygote in %.1f ms' % (reply['pid'], reply['fork_ms']))
+
+
+def serve(kernel_name, address):
+    kernel = KernelServer()
+    # accept the keepalive pings of the plugin, it does not ping more often than every 10 seconds
+    server = grpc.server(futures.ThreadPoolExecutor(max_workers=10),
+                         options=[('grpc.keepalive_permit_without_calls', 1),
+                                  ('grpc.http2.min_ping_interval_without_data_ms', 10000),
+                                  ('grpc.http2.min_recv_ping_interval_without_data_ms', 10000)])
+    kernel_pb2_grpc.add_JupyterKernelServicer_to_server(kernel, server)
+    if address.isdigit():
+        address = '[::]:' + address
+    server.add_insecure_port(address)
+    server.start()
+
+    zygote_socket = os.environ.get(ZYGOTE_ENV)
+    if zygote_socket:
+        start_forked_kernel(kernel, zygote_socket)
+    else:
+        kernel.start(kernel_name)
+    print(READY_MARKER)
+    sys.stdout.flush()
+    try:
+        while True:
+            time.sleep(_ONE_DAY_IN_SECONDS)
+    except KeyboardInterrupt:
+        server.stop(0)
+
+
+if __name__ == '__main__':
+    serve(sys.argv[1], sys.argv[2])
@@ -0,0 +1,141 @@
+#   The MIT License
+#
+#   Copyright 2020 Loghi Perinpanayagam.
+#
+#   Permission is hereby granted, free of charge, to any person obtaining a copy
+#   of this software and associated documentation files (the "Software"), to deal
+#   in the Software without restriction, including without limitation the rights
+#   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+#   copies of the Software, and to permit persons to whom the Software is
+#   furnished to do so, subject to the following conditions:
+#
+#   The above copyright notice and this permission notice shall be included in
+#   all copies or substantial portions of the Software.
+#
+#   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+#   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+#   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+#   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+#   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+#   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+#   THE SOFTWARE.
+
+"""Kernel zygote: imports heavy python modules once and forks ipykernel processes that start with warm imports.
+
+Usage: kernel_zygote.py <socket path> <kernel name> <comma separated modules>
+
+Every connection on the unix socket carries one JSON request with the connection file, working directory,
+log file and parent pid of the kernel to fork. The reply holds the pid of the forked kernel and the fork latency.
+"""
+
+import importlib
+import json
+import os
+import shutil
+import signal
+import socket
+import sys
+import threading
+import time
+
+# read by KernelZygote to detect that the zygote is ready and to collect statistics
+READY_MARKER = 'JENKINS_ZYGOTE_READY'
+FORK_MARKER = 'JENKINS_ZYGOTE_FORK'
+
+
+def check_kernel(kernel_name):
+    from jupyter_client.kernelspec import KernelSpecManager
+    argv = KernelSpecManager().get_kernel_spec(kernel_name).argv
+    if not any('ipykernel' in arg for arg in argv):
+        raise SystemExit('Kernel %s is not an ipykernel, it cannot be forked' % kernel_name)
+    executable = shutil.which(argv[0]) or argv[0]
+    if os.path.realpath(executable) != os.path.realpath(sys.executable):
+        raise SystemExit('Kernel %s runs on %s instead of %s' % (kernel_name, executable, sys.executable))
+
+
+def preload(modules):
+    failed = []
+    for module in modules:
+        try:
+            importlib.import_module(module)
+        except Exception as e:
+            failed.append(module)
+            print('Failed to preload %s: %s' % (module, e))
+    import ipykernel.kernelapp  # noqa: F401
+    return failed
+
+
+def watch_parent(pid):
+    # the kernel server is not the parent process of the kernel, exit with it
+    def poll():
+        while True:
+            time.sleep(1)
+            try:
+                os.kill(pid, 0)
+            except OSError:
+                os._exit(1)
+
+    thread = threading.Thread(target=poll)
+    thread.daemon = True
+    thread.start()
+
+
+def run_kernel(request):
+    os.setsid()
+    signal.signal(signal.SIGCHLD, signal.SIG_DFL)
+    signal.signal(signal.SIGINT, signal.default_int_handler)
+    os.chdir(request['cwd'])
+    log = os.open(request['log'], os.O_WRONLY | os.O_CREAT | os.O_APPEND, 0o600)
+    os.dup2(log, 1)
+    os.dup2(log, 2)
+    watch_parent(request['parent'])
+
+    from ipykernel.kernelapp import IPKernelApp
+    app = IPKernelApp.instance()
+    app.initialize(['-f', request['connection_file']])
+    app.start()
+
+
+def serve(socket_path, kernel_name, modules):
+    started = time.time()
+    check_kernel(kernel_name)
+    failed = preload(modules)
+    # forked kernels are reaped automatically
+    signal.signal(signal.SIGCHLD, signal.SIG_IGN)
+
+    if os.path.exists(socket_path):
+        os.unlink(socket_path)
+    server = socket.socket(socket.AF_UNIX, socket.SOCK_STREAM)
+    server.bind(socket_path)
+    os.chmod(socket_path, 0o600)
+    server.listen(16)
+    print('%s pid=%d preload_ms=%d failed=%s'
+          % (READY_MARKER, os.getpid(), (time.time() - started) * 1000, ','.join(failed)))
+    sys.stdout.flush()
+
+    while True:
+        conn, _ = server.accept()
+        try:
+            request = json.loads(conn.makefile('r').readline())
+            fork_started = time.time()
+            pid = os.fork()
+            if pid == 0:
+                server.close()
+                conn.close()
+                try:
+                    run_kernel(request)
+                finally:
+                    os._exit(0)
+            fork_ms = (time.time() - fork_started) * 1000
+            conn.sendall((json.dumps({'pid': pid, 'fork_ms': fork_ms}) + '\n').encode('utf-8'))
+            print('%s pid=%d fork_ms=%.1f' % (FORK_MARKER, pid, fork_ms))
+            sys.stdout.flush()
+        except Exception as e:
+            print('Failed to fork kernel: %s' % e)
+            sys.stdout.flush()
+        finally:
+            conn.close()
+
+
+if __name__ == '__main__':
+    serve(sys.argv[1], sys.argv[2], [m for m in sys.argv[3].split(',') if m] if len(sys.argv) > 3 else [])
@@ -0,0 +1,50 @@
+#   The MIT License
+#
+#   Copyright 2020 Loghi Perinpanayagam.
+#
+#   Permission is hereby granted, free of charge, to any person obtaining a copy
+#   of this software and associated documentation files (the "Software"), to deal
+#   in the Software without restriction, including without limitation the rights
+#   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+#   copies of the Software, and to permit persons to whom the Software is
+#   furnished to do so, subject to the following conditions:
+#
+#   The above copyright notice and this permission notice shall be included in
+#   all copies or substantial portions of the Software.
+#
+#   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+#   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+#   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+#   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+#   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+#   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+#   THE SOFTWARE.
+
+"""Cell batches: runs several notebook cells in a single execute request.
+
+The plugin sends this script to the kernel followed by a call of _jenkins_run_cells with the base64 encoded
+sources of the cells. Every cell runs through the IPython shell as if it was sent on its own, and markers
+starting with the record separator are printed around it so that the plugin attributes the outputs, the
+status and the duration to the cell.
+"""
+
+
+def _jenkins_run_cells(cells, stop_on_error):
+    import base64
+    import sys
+    import time
+    shell = get_ipython()
+    for position, source in enumerate(cells):
+        sys.stdout.write('\x1e> %d\n' % position)
+        sys.stdout.flush()
+        start = time.time()
+        result = shell.run_cell(base64.b64decode(source).decode('utf-8'), store_history=True)
+        # the outputs of the cell are complete before its end marker
+        sys.stdout.flush()
+        sys.stderr.flush()
+        sys.stdout.write('\x1e< %d %s %d\n' % (position, 'ok' if result.success else 'error',
+                                                (time.time() - start) * 1000))
+        sys.stdout.flush()
+        # an interrupted cell stops the batch, e.g. after a timeout
+        if not result.success and (stop_on_error or isinstance(result.error_in_exec, KeyboardInterrupt)):
+            return
@@ -0,0 +1,82 @@
+#   The MIT License
+#
+#   Copyright 2020 Loghi Perinpanayagam.
+#
+#   Permission is hereby granted, free of charge, to any person obtaining a copy
+#   of this software and associated documentation files (the "Software"), to deal
+#   in the Software without restriction, including without limitation the rights
+#   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+#   copies of the Software, and to permit persons to whom the Software is
+#   furnished to do so, subject to the following conditions:
+#
+#   The above copyright notice and this permission notice shall be included in
+#   all copies or substantial portions of the Software.
+#
+#   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+#   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+#   FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+#   AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+#   LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+#   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+#   THE SOFTWARE.
+
+"""Kernel checkpoints: pickles the namespace of the IPython shell to a file and loads it back in a new kernel.
+
+The plugin sends this script to the kernel followed by a call of one of the functions. Modules are saved by
+name and imported again, the other variables are pickled with dill when it is installed and pickle otherwise.
+The names start with an underscore so that they are never part of a checkpoint themselves.
+"""
+
+
+def _jenkins_pickler():
+    try:
+        import dill
+        return dill
+    except ImportError:
+        import pickle
+        return pickle
+
+
+def _jenkins_checkpoint_save(path, error_path):
+    import types
+    pickler = _jenkins_pickler()
+    shell = get_ipython()
+    modules = {}
+    state = {}
+    for name, value in list(shell.user_ns.items()):
+        if name.startswith('_') or name in shell.user_ns_hidden:
+            continue
+        if isinstance(value, types.ModuleType):
+            modules[name] = value.__name__
+        else:
+            state[name] = value
+    try:
+        with open(path, 'wb') as f:
+            pickler.dump({'modules': modules, 'state': state}, f, protocol=pickler.HIGHEST_PROTOCOL)
+    except Exception as e:
+        # tell which variables cannot be pickled, the checkpoint is dropped
+        failed = []
+        for name, value in state.items():
+            try:
+                pickler.dumps(value, protocol=pickler.HIGHEST_PROTOCOL)
+            except Exception:
+                failed.append(name)
+        with open(error_path, 'w') as f:
+            f.write(', '.join(failed) if failed else repr(e))
+        raise
+
+
+def _jenkins_checkpoint_restore(path, error_path):
+    import importlib
+    pickler = _jenkins_pickler()
+    try:
+        with open(path, 'rb') as f:
+            checkpoint = pickler.load(f)
+        shell = get_ipython()
+        for name, module in checkpoint['modules'].items():
+            shell.user_ns[name] = importlib.import_module(module)
+        shell.user_ns.update(checkpoint['state'])
+    except Exception as e:
+        with open(error_path, 'w') as f:
+            f.write(repr(e))
+        raise
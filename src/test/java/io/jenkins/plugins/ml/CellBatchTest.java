@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import io.jenkins.plugins.ml.model.CellResult;
+import io.jenkins.plugins.ml.model.NotebookCell;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CellBatchTest {
+
+    private final List<NotebookCell> cells = Arrays.asList(new NotebookCell(0, "a = 1"), new NotebookCell(1, "b = 2"),
+            new NotebookCell(2, "c = 3"), new NotebookCell(3, "1 / 0", Collections.singletonList("raises-exception")),
+            new NotebookCell(4, "d = 4"));
+
+    @Test
+    public void testBatchEndsBeforeTaggedCells() {
+        assertEquals(3, CellBatch.end(cells, 0, 10));
+        assertEquals(2, CellBatch.end(cells, 0, 2));
+        assertEquals(3, CellBatch.end(cells, 3, 10));
+        assertEquals(5, CellBatch.end(cells, 4, 10));
+    }
+
+    @Test
+    public void testOutputsAreAttributedToTheCells() {
+        CellBatch batch = new CellBatch(cells.subList(0, 3));
+        assertEquals(0, batch.onMarker("> 0").getIndex());
+        assertNull(batch.onMarker("< 0 ok 5"));
+        assertEquals(1, batch.onMarker("> 1").getIndex());
+        batch.onMarker("< 1 error 7");
+        List<CellResult> results = batch.getResults(false);
+        assertEquals(2, results.size());
+        assertEquals(CellResult.Status.SUCCESS, results.get(0).getStatus());
+        assertEquals(CellResult.Status.ERROR, results.get(1).getStatus());
+        assertEquals(7, results.get(1).getDuration());
+    }
+
+    @Test
+    public void testRunningCellFailsWithTheRequest() {
+        CellBatch batch = new CellBatch(cells.subList(0, 3));
+        batch.onMarker("> 0");
+        batch.onMarker("< 0 ok 5");
+        batch.onMarker("> 1");
+        List<CellResult> results = batch.getResults(true);
+        assertEquals(2, results.size());
+        assertEquals(1, results.get(1).getIndex());
+        assertEquals(CellResult.Status.ERROR, results.get(1).getStatus());
+    }
+
+    @Test
+    public void testCodeCarriesTheEncodedSources() {
+        String code = new CellBatch(cells.subList(0, 2)).toCode("", true);
+        assertTrue(code.contains("_jenkins_run_cells(['YSA9IDE=', 'YiA9IDI=', ], True)"));
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import hudson.FilePath;
+import org.apache.zeppelin.interpreter.InterpreterOutput;
+import org.apache.zeppelin.interpreter.InterpreterResult;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConsoleOutputListenerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ByteArrayOutputStream console;
+    private ConsoleOutputListener listener;
+    private InterpreterOutput output;
+
+    @Before
+    public void setUp() {
+        console = new ByteArrayOutputStream();
+        listener = new ConsoleOutputListener(new PrintStream(console, true),
+                "task", new FilePath(folder.getRoot()));
+        output = new InterpreterOutput(listener);
+    }
+
+    @Test
+    public void testTextIsStreamedLineByLine() throws Exception {
+        output.write("epoch 1\n");
+        assertEquals("epoch 1\n", console());
+        output.write("epoch 2\nepoch");
+        assertEquals("epoch 1\nepoch 2\n", console());
+        output.write(" 3\n");
+        assertEquals("epoch 1\nepoch 2\nepoch 3\n", console());
+    }
+
+    @Test
+    public void testStreamedTextIsNotRetained() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            output.write("line " + i + "\n");
+        }
+        assertEquals(InterpreterResult.Type.TEXT, output.getOutputAt(0).getType());
+        assertEquals("", output.getOutputAt(0).toInterpreterResultMessage().getData());
+        assertTrue(console().endsWith("line 999\n"));
+    }
+
+    @Test
+    public void testHtmlIsSavedOnceTheKernelMovesOn() throws Exception {
+        output.write("%html <b>table</b>\n");
+        output.write("%text done\n");
+        File task = new File(folder.getRoot(), "task");
+        String[] saved = task.list();
+        assertNotNull("HTML should be saved before the cell ends", saved);
+        assertEquals(1, saved.length);
+        assertTrue(console().contains("HTML added to task"));
+        assertTrue(console().contains("done"));
+    }
+
+    @Test
+    public void testRemainingHtmlIsSavedWhenTheCellEnds() throws Exception {
+        output.write("%html <b>table</b>");
+        output.flush();
+        listener.onUpdateAll(output);
+        String[] saved = new File(folder.getRoot(), "task").list();
+        assertNotNull(saved);
+        assertEquals(1, saved.length);
+    }
+
+    @Test
+    public void testOutputsAreSavedInTheBackground() throws Exception {
+        OutputWriter writer = new OutputWriter(new PrintStream(console, true), "task", OutputWriter.QUEUE_SIZE);
+        listener = new ConsoleOutputListener(new PrintStream(console, true), "task", new FilePath(folder.getRoot()),
+                writer, null);
+        output = new InterpreterOutput(listener);
+        output.write("%html <b>first</b>\n");
+        output.write("%html <b>second</b>\n");
+        output.flush();
+        listener.onUpdateAll(output);
+        writer.close();
+        String[] saved = new File(folder.getRoot(), "task").list();
+        assertNotNull(saved);
+        assertEquals(2, saved.length);
+        assertTrue(console().contains("Saved 2 of 2 outputs to task"));
+    }
+
+    @Test
+    public void testOutputBeyondTheLimitIsSpilled() throws Exception {
+        listener.limitOutput(1024, 0);
+        listener.startOutput("cell-2");
+        for (int i = 0; i < 10000; i++) {
+            output.write("line " + i + "\n");
+        }
+        output.flush();
+        listener.onUpdateAll(output);
+        String log = console().replace(System.lineSeparator(), "\n");
+        assertTrue(log.startsWith("line 0\n"));
+        assertTrue(log.contains("the rest of it is only written to task/cell-2-output.txt"));
+        assertFalse(log.contains("line 5000\n"));
+        assertTrue(log.contains("line 9999\n"));
+        assertTrue(log.contains("The output of cell-2 is in task/cell-2-output.txt"));
+        assertTrue(log.length() < 64 * 1024);
+        List<String> spilled = Files.readAllLines(new File(folder.getRoot(), "task/cell-2-output.txt").toPath());
+        assertEquals(10000, spilled.size());
+        assertEquals("line 0", spilled.get(0));
+        assertEquals("line 9999", spilled.get(9999));
+    }
+
+    @Test
+    public void testOnlySpilledFilesAreOutputs() {
+        assertTrue(ConsoleOutputListener.SPILL_FILE_NAME.matcher("cell-2-output.txt").matches());
+        assertTrue(ConsoleOutputListener.SPILL_FILE_NAME.matcher("cell-2-output.1.txt").matches());
+        assertFalse(ConsoleOutputListener.SPILL_FILE_NAME.matcher("requirements.txt").matches());
+        assertFalse(ConsoleOutputListener.SPILL_FILE_NAME.matcher("output.txt").matches());
+    }
+
+    @Test
+    public void testTablesAreCutToMaxResult() throws Exception {
+        listener.limitOutput(0, 2);
+        output.write("%table a\tb\n1\t2\n3\t4\n5\t6\n7\t8\n");
+        output.flush();
+        listener.onUpdateAll(output);
+        assertEquals("a\tb\n1\t2\n3\t4\n... 2 more rows\n", console().replace(System.lineSeparator(), "\n"));
+    }
+
+    @Test
+    public void testMarkersAreTakenOutOfTheConsole() throws Exception {
+        List<String> markers = new ArrayList<>();
+        listener.onMarker(markers::add);
+        output.write("\u001e> 0\nloss 0.1\npartial\u001e< 0 ok 12\n");
+        assertEquals("loss 0.1\npartial\n", console().replace(System.lineSeparator(), "\n"));
+        assertEquals(Arrays.asList("> 0", "< 0 ok 12"), markers);
+    }
+
+    private String console() {
+        return new String(console.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import org.apache.zeppelin.interpreter.InterpreterException;
+import org.apache.zeppelin.interpreter.InterpreterOutputListener;
+import org.apache.zeppelin.interpreter.InterpreterResult;
+import org.apache.zeppelin.interpreter.InterpreterResultMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A kernel running no code for the tests, it records the code it gets and answers like an idle kernel.
+ * Code containing the blocking marker runs until the kernel is interrupted or shut down.
+ */
+class FakeKernel implements KernelInterpreter {
+
+    /**
+     * How a blocked cell reacts to an interrupt.
+     */
+    enum Interrupt {
+        // the cell fails with a KeyboardInterrupt
+        FAIL,
+        // the cell catches the KeyboardInterrupt and succeeds
+        SWALLOW,
+        // the cell keeps running until the kernel is shut down
+        IGNORE
+    }
+
+    final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    volatile boolean responding = true;
+    // thrown by the code, e.g. by a kernel which fails to launch
+    volatile InterpreterException failure;
+    volatile boolean shutdown;
+    volatile boolean cancelled;
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private volatile String blockMarker;
+    private volatile Interrupt interrupt = Interrupt.FAIL;
+    private volatile String failMarker;
+
+    /**
+     * Blocks the code containing the marker until the kernel is interrupted or shut down.
+     */
+    FakeKernel block(String marker, Interrupt interrupt) {
+        this.blockMarker = marker;
+        this.interrupt = interrupt;
+        return this;
+    }
+
+    /**
+     * Fails the code containing the marker.
+     */
+    FakeKernel fail(String marker) {
+        this.failMarker = marker;
+        return this;
+    }
+
+    /**
+     * Waits until code is blocked in the kernel.
+     */
+    boolean awaitBlocked() throws InterruptedException {
+        return blocked.await(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Gets the code run in the kernel containing a string.
+     */
+    List<String> executed(String contained) {
+        List<String> matches = new ArrayList<>();
+        synchronized (executed) {
+            for (String code : executed) {
+                if (code.contains(contained)) {
+                    matches.add(code);
+                }
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public List<InterpreterResultMessage> interpretCode(String code) throws InterpreterException {
+        executed.add(code);
+        if (failure != null) {
+            throw failure;
+        }
+        if (!responding) {
+            return null;
+        }
+        return Collections.singletonList(
+                new InterpreterResultMessage(InterpreterResult.Type.TEXT, KernelPool.RESET_SENTINEL + "\n"));
+    }
+
+    @Override
+    public InterpreterResult interpretCode(String code, InterpreterOutputListener outputListener)
+            throws InterpreterException {
+        executed.add(code);
+        if (failMarker != null && code.contains(failMarker)) {
+            return new InterpreterResult(InterpreterResult.Code.ERROR);
+        }
+        if (blockMarker != null && code.contains(blockMarker)) {
+            blocked.countDown();
+            synchronized (this) {
+                while (!shutdown && !(cancelled && interrupt != Interrupt.IGNORE)) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        throw new InterpreterException(e);
+                    }
+                }
+            }
+            if (shutdown) {
+                throw new InterpreterException("The kernel was shut down");
+            }
+            return new InterpreterResult(interrupt == Interrupt.SWALLOW
+                    ? InterpreterResult.Code.SUCCESS : InterpreterResult.Code.ERROR);
+        }
+        return new InterpreterResult(InterpreterResult.Code.SUCCESS);
+    }
+
+    @Override
+    public void start() throws InterpreterException {
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void cancel() {
+        cancelled = true;
+        notifyAll();
+    }
+}
@@ -25,6 +25,7 @@
 package io.jenkins.plugins.ml;
 
 import hudson.FilePath;
+import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
 import io.jenkins.plugins.ml.model.ParsableFile;
 import org.junit.Before;
@@ -39,6 +40,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.concurrent.ExecutionException;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -75,4 +77,76 @@ public class FileParserTest {
     assertTrue(project.getWorkspace().child("demo.ipynb").exists());
   }
 
+  @Test
+  public void convertNotebooksOnAgentTest() throws Exception {
+    String demo = Paths.get("src", "test", "resources", "demo.ipynb").toFile().getAbsolutePath();
+    String tagged = Paths.get("src", "test", "resources", "tagged.ipynb").toFile().getAbsolutePath();
+    array = new ArrayList<>();
+    array.add(new ParsableFile(demo, false, "PY", null));
+    array.add(new ParsableFile(tagged, false, "JSON", "notebooks/tagged.json"));
+    project.setAssignedNode(jenkins.createSlave());
+    project.getBuildWrappersList().add(new FileParser(array));
+    FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+
+    FilePath workspace = build.getWorkspace();
+    assertTrue(workspace.child("demo.py").readToString().contains("LogisticRegression"));
+    assertTrue(workspace.child("notebooks/tagged.json").readToString().contains("paragraphs"));
+    jenkins.assertLogContains("tagged.ipynb copied and converted to tagged.json", build);
+  }
+
+  @Test
+  public void unchangedNotebooksAreNotConvertedAgainTest() throws Exception {
+    FilePath workspace = jenkins.jenkins.getWorkspaceFor(project);
+    FilePath notebooks = workspace.child("notebooks");
+    new FilePath(Paths.get("src", "test", "resources", "demo.ipynb").toFile()).copyTo(notebooks.child("demo.ipynb"));
+    new FilePath(Paths.get("src", "test", "resources", "tagged.ipynb").toFile()).copyTo(notebooks.child("tagged.ipynb"));
+    array = new ArrayList<>();
+    array.add(new ParsableFile("notebooks/*.ipynb", false, "PY", null));
+    project.getBuildWrappersList().add(new FileParser(array));
+
+    FreeStyleBuild first = jenkins.buildAndAssertSuccess(project);
+    jenkins.assertLogContains("demo.ipynb copied and converted to demo.py", first);
+    jenkins.assertLogContains("tagged.ipynb copied and converted to tagged.py", first);
+    assertTrue(notebooks.child("demo.py.digest").exists());
+
+    FilePath tagged = notebooks.child("tagged.ipynb");
+    tagged.write(tagged.readToString().replace("x = 1", "x = 2"), "UTF-8");
+    FreeStyleBuild second = jenkins.buildAndAssertSuccess(project);
+    jenkins.assertLogContains("demo.ipynb is unchanged, skipped converting to demo.py", second);
+    jenkins.assertLogContains("tagged.ipynb copied and converted to tagged.py", second);
+    assertTrue(notebooks.child("tagged.py").readToString().contains("x = 2"));
+  }
+
+  @Test
+  public void filesConvertedFromGlobAreDeletedTest() throws Exception {
+    FilePath workspace = jenkins.jenkins.getWorkspaceFor(project);
+    FilePath notebooks = workspace.child("notebooks");
+    new FilePath(Paths.get("src", "test", "resources", "demo.ipynb").toFile()).copyTo(notebooks.child("demo.ipynb"));
+    array = new ArrayList<>();
+    array.add(new ParsableFile("notebooks/*.ipynb", true, "PY", null));
+    project.getBuildWrappersList().add(new FileParser(array));
+
+    FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+    jenkins.assertLogContains("demo.ipynb copied and converted to demo.py", build);
+    assertFalse(notebooks.child("demo.py").exists());
+    assertFalse(notebooks.child("demo.py.digest").exists());
+    assertTrue("The matched notebook is not a copy", notebooks.child("demo.ipynb").exists());
+  }
+
+  @Test
+  public void notebooksOfTheSameNameKeepTheirFoldersTest() throws Exception {
+    FilePath workspace = jenkins.jenkins.getWorkspaceFor(project);
+    FilePath demo = new FilePath(Paths.get("src", "test", "resources", "demo.ipynb").toFile());
+    FilePath tagged = new FilePath(Paths.get("src", "test", "resources", "tagged.ipynb").toFile());
+    demo.copyTo(workspace.child("train/model.ipynb"));
+    tagged.copyTo(workspace.child("test/model.ipynb"));
+    array = new ArrayList<>();
+    array.add(new ParsableFile("**/model.ipynb", false, "PY", "converted"));
+    project.getBuildWrappersList().add(new FileParser(array));
+
+    jenkins.buildAndAssertSuccess(project);
+    assertTrue(workspace.child("converted/train/model.py").readToString().contains("LogisticRegression"));
+    assertTrue(workspace.child("converted/test/model.py").readToString().contains("x = 1"));
+  }
+
 }
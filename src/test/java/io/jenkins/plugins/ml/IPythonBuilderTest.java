@@ -43,6 +43,9 @@ import hudson.slaves.DumbSlave;
 import hudson.slaves.SlaveComputer;
 import hudson.util.FormValidation;
 import org.jenkinsci.plugins.gitclient.JGitTool;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.junit.*;
 import org.jvnet.hudson.test.JenkinsRule;
 
@@ -143,6 +146,24 @@ public class IPythonBuilderTest {
 
     }
 
+    @Test
+    public void testKernelBlockKeepsStateAcrossSteps() throws Exception {
+
+        Assume.assumeTrue(!Functions.isWindows());
+
+        WorkflowJob job = jenkins.createProject(WorkflowJob.class, "kernel-block");
+        job.setDefinition(new CpsFlowDefinition("node('s') {\n"
+                + "  withIPythonKernel(kernel: 'python') {\n"
+                + "    ipython code: 'answer = 40'\n"
+                + "    ipython code: 'print(answer + 2)'\n"
+                + "  }\n"
+                + "}", true));
+        WorkflowRun run = jenkins.buildAndAssertSuccess(job);
+        jenkins.assertLogContains("42", run);
+        jenkins.assertLogContains("Stopped the kernel of the block", run);
+
+    }
+
     @Test
     public void testJobConfigReload() throws Exception {
         String PROJECT_NAME = "demo";
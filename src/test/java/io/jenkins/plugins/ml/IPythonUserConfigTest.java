@@ -52,4 +52,13 @@ public class IPythonUserConfigTest {
         */
     }
 
+    @Test
+    public void testLargeSizesOfServerDoNotOverflow() {
+        Server server = new Server("test", "python", 10, 3);
+        server.setMaxInboundMessageSize(4096);
+        server.setFlowControlWindow(Integer.MAX_VALUE);
+        userConfig = server.toUserConfig(".");
+        assertEquals(Server.MAX_INBOUND_MESSAGE_SIZE * 1024 * 1024, userConfig.getMaxInboundMessageSize());
+        assertEquals(Server.MAX_FLOW_CONTROL_WINDOW * 1024, userConfig.getFlowControlWindow());
+    }
 }
@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import hudson.Util;
+import io.jenkins.plugins.ml.model.NotebookCell;
+import io.jenkins.plugins.ml.utils.AgentCache;
+import io.jenkins.plugins.ml.utils.DiskLruStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class KernelCheckpointsTest {
+
+    // five cached cells, the second and the fourth are tagged as checkpoints
+    private static final int CELLS = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<NotebookCell> cells = new ArrayList<>();
+    private final String[] keys = new String[CELLS];
+    private final List<Integer> replayedCells = new ArrayList<>();
+    private final PrintStream console = new PrintStream(new ByteArrayOutputStream(), true);
+    private DiskLruStore store;
+    private KernelCheckpoints checkpoints;
+    private IPythonInterpreterManager interpreterManager;
+    private FakeKernel kernel;
+
+    @Before
+    public void setup() throws Exception {
+        System.setProperty(AgentCache.CACHE_DIRECTORY_PROPERTY, folder.getRoot().getAbsolutePath());
+        // a store of its own for every test
+        store = DiskLruStore.get(folder.getRoot().getName(), 1024 * 1024);
+        checkpoints = new KernelCheckpoints(store, "# kernel_checkpoint.py");
+        for (int i = 0; i < CELLS; i++) {
+            List<String> tags = i % 2 == 1
+                    ? Collections.singletonList(KernelCheckpoints.TAG_CHECKPOINT) : Collections.emptyList();
+            cells.add(new NotebookCell(i, "x" + i + " = " + i, tags));
+            keys[i] = Util.getDigestOf("cell " + i + " of " + folder.getRoot());
+            replayedCells.add(i);
+        }
+        KernelPool pool = new KernelPool(config -> kernel = new FakeKernel(), System::currentTimeMillis);
+        pool.configure(new IPythonAgentConfig(1, 0, 60));
+        interpreterManager = new IPythonInterpreterManager(
+                new IPythonUserConfig("python", 1000, 3, folder.getRoot().getAbsolutePath()), pool);
+        interpreterManager.initiateInterpreter();
+    }
+
+    @After
+    public void tearDown() {
+        interpreterManager.close();
+        System.clearProperty(AgentCache.CACHE_DIRECTORY_PROPERTY);
+    }
+
+    @Test
+    public void testNewestCheckpointIsRestored() throws Exception {
+        checkpoints.save(interpreterManager, keys[1], 1, console);
+        checkpoints.save(interpreterManager, keys[3], 3, console);
+
+        assertNull(IPythonExecutor.restore(interpreterManager, cells, keys, replayedCells, checkpoints, console));
+
+        List<String> restored = kernel.executed("_jenkins_checkpoint_restore(");
+        assertEquals(1, restored.size());
+        assertTrue("The checkpoint of cell 3 should be restored",
+                restored.get(0).contains(KernelCheckpoints.checkpointKey(keys[3])));
+        assertEquals(Collections.singletonList("x4 = 4"), ranCells());
+    }
+
+    @Test
+    public void testCheckpointMissingFromStoreIsPassedOver() throws Exception {
+        checkpoints.save(interpreterManager, keys[1], 1, console);
+
+        assertNull(IPythonExecutor.restore(interpreterManager, cells, keys, replayedCells, checkpoints, console));
+
+        assertTrue(kernel.executed("_jenkins_checkpoint_restore(").get(0)
+                .contains(KernelCheckpoints.checkpointKey(keys[1])));
+        assertEquals(Arrays.asList("x2 = 2", "x3 = 3", "x4 = 4"), ranCells());
+    }
+
+    @Test
+    public void testCheckpointFailingToLoadIsRemoved() throws Exception {
+        checkpoints.save(interpreterManager, keys[1], 1, console);
+        checkpoints.save(interpreterManager, keys[3], 3, console);
+        kernel.fail("_jenkins_checkpoint_restore(");
+
+        assertNull(IPythonExecutor.restore(interpreterManager, cells, keys, replayedCells, checkpoints, console));
+
+        assertFalse("Checkpoint failing to load should be removed", checkpoints.contains(keys[3]));
+        assertTrue(checkpoints.contains(keys[1]));
+        // an older checkpoint is not tried, every replayed cell runs again
+        assertEquals(Arrays.asList("x0 = 0", "x1 = 1", "x2 = 2", "x3 = 3", "x4 = 4"), ranCells());
+    }
+
+    @Test
+    public void testFailingReplayedCellIsReturned() throws Exception {
+        kernel.fail("x2 = 2");
+
+        NotebookCell failedCell = IPythonExecutor.restore(interpreterManager, cells, keys, replayedCells, checkpoints,
+                console);
+
+        assertSame(cells.get(2), failedCell);
+        assertEquals(Arrays.asList("x0 = 0", "x1 = 1", "x2 = 2"), ranCells());
+    }
+
+    @Test
+    public void testCheckpointsAreScopedByJob() throws Exception {
+        CellCache cache = new CellCache(store, "job", "python", "inputs");
+        CellCache otherCache = new CellCache(store, "other job", "python", "inputs");
+        String key = cache.nextKey(cells.get(0));
+        String otherKey = otherCache.nextKey(cells.get(0));
+
+        checkpoints.save(interpreterManager, key, 0, console);
+
+        assertTrue(checkpoints.contains(key));
+        assertFalse("Checkpoint of another job should not be restored", checkpoints.contains(otherKey));
+        assertNull("Checkpoint should not be read as the outputs of its cell", cache.get(key));
+    }
+
+    /**
+     * Gets the cells which ran again, in order.
+     */
+    private List<String> ranCells() {
+        List<String> ran = new ArrayList<>();
+        synchronized (kernel.executed) {
+            for (String code : kernel.executed) {
+                if (code.matches("x\\d = \\d")) {
+                    ran.add(code);
+                }
+            }
+        }
+        return ran;
+    }
+}
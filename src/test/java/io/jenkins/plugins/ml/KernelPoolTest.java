@@ -0,0 +1,184 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import org.apache.zeppelin.interpreter.InterpreterException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class KernelPoolTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final List<FakeKernel> launched = new ArrayList<>();
+    private KernelPool pool;
+    private IPythonUserConfig userConfig;
+
+    @Before
+    public void setup() {
+        pool = new KernelPool(config -> {
+            FakeKernel kernel = new FakeKernel();
+            launched.add(kernel);
+            return kernel;
+        }, clock::get);
+        pool.configure(new IPythonAgentConfig(1, 0, 60));
+        userConfig = new IPythonUserConfig("python", 1000, 3, "/tmp/ws1");
+    }
+
+    @Test
+    public void testKernelIsReusedAcrossLeases() throws Exception {
+        KernelInterpreter first = pool.borrow(userConfig);
+        pool.release(userConfig, first);
+        KernelInterpreter second = pool.borrow(new IPythonUserConfig("python", 1000, 3, "/tmp/ws2"));
+
+        assertSame("Kernel was not reused", first, second);
+        assertEquals("Only one kernel should be launched", 1, launched.size());
+        FakeKernel kernel = (FakeKernel) second;
+        assertTrue("Namespace was not reset", kernel.executed.stream().anyMatch(c -> c.contains("'reset', '-f'")));
+        assertTrue("Working directory was not changed", kernel.executed.get(kernel.executed.size() - 1).contains("/tmp/ws2"));
+    }
+
+    @Test
+    public void testKernelsAbovePoolSizeAreShutDown() throws Exception {
+        KernelInterpreter first = pool.borrow(userConfig);
+        KernelInterpreter second = pool.borrow(userConfig);
+        assertNotSame(first, second);
+
+        pool.release(userConfig, second);
+        pool.release(userConfig, first);
+
+        assertTrue("Overflow kernel should be shut down", ((FakeKernel) second).shutdown);
+        assertFalse("Pooled kernel should be kept", ((FakeKernel) first).shutdown);
+        assertEquals(1, pool.getIdleCount(userConfig));
+    }
+
+    @Test
+    public void testIdleKernelIsEvicted() throws Exception {
+        KernelInterpreter kernel = pool.borrow(userConfig);
+        pool.release(userConfig, kernel);
+
+        clock.addAndGet(TimeUnit.SECONDS.toMillis(30));
+        pool.maintain();
+        assertEquals(1, pool.getIdleCount(userConfig));
+
+        clock.addAndGet(TimeUnit.SECONDS.toMillis(31));
+        pool.maintain();
+        assertEquals(0, pool.getIdleCount(userConfig));
+        assertTrue(((FakeKernel) kernel).shutdown);
+    }
+
+    @Test
+    public void testKernelFailingResetIsDiscarded() throws Exception {
+        FakeKernel kernel = (FakeKernel) pool.borrow(userConfig);
+        kernel.responding = false;
+        pool.release(userConfig, kernel);
+
+        assertTrue(kernel.shutdown);
+        assertEquals(0, pool.getIdleCount(userConfig));
+        assertNotSame(kernel, pool.borrow(userConfig));
+    }
+
+    @Test
+    public void testMinIdleKernelsArePrelaunched() throws Exception {
+        pool.configure(new IPythonAgentConfig(2, 1, 60));
+        KernelInterpreter kernel = pool.borrow(userConfig);
+
+        pool.maintain();
+        assertEquals(1, pool.getIdleCount(userConfig));
+        assertEquals(2, launched.size());
+
+        pool.release(userConfig, kernel);
+        assertEquals(2, pool.getIdleCount(userConfig));
+    }
+
+    @Test
+    public void testKernelIsLaunchedBeforeBeingPooled() throws Exception {
+        pool.configure(new IPythonAgentConfig(2, 1, 60));
+        pool.borrow(userConfig);
+        pool.maintain();
+
+        FakeKernel idle = launched.get(1);
+        assertEquals(1, pool.getIdleCount(userConfig));
+        assertEquals("Idle kernel did not run code", 1, idle.executed(KernelPool.RESET_SENTINEL).size());
+    }
+
+    @Test
+    public void testLaunchFailureIsReported() throws Exception {
+        InterpreterException failure = new InterpreterException("jupyter_client is not installed");
+        KernelPool failingPool = new KernelPool(config -> {
+            FakeKernel kernel = new FakeKernel();
+            kernel.failure = failure;
+            launched.add(kernel);
+            return kernel;
+        }, clock::get);
+        failingPool.configure(new IPythonAgentConfig(1, 0, 60));
+
+        try {
+            failingPool.borrow(userConfig);
+            fail("Kernel failing to launch was borrowed");
+        } catch (InterpreterException e) {
+            assertSame(failure, e.getCause());
+        }
+        assertTrue("Kernel failing to launch should be shut down", launched.get(0).shutdown);
+        assertEquals(0, failingPool.getIdleCount(userConfig));
+    }
+
+    @Test
+    public void testKilledKernelIsNotReturned() throws Exception {
+        IPythonInterpreterManager interpreterManager = new IPythonInterpreterManager(userConfig, pool);
+        interpreterManager.initiateInterpreter();
+        FakeKernel kernel = launched.get(0);
+
+        interpreterManager.kill();
+        interpreterManager.close();
+
+        assertTrue("Killed kernel should be shut down", kernel.shutdown);
+        assertEquals(0, pool.getIdleCount(userConfig));
+    }
+
+    @Test
+    public void testKillAfterCloseKeepsReturnedKernel() throws Exception {
+        IPythonInterpreterManager interpreterManager = new IPythonInterpreterManager(userConfig, pool);
+        interpreterManager.initiateInterpreter();
+        FakeKernel kernel = launched.get(0);
+
+        interpreterManager.close();
+        interpreterManager.kill();
+
+        assertFalse("Returned kernel should not be shut down", kernel.shutdown);
+        assertEquals(1, pool.getIdleCount(userConfig));
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import hudson.FilePath;
+import hudson.util.StreamTaskListener;
+import io.jenkins.plugins.ml.model.NotebookResult;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NotebookExecutionsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // kernels are borrowed by the threads of the executions
+    private final List<FakeKernel> launched = new CopyOnWriteArrayList<>();
+    private FakeKernel.Interrupt interrupt;
+    private KernelPool pool;
+
+    @Before
+    public void setup() {
+        pool = new KernelPool(config -> {
+            FakeKernel kernel = new FakeKernel().block("time.sleep", interrupt);
+            launched.add(kernel);
+            return kernel;
+        }, System::currentTimeMillis);
+        pool.configure(new IPythonAgentConfig(1, 0, 60));
+    }
+
+    @Test
+    public void testCancelOfFinishedExecution() {
+        assertFalse(NotebookExecutions.cancel("unknown", 0));
+    }
+
+    @Test
+    public void testCancelInterruptsRunningCell() throws Exception {
+        interrupt = FakeKernel.Interrupt.FAIL;
+        CompletableFuture<List<NotebookResult>> future = new CompletableFuture<>();
+        String id = NotebookExecutions.start(executor("time.sleep(60)"), new NotebookExecutions.FutureListener(future));
+        assertTrue(awaitKernel().awaitBlocked());
+
+        assertTrue(NotebookExecutions.cancel(id, 30));
+
+        NotebookResult result = future.get(10, TimeUnit.SECONDS).get(0);
+        assertTrue("Interrupted cell should fail", result.isFailed());
+        assertTrue(launched.get(0).cancelled);
+        assertFalse("Kernel stopping within the grace period should be kept", launched.get(0).shutdown);
+    }
+
+    @Test
+    public void testCancelKillsKernelIgnoringInterrupt() throws Exception {
+        interrupt = FakeKernel.Interrupt.IGNORE;
+        CompletableFuture<List<NotebookResult>> future = new CompletableFuture<>();
+        String id = NotebookExecutions.start(executor("time.sleep(60)"), new NotebookExecutions.FutureListener(future));
+        assertTrue(awaitKernel().awaitBlocked());
+
+        assertTrue(NotebookExecutions.cancel(id, 1));
+        Thread.sleep(500);
+        assertTrue("Kernel should be interrupted first", launched.get(0).cancelled);
+        assertFalse("Kernel should get the grace period", launched.get(0).shutdown);
+
+        NotebookResult result = future.get(10, TimeUnit.SECONDS).get(0);
+        assertTrue("Kernel ignoring the interrupt should be shut down", launched.get(0).shutdown);
+        assertTrue(result.isAborted());
+        assertEquals("Killed kernel should not be pooled", 0, pool.getIdleCount(userConfig()));
+    }
+
+    @Test
+    public void testInterruptedExecutorSkipsRemainingCells() throws Exception {
+        interrupt = FakeKernel.Interrupt.SWALLOW;
+        Files.write(new File(folder.getRoot(), "notebook.ipynb").toPath(), ("{\"cells\": ["
+                + "{\"cell_type\": \"code\", \"metadata\": {}, \"source\": [\"time.sleep(60)\"]},"
+                + "{\"cell_type\": \"code\", \"metadata\": {}, \"source\": [\"print(1)\"]}"
+                + "], \"metadata\": {}, \"nbformat\": 4, \"nbformat_minor\": 2}").getBytes(StandardCharsets.UTF_8));
+        IPythonExecutor executor = executor(new IPythonBuilder("", "notebook.ipynb", "file", "notebook", "python"));
+        CompletableFuture<List<NotebookResult>> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return executor.call();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(awaitKernel().awaitBlocked());
+
+        executor.interrupt();
+
+        NotebookResult result = future.get(10, TimeUnit.SECONDS).get(0);
+        assertTrue(launched.get(0).cancelled);
+        assertTrue(result.isAborted());
+        assertTrue("Cell after the interrupt should not run", launched.get(0).executed("print(1)").isEmpty());
+    }
+
+    @Test
+    public void testKilledExecutorShutsKernelDown() throws Exception {
+        interrupt = FakeKernel.Interrupt.IGNORE;
+        IPythonExecutor executor = executor("time.sleep(60)");
+        CompletableFuture<List<NotebookResult>> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return executor.call();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        FakeKernel kernel = awaitKernel();
+        assertTrue(kernel.awaitBlocked());
+
+        executor.interrupt();
+        assertTrue(kernel.cancelled);
+        assertFalse("Cell ignoring the interrupt is still running", future.isDone());
+        executor.kill();
+
+        NotebookResult result = future.get(10, TimeUnit.SECONDS).get(0);
+        assertTrue(kernel.shutdown);
+        assertTrue(result.isAborted());
+        assertEquals("Killed kernel should not be pooled", 0, pool.getIdleCount(userConfig()));
+    }
+
+    @Test
+    public void testSessionRunsOneStepAtATime() throws Exception {
+        String sessionId = "session of another step";
+        assertTrue(KernelSessions.acquire(sessionId));
+        try {
+            NotebookResult result = executor(new IPythonBuilder("print(1)", null, "text", "task", "python"),
+                    sessionId).call().get(0);
+
+            assertTrue("Step sharing a busy session should be aborted", result.isAborted());
+            assertTrue(result.getCells().isEmpty());
+            assertFalse("Busy session should stay taken", KernelSessions.acquire(sessionId));
+        } finally {
+            KernelSessions.release(sessionId);
+        }
+    }
+
+    private IPythonExecutor executor(String code) {
+        return executor(new IPythonBuilder(code, null, "text", "task", "python"));
+    }
+
+    private IPythonExecutor executor(IPythonBuilder builder) {
+        return executor(builder, null);
+    }
+
+    private IPythonExecutor executor(IPythonBuilder builder, String sessionId) {
+        IPythonExecutor executor = new IPythonExecutor(builder, "job", new FilePath(folder.getRoot()),
+                new StreamTaskListener(new ByteArrayOutputStream()), userConfig(),
+                new IPythonAgentConfig(1, 0, 60, 0, 0), Collections.singletonList(Collections.emptyMap()), sessionId);
+        executor.setKernelPool(pool);
+        return executor;
+    }
+
+    private IPythonUserConfig userConfig() {
+        return new IPythonUserConfig("python", 1000, 3, folder.getRoot().getAbsolutePath());
+    }
+
+    /**
+     * Waits for the kernel borrowed by the execution.
+     */
+    private FakeKernel awaitKernel() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (launched.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return launched.get(0);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.ml;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OutputWriterTest {
+
+    @Test
+    public void testFullQueueWaitsForTheDisk() throws Exception {
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        CountDownLatch disk = new CountDownLatch(1);
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        OutputWriter writer = new OutputWriter(new PrintStream(console, true), "task", 1);
+        writer.submit(() -> {
+            disk.await();
+            written.add(0);
+        });
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 1; i <= 2; i++) {
+                    int output = i;
+                    writer.submit(() -> written.add(output));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        // the second output fills the queue, the third one waits
+        producer.join(500);
+        assertTrue(producer.isAlive());
+        disk.countDown();
+        producer.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(producer.isAlive());
+        writer.close();
+        assertEquals(Arrays.asList(0, 1, 2), written);
+        assertTrue(new String(console.toByteArray(), StandardCharsets.UTF_8).contains("Saved 3 of 3 outputs to task"));
+    }
+
+    @Test
+    public void testFailedWritesAreReported() throws Exception {
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        OutputWriter writer = new OutputWriter(new PrintStream(console, true), "task", OutputWriter.QUEUE_SIZE);
+        writer.submit(() -> {
+            throw new IOException("disk full");
+        });
+        writer.submit(() -> {
+        });
+        writer.close();
+        String log = new String(console.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(log.contains("Failed to save the output of the cell: disk full"));
+        assertTrue(log.contains("Saved 1 of 2 outputs to task"));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import hudson.AbortException;
+import io.jenkins.plugins.ml.model.NotebookCell;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParameterMatrixTest {
+
+    @Test
+    public void testExpandCartesianProduct() throws Exception {
+        List<Map<String, String>> variants = ParameterMatrix.expand(
+                "{\"lr\": [0.1, 0.01], \"model\": [\"cnn\", \"rnn\"], \"epochs\": 10, \"debug\": false}");
+        assertEquals(4, variants.size());
+        assertEquals("lr=0.1, model='cnn', epochs=10, debug=False", ParameterMatrix.describe(variants.get(0)));
+        assertEquals("lr=0.01, model='rnn', epochs=10, debug=False", ParameterMatrix.describe(variants.get(3)));
+    }
+
+    @Test
+    public void testNoMatrixIsOneVariant() throws Exception {
+        assertEquals(1, ParameterMatrix.expand(null).size());
+        assertTrue(ParameterMatrix.expand(" ").get(0).isEmpty());
+    }
+
+    @Test(expected = AbortException.class)
+    public void testInvalidName() throws Exception {
+        ParameterMatrix.expand("{\"not valid\": 1}");
+    }
+
+    @Test(expected = AbortException.class)
+    public void testTooManyVariants() throws Exception {
+        ParameterMatrix.expand("{\"a\": [1,2,3,4,5,6,7,8,9,10], \"b\": [1,2,3,4,5,6,7,8,9,10],"
+                + " \"c\": [1,2,3,4,5,6,7,8,9,10], \"d\": [1, 2]}");
+    }
+
+    @Test
+    public void testInjectAfterParametersCell() throws Exception {
+        List<NotebookCell> cells = Arrays.asList(new NotebookCell(0, "import os"),
+                new NotebookCell(1, "lr = 1", Collections.singletonList(ParameterMatrix.TAG_PARAMETERS)),
+                new NotebookCell(2, "print(lr)"));
+        List<NotebookCell> variant = ParameterMatrix.inject(cells, ParameterMatrix.expand("{\"lr\": 0.5}").get(0));
+        assertEquals(4, variant.size());
+        assertEquals(ParameterMatrix.INJECTED_CELL_INDEX, variant.get(2).getIndex());
+        assertEquals("# Parameters\nlr = 0.5\n", variant.get(2).getSource());
+    }
+
+    @Test
+    public void testInjectAheadWithoutParametersCell() throws Exception {
+        List<NotebookCell> variant = ParameterMatrix.inject(Collections.singletonList(new NotebookCell(0, "print(lr)")),
+                ParameterMatrix.expand("{\"lr\": 0.5}").get(0));
+        assertEquals(ParameterMatrix.INJECTED_CELL_INDEX, variant.get(0).getIndex());
+        assertEquals(0, variant.get(1).getIndex());
+    }
+
+    @Test
+    public void testFolderName() throws Exception {
+        String name = ParameterMatrix.toFolderName(ParameterMatrix.expand("{\"lr\": 0.1, \"model\": \"cnn\"}").get(0));
+        assertTrue(name, name.matches("lr-0\\.1_model-cnn_[0-9a-f]{8}"));
+    }
+
+    @Test
+    public void testFolderNamesOfVariantsAreUnique() throws Exception {
+        Set<String> names = new HashSet<>();
+        for (Map<String, String> variant : ParameterMatrix.expand("{\"model\": [\"a b\", \"ab\", \"a/b\"]}")) {
+            names.add(ParameterMatrix.toFolderName(variant));
+        }
+        String prefix = String.join("", Collections.nCopies(70, "x"));
+        for (Map<String, String> variant : ParameterMatrix.expand(
+                "{\"p\": [\"" + prefix + "1\", \"" + prefix + "2\"]}")) {
+            names.add(ParameterMatrix.toFolderName(variant));
+        }
+        assertEquals(5, names.size());
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml;
+
+import hudson.FilePath;
+import hudson.util.StreamTaskListener;
+import io.jenkins.plugins.ml.model.CellResult;
+import io.jenkins.plugins.ml.model.NotebookResult;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WatchdogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<FakeKernel> launched = new ArrayList<>();
+    private KernelPool pool;
+    private IPythonUserConfig userConfig;
+
+    @Before
+    public void setup() {
+        pool = new KernelPool(config -> {
+            // the cells sleeping run until the kernel is interrupted, and catch the interrupt
+            FakeKernel kernel = new FakeKernel().block("time.sleep", FakeKernel.Interrupt.SWALLOW);
+            launched.add(kernel);
+            return kernel;
+        }, System::currentTimeMillis);
+        pool.configure(new IPythonAgentConfig(1, 0, 60));
+        userConfig = new IPythonUserConfig("python", 1000, 3, folder.getRoot().getAbsolutePath());
+    }
+
+    @Test
+    public void testWatchdogInterruptsThenKillsKernel() throws Exception {
+        IPythonInterpreterManager interpreterManager = new IPythonInterpreterManager(userConfig, pool);
+        interpreterManager.initiateInterpreter();
+        FakeKernel kernel = launched.get(0);
+
+        try (Watchdog watchdog = new Watchdog(interpreterManager, 1, 0, 1)) {
+            watchdog.startCell();
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!kernel.shutdown && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue("Kernel was not interrupted", kernel.cancelled);
+            assertTrue("Kernel ignoring the interrupt was not shut down", kernel.shutdown);
+            assertEquals("cell timeout of 1 sec", watchdog.getExpired());
+        }
+    }
+
+    @Test
+    public void testWatchdogKeepsKernelOfFinishedCell() throws Exception {
+        IPythonInterpreterManager interpreterManager = new IPythonInterpreterManager(userConfig, pool);
+        interpreterManager.initiateInterpreter();
+        FakeKernel kernel = launched.get(0);
+
+        try (Watchdog watchdog = new Watchdog(interpreterManager, 1, 0, 0)) {
+            watchdog.startCell();
+            watchdog.endCell();
+            Thread.sleep(1500);
+            assertFalse(kernel.cancelled);
+            assertEquals(null, watchdog.getExpired());
+        }
+        interpreterManager.close();
+        assertFalse(kernel.shutdown);
+    }
+
+    @Test
+    public void testTimeoutBetweenCellsDoesNotInterruptKernel() throws Exception {
+        IPythonInterpreterManager interpreterManager = new IPythonInterpreterManager(userConfig, pool);
+        interpreterManager.initiateInterpreter();
+        FakeKernel kernel = launched.get(0);
+
+        try (Watchdog watchdog = new Watchdog(interpreterManager, 0, 1, 0)) {
+            watchdog.startCell();
+            watchdog.endCell();
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (watchdog.getExpired() == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals("notebook timeout of 1 sec", watchdog.getExpired());
+            assertFalse("No cell was running", kernel.cancelled);
+        }
+    }
+
+    @Test
+    public void testSwallowedInterruptFailsNotebook() throws Exception {
+        Files.write(new File(folder.getRoot(), "notebook.ipynb").toPath(), ("{\"cells\": ["
+                + "{\"cell_type\": \"code\", \"metadata\": {}, \"source\": [\"time.sleep(60)\"]},"
+                + "{\"cell_type\": \"code\", \"metadata\": {}, \"source\": [\"print(1)\"]}"
+                + "], \"metadata\": {}, \"nbformat\": 4, \"nbformat_minor\": 2}").getBytes(StandardCharsets.UTF_8));
+        userConfig.setCellTimeout(1);
+        IPythonBuilder builder = new IPythonBuilder("", "notebook.ipynb", "file", "notebook", "python");
+        IPythonExecutor executor = new IPythonExecutor(builder, "job", new FilePath(folder.getRoot()),
+                new StreamTaskListener(new ByteArrayOutputStream()), userConfig, new IPythonAgentConfig(1, 0, 60, 0, 0),
+                Collections.singletonList(Collections.emptyMap()), null);
+        executor.setKernelPool(pool);
+
+        NotebookResult result = executor.call().get(0);
+
+        assertTrue("Kernel was not interrupted", launched.get(0).cancelled);
+        assertTrue("Notebook skipping cells after the timeout should fail", result.isFailed());
+        assertEquals(2, result.getCells().size());
+        assertEquals(CellResult.Status.SUCCESS, result.getCells().get(0).getStatus());
+        assertEquals(CellResult.Status.TIMEOUT, result.getCells().get(1).getStatus());
+        assertTrue("Cell after the timeout should not run", launched.get(0).executed("print(1)").isEmpty());
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml.jupyter;
+
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.netty.NettyChannelBuilder;
+import io.jenkins.plugins.ml.IPythonUserConfig;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+public class KernelChannelsTest {
+
+    // agents run 8-16 kernels
+    private static final int KERNELS = 16;
+
+    private final List<ManagedChannel> channels = new ArrayList<>();
+    private final List<EventLoopGroup> eventLoopGroups = new ArrayList<>();
+    private final List<ExecutorService> executors = new ArrayList<>();
+
+    @After
+    public void tearDown() throws InterruptedException {
+        for (ManagedChannel channel : channels) {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        for (EventLoopGroup eventLoopGroup : eventLoopGroups) {
+            eventLoopGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS).await(10, TimeUnit.SECONDS);
+        }
+        for (ExecutorService executor : executors) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSharedChannelsUseFewerThreadsAndLessHeapThanChannelsOfTheirOwn() throws Exception {
+        int port = findUnusedPort();
+        long heap = usedHeap();
+        for (int i = 0; i < KERNELS; i++) {
+            channels.add(KernelChannels.configure(KernelChannels.forPort(port),
+                    IPythonUserConfig.DEFAULT_MAX_INBOUND_MESSAGE_SIZE, IPythonUserConfig.DEFAULT_FLOW_CONTROL_WINDOW, 0)
+                    .build());
+        }
+        connectAll(channels);
+        int sharedThreads = countThreads("kernel-grpc");
+        long sharedHeap = usedHeap() - heap;
+        assertTrue("Threads should not grow with the number of kernels: " + sharedThreads,
+                sharedThreads <= KernelChannels.EVENT_LOOP_THREADS + KernelChannels.EXECUTOR_THREADS);
+
+        heap = usedHeap();
+        for (int i = 0; i < KERNELS; i++) {
+            // a kernel client with its own event loop and executor
+            EventLoopGroup eventLoopGroup = new NioEventLoopGroup(0, new DefaultThreadFactory("kernel-own-" + i, true));
+            ExecutorService executor = Executors.newCachedThreadPool(new DefaultThreadFactory("kernel-own-" + i, true));
+            eventLoopGroups.add(eventLoopGroup);
+            executors.add(executor);
+            channels.add(NettyChannelBuilder.forAddress("127.0.0.1", port)
+                    .eventLoopGroup(eventLoopGroup)
+                    .channelType(NioSocketChannel.class)
+                    .executor(executor)
+                    .usePlaintext()
+                    .build());
+        }
+        connectAll(channels.subList(KERNELS, channels.size()));
+        int ownThreads = countThreads("kernel-own-");
+        long ownHeap = usedHeap() - heap;
+        assertTrue("Shared channels use " + sharedThreads + " threads, channels of their own " + ownThreads,
+                sharedThreads < ownThreads);
+        // every event loop of its own holds a selector and task queues
+        assertTrue("Shared channels use " + sharedHeap / 1024 + " KB of heap, channels of their own "
+                + ownHeap / 1024 + " KB", sharedHeap < ownHeap);
+    }
+
+    private static void connectAll(List<ManagedChannel> channels) throws InterruptedException {
+        for (ManagedChannel channel : channels) {
+            channel.getState(true);
+        }
+        // nobody listens on the port, every channel fails to connect
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        for (ManagedChannel channel : channels) {
+            while (channel.getState(false) != ConnectivityState.TRANSIENT_FAILURE
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static int findUnusedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static int countThreads(String prefix) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        // a single collection may leave garbage behind
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
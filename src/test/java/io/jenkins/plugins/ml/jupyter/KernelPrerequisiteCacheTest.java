@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml.jupyter;
+
+import hudson.Functions;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KernelPrerequisiteCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File python;
+    private File sitePackages;
+    private final AtomicInteger checks = new AtomicInteger();
+
+    @Before
+    public void setup() throws Exception {
+        Assume.assumeFalse(Functions.isWindows());
+        sitePackages = folder.newFolder("site-packages");
+        // fake python printing its site-packages directory
+        python = folder.newFile("python");
+        Files.write(python.toPath(), ("#!/bin/sh\necho " + sitePackages.getAbsolutePath() + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        assertTrue(python.setExecutable(true));
+    }
+
+    @Test
+    public void testSuccessfulCheckIsCached() throws Exception {
+        KernelPrerequisiteCache cache = new KernelPrerequisiteCache(new File(folder.getRoot(), "cache.properties"));
+        assertEquals("", cache.check(python.getAbsolutePath(), Collections.singletonList("grpcio"), this::check));
+        assertEquals("", cache.check(python.getAbsolutePath(), Collections.singletonList("grpcio"), this::check));
+        assertEquals("Check should run once", 1, checks.get());
+
+        // a new cache instance reads the persisted entry
+        cache = new KernelPrerequisiteCache(new File(folder.getRoot(), "cache.properties"));
+        cache.check(python.getAbsolutePath(), Collections.singletonList("grpcio"), this::check);
+        assertEquals("Check should be persisted", 1, checks.get());
+    }
+
+    @Test
+    public void testCacheIsInvalidatedWhenSitePackagesChange() throws Exception {
+        KernelPrerequisiteCache cache = new KernelPrerequisiteCache(new File(folder.getRoot(), "cache.properties"));
+        cache.check(python.getAbsolutePath(), Collections.singletonList("grpcio"), this::check);
+        assertTrue(sitePackages.setLastModified(sitePackages.lastModified() - 60_000));
+        cache.check(python.getAbsolutePath(), Collections.singletonList("grpcio"), this::check);
+        assertEquals("Check should run again", 2, checks.get());
+    }
+
+    @Test
+    public void testFailedCheckIsNotCached() throws Exception {
+        KernelPrerequisiteCache cache = new KernelPrerequisiteCache(new File(folder.getRoot(), "cache.properties"));
+        assertEquals("grpcio is not installed.",
+                cache.check(python.getAbsolutePath(), Collections.singletonList("grpcio"), () -> "grpcio is not installed."));
+        cache.check(python.getAbsolutePath(), Collections.singletonList("grpcio"), this::check);
+        assertEquals(1, checks.get());
+    }
+
+    private String check() {
+        checks.incrementAndGet();
+        return "";
+    }
+}
@@ -24,19 +24,30 @@
 
 package io.jenkins.plugins.ml.utils;
 
+import com.google.gson.JsonObject;
 import hudson.FilePath;
+import io.jenkins.plugins.ml.model.NotebookCell;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 public class ConvertHelperTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testJupyterToText() throws IOException, InterruptedException {
         Path resourceDirectory = Paths.get("src", "test", "resources", "demo.ipynb");
@@ -70,4 +81,47 @@ public class ConvertHelperTest {
         assertTrue(!text.startsWith("#"));
     }
 
+    @Test
+    public void testJupyterToCells() throws IOException, InterruptedException {
+        Path resourceDirectory = Paths.get("src", "test", "resources", "tagged.ipynb");
+        FilePath file = new FilePath(resourceDirectory.toFile().getAbsoluteFile());
+        List<NotebookCell> cells = ConvertHelper.jupyterToCells(file);
+        assertEquals(3, cells.size());
+        assertEquals(1, cells.get(0).getIndex());
+        assertEquals("x = 1\nprint(x)", cells.get(0).getSource());
+        assertTrue(cells.get(0).getTags().isEmpty());
+        assertEquals("1 / 0", cells.get(1).getSource());
+        assertTrue(cells.get(1).hasTag(NotebookCell.TAG_RAISES_EXCEPTION));
+        assertTrue(cells.get(2).hasTag(NotebookCell.TAG_SKIP_EXECUTION));
+    }
+
+    @Test
+    public void testJupyterToJSONKeepsCodeParagraphs() throws IOException, InterruptedException {
+        Path resourceDirectory = Paths.get("src", "test", "resources", "tagged.ipynb");
+        FilePath file = new FilePath(resourceDirectory.toFile().getAbsoluteFile());
+        FilePath note = new FilePath(folder.newFile("tagged.json"));
+        note.write(ConvertHelper.jupyterToJSON(file).toString(), "UTF-8");
+        List<NotebookCell> paragraphs = ConvertHelper.zeppelinToCells(note);
+        assertEquals(3, paragraphs.size());
+        assertEquals(1, paragraphs.get(0).getIndex());
+        assertTrue(paragraphs.get(0).getSource().contains("x = 1\nprint(x)"));
+    }
+
+    @Test
+    public void testJupyterToJSONLeavesOutRawCells() throws IOException, InterruptedException {
+        File notebook = folder.newFile("raw.ipynb");
+        Files.write(notebook.toPath(), ("{\"cells\": ["
+                + "{\"cell_type\": \"raw\", \"metadata\": {}, \"source\": [\"not python\"]},"
+                + "{\"cell_type\": \"markdown\", \"metadata\": {}, \"source\": [\"# Title\"]},"
+                + "{\"cell_type\": \"code\", \"metadata\": {}, \"source\": [\"print(1)\"]}"
+                + "], \"metadata\": {}, \"nbformat\": 4, \"nbformat_minor\": 2}").getBytes(StandardCharsets.UTF_8));
+        JsonObject json = ConvertHelper.jupyterToJSON(new FilePath(notebook));
+        assertEquals("raw", json.get("name").getAsString());
+        assertEquals(2, json.getAsJsonArray("paragraphs").size());
+        FilePath note = new FilePath(folder.newFile("raw.json"));
+        note.write(json.toString(), "UTF-8");
+        List<NotebookCell> paragraphs = ConvertHelper.zeppelinToCells(note);
+        assertEquals(1, paragraphs.size());
+        assertTrue(paragraphs.get(0).getSource().contains("print(1)"));
+    }
 }
@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DiskLruStoreTest {
+
+    private static final String FIRST = "aa000000000000000000000000000001";
+    private static final String SECOND = "bb000000000000000000000000000002";
+    private static final String THIRD = "cc000000000000000000000000000003";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+        DiskLruStore store = new DiskLruStore(folder.newFolder("store"), 250);
+        put(store, FIRST, 100);
+        put(store, SECOND, 100);
+        // reading the first entry makes the second one the least recently used
+        File first = store.get(FIRST);
+        assertNotNull(first);
+        assertEquals(FIRST, first.getName());
+        File second = new File(store.getDirectory().toFile(), "bb/" + SECOND);
+        assertTrue(second.setLastModified(System.currentTimeMillis() - 60_000));
+        put(store, THIRD, 100);
+
+        assertNotNull(store.get(FIRST));
+        assertNull(store.get(SECOND));
+        assertNotNull(store.get(THIRD));
+        assertEquals(3, store.getHits());
+        assertEquals(1, store.getMisses());
+    }
+
+    @Test
+    public void testExistingEntriesAreCounted() throws Exception {
+        File directory = folder.newFolder("store");
+        put(new DiskLruStore(directory, 1000), FIRST, 200);
+        assertTrue(new File(directory, "aa/" + FIRST).setLastModified(System.currentTimeMillis() - 60_000));
+        DiskLruStore store = new DiskLruStore(directory, 300);
+        put(store, SECOND, 200);
+        assertNull(store.get(FIRST));
+        assertNotNull(store.get(SECOND));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidKey() {
+        new DiskLruStore(folder.getRoot(), 100).get("../escape");
+    }
+
+    private static void put(DiskLruStore store, String key, int size) throws Exception {
+        File file = store.createTempFile();
+        Files.write(file.toPath(), new byte[size]);
+        store.put(key, file);
+    }
+}
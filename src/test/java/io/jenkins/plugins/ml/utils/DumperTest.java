@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.ml.utils;
+
+import hudson.FilePath;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DumperTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testImageBytesAreWrittenUnchanged() throws Exception {
+        byte[] jpeg = new byte[200 * 1024];
+        new Random(42).nextBytes(jpeg);
+        jpeg[0] = (byte) 0xFF;
+        jpeg[1] = (byte) 0xD8;
+        jpeg[2] = (byte) 0xFF;
+        // line breaks as sent by the kernel
+        String data = Base64.getMimeEncoder().encodeToString(jpeg);
+        Dumper.dumpImage(data, "task", new FilePath(folder.getRoot()));
+
+        File image = new File(folder.getRoot(), "task/" + UUID.nameUUIDFromBytes(data.getBytes(StandardCharsets.UTF_8))
+                + ".jpeg");
+        assertTrue(image.exists());
+        assertArrayEquals(jpeg, Files.readAllBytes(image.toPath()));
+    }
+
+    @Test
+    public void testLineBreakInPartialGroupAtChunkEnd() throws Exception {
+        byte[] png = new byte[60 * 1024];
+        new Random(42).nextBytes(png);
+        png[0] = (byte) 0x89;
+        String encoded = Base64.getEncoder().encodeToString(png);
+        // the first chunk of 64K characters ends with 3 characters of a group around a line break
+        String data = encoded.substring(0, 65534) + "\n" + encoded.substring(65534);
+        Dumper.dumpImage(data, "task", new FilePath(folder.getRoot()));
+
+        File image = new File(folder.getRoot(), "task/" + UUID.nameUUIDFromBytes(data.getBytes(StandardCharsets.UTF_8))
+                + ".png");
+        assertArrayEquals(png, Files.readAllBytes(image.toPath()));
+    }
+
+    @Test
+    public void testSvgIsWrittenAsSvg() throws Exception {
+        String svg = "<svg xmlns=\"http://www.w3.org/2000/svg\"><circle r=\"1\"/></svg>";
+        Dumper.dumpImage(svg, "task", new FilePath(folder.getRoot()));
+
+        File image = new File(folder.getRoot(), "task/" + UUID.nameUUIDFromBytes(svg.getBytes(StandardCharsets.UTF_8))
+                + ".svg");
+        assertEquals(svg, new String(Files.readAllBytes(image.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testExtensionIsSniffed() {
+        assertEquals("png", Dumper.sniffExtension(ByteBuffer.wrap(new byte[]{(byte) 0x89, 'P', 'N', 'G'})));
+        assertEquals("gif", Dumper.sniffExtension(ByteBuffer.wrap("GIF89a".getBytes(StandardCharsets.US_ASCII))));
+        assertEquals("svg", Dumper.sniffExtension(ByteBuffer.wrap("<?xml".getBytes(StandardCharsets.US_ASCII))));
+        assertEquals("webp", Dumper.sniffExtension(ByteBuffer.wrap(
+                "RIFF\0\0\0\0WEBPVP8 ".getBytes(StandardCharsets.US_ASCII))));
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml.utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.jenkins.plugins.ml.model.NotebookCell;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NotebookParserTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testOutputsAreSkipped() throws Exception {
+        String notebook = "{\"metadata\": {\"kernelspec\": {\"name\": \"python3\"}}, \"cells\": ["
+                + "{\"cell_type\": \"markdown\", \"source\": [\"# Title\"],"
+                + " \"attachments\": {\"a.png\": {\"image/png\": \"AAAA\"}}},"
+                + "{\"cell_type\": \"code\","
+                + " \"outputs\": [{\"data\": {\"image/png\": \"AAAA\"}, \"output_type\": \"display_data\"}],"
+                + " \"metadata\": {\"tags\": [\"parameters\"]}, \"source\": [\"x = 1\\n\", \"print(x)\"]},"
+                + "{\"cell_type\": \"code\", \"source\": \"y = 2\", \"execution_count\": null}"
+                + "], \"nbformat\": 4}";
+        try (NotebookParser parser = parse(notebook)) {
+            NotebookCell markdown = parser.next();
+            assertEquals(NotebookCell.TYPE_MARKDOWN, markdown.getType());
+            NotebookCell code = parser.next();
+            assertEquals(1, code.getIndex());
+            assertEquals("x = 1\nprint(x)", code.getSource());
+            assertEquals(Arrays.asList("parameters"), code.getTags());
+            assertEquals("y = 2", parser.next().getSource());
+            assertNull(parser.next());
+        }
+    }
+
+    @Test
+    public void testZeppelinParagraphs() throws Exception {
+        String note = "{\"name\": \"note\", \"paragraphs\": ["
+                + "{\"text\": \"%md\\n# Title\", \"config\": {\"editorMode\": \"ace/mode/markdown\"}},"
+                + "{\"results\": {\"msg\": [{\"data\": \"AAAA\"}]}, \"text\": \"x = 1\","
+                + " \"config\": {\"editorMode\": \"ace/mode/python\"}}"
+                + "]}";
+        try (NotebookParser parser = parse(note)) {
+            List<NotebookCell> cells = parser.readCodeCells();
+            assertEquals(1, cells.size());
+            assertEquals(1, cells.get(0).getIndex());
+            assertEquals("x = 1", cells.get(0).getSource());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidNotebook() throws Exception {
+        try (NotebookParser parser = parse("{\"nbformat\": 3, \"worksheets\": []}")) {
+            parser.next();
+        }
+    }
+
+    /**
+     * System property enabling {@link #testLargeNotebookBenchmark()}, which reads a 40 MB notebook.
+     */
+    private static final String BENCHMARK_PROPERTY = "notebookParser.benchmark";
+
+    @Test
+    public void testOutputsAreNotMaterialized() throws Exception {
+        File notebook = writeNotebook(8, 512 * 1024);
+        Parse tree = parseTree(notebook);
+        Parse stream = parseStream(notebook);
+        assertEquals(tree.cells, stream.cells);
+        assertTrue("Streaming allocated " + stream.bytes + " bytes", stream.bytes < notebook.length() / 4);
+        assertTrue(stream.bytes < tree.bytes / 4);
+    }
+
+    /**
+     * Compares the parser with the previous path, which built the whole JSON tree of the notebook.
+     * Run with -D{@value #BENCHMARK_PROPERTY}=true.
+     */
+    @Test
+    public void testLargeNotebookBenchmark() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean(BENCHMARK_PROPERTY));
+        File notebook = writeNotebook(40, 1024 * 1024);
+        Parse tree = parseTree(notebook);
+        Parse stream = parseStream(notebook);
+        assertEquals(tree.cells, stream.cells);
+        assertTrue("Streaming took " + stream.nanos / 1_000_000 + " ms, the tree " + tree.nanos / 1_000_000 + " ms",
+                stream.nanos < tree.nanos);
+        assertTrue("Streaming allocated " + (stream.bytes >> 20) + " MB, the tree " + (tree.bytes >> 20) + " MB",
+                stream.bytes < tree.bytes / 4);
+    }
+
+    private static Parse parseTree(File notebook) throws IOException {
+        Parse parse = new Parse();
+        try (InputStreamReader reader = new InputStreamReader(new FileInputStream(notebook), StandardCharsets.UTF_8)) {
+            JsonArray cells = new JsonParser().parse(reader).getAsJsonObject().getAsJsonArray("cells");
+            for (JsonElement cell : cells) {
+                if ("code".equals(cell.getAsJsonObject().get("cell_type").getAsString())) {
+                    parse.cells++;
+                }
+            }
+        }
+        return parse.end();
+    }
+
+    private static Parse parseStream(File notebook) throws IOException {
+        Parse parse = new Parse();
+        try (NotebookParser parser = new NotebookParser(new FileInputStream(notebook), notebook.getName())) {
+            parse.cells = parser.readCodeCells().size();
+        }
+        return parse.end();
+    }
+
+    private NotebookParser parse(String notebook) {
+        return new NotebookParser(new ByteArrayInputStream(notebook.getBytes(StandardCharsets.UTF_8)), "test.ipynb");
+    }
+
+    /**
+     * Writes a notebook whose code cells each have an embedded image output.
+     */
+    private File writeNotebook(int cells, int imageSize) throws IOException {
+        File notebook = folder.newFile("large.ipynb");
+        char[] image = new char[imageSize];
+        Arrays.fill(image, 'A');
+        try (Writer writer = Files.newBufferedWriter(notebook.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("{\"cells\": [");
+            for (int i = 0; i < cells; i++) {
+                JsonObject cell = new JsonObject();
+                cell.addProperty("cell_type", "code");
+                cell.addProperty("source", "plot(" + i + ")");
+                String json = cell.toString();
+                writer.write(i == 0 ? "" : ",");
+                writer.write(json.substring(0, json.length() - 1));
+                writer.write(", \"outputs\": [{\"output_type\": \"display_data\", \"data\": {\"image/png\": \"");
+                writer.write(image);
+                writer.write("\"}}]}");
+            }
+            writer.write("], \"metadata\": {}, \"nbformat\": 4, \"nbformat_minor\": 4}");
+        }
+        return notebook;
+    }
+
+    /**
+     * Time and memory spent reading a notebook by the current thread.
+     */
+    private static final class Parse {
+        private final long start = System.nanoTime();
+        private final long allocated = allocatedBytes();
+        private int cells;
+        private long nanos;
+        private long bytes;
+
+        private Parse end() {
+            nanos = System.nanoTime() - start;
+            bytes = allocatedBytes() - allocated;
+            return this;
+        }
+
+        private static long allocatedBytes() {
+            java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.jenkins.plugins.ml.utils;
+
+import hudson.FilePath;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Base64;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeNotNull;
+
+public class OutputStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStoredOutputsAreLinkedToTheNextBuild() throws Exception {
+        DiskLruStore outputs = new DiskLruStore(folder.newFolder("outputs"), 1024 * 1024);
+        FilePath ws = new FilePath(folder.newFolder("ws"));
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 1, 2, 3};
+        String image = Base64.getEncoder().encodeToString(png);
+
+        OutputStore firstBuild = new OutputStore(outputs);
+        Dumper.dumpImage(image, "first", ws, firstBuild);
+        Dumper.dumpHtml("<b>table</b>", "first", ws, firstBuild);
+        assertEquals(0, firstBuild.getHits());
+        assertEquals(2, firstBuild.getMisses());
+
+        OutputStore secondBuild = new OutputStore(outputs);
+        Dumper.dumpImage(image, "second", ws, secondBuild);
+        Dumper.dumpHtml("<b>table</b>", "second", ws, secondBuild);
+        assertEquals(2, secondBuild.getHits());
+        assertEquals(0, secondBuild.getMisses());
+
+        File[] first = new File(ws.getRemote(), "first").listFiles();
+        String[] second = new File(ws.getRemote(), "second").list();
+        assertNotNull(first);
+        assertNotNull(second);
+        assertEquals(2, second.length);
+        for (File file : first) {
+            assertArrayEquals(Files.readAllBytes(file.toPath()),
+                    Files.readAllBytes(new File(ws.getRemote(), "second/" + file.getName()).toPath()));
+        }
+        assertArrayEquals(png, Files.readAllBytes(new File(ws.getRemote(), "second").listFiles(
+                (dir, name) -> name.endsWith(".png"))[0].toPath()));
+        assertArrayEquals("<b>table</b>".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(
+                new File(ws.getRemote(), "second").listFiles((dir, name) -> name.endsWith(".html"))[0].toPath()));
+    }
+
+    @Test
+    public void testEvictedOutputsAreWrittenAgain() throws Exception {
+        DiskLruStore outputs = new DiskLruStore(folder.newFolder("outputs"), 0);
+        FilePath ws = new FilePath(folder.newFolder("ws"));
+        OutputStore firstBuild = new OutputStore(outputs);
+        Dumper.dumpHtml("<b>table</b>", "first", ws, firstBuild);
+        OutputStore secondBuild = new OutputStore(outputs);
+        Dumper.dumpHtml("<b>table</b>", "second", ws, secondBuild);
+        assertEquals(0, secondBuild.getHits());
+        assertEquals(1, secondBuild.getMisses());
+        // the task folder keeps its link to the evicted entry
+        assertEquals(1, new File(ws.getRemote(), "first").list().length);
+    }
+
+    @Test
+    public void testStoredOutputsAreReadOnly() throws Exception {
+        DiskLruStore outputs = new DiskLruStore(folder.newFolder("outputs"), 1024 * 1024);
+        FilePath ws = new FilePath(folder.newFolder("ws"));
+        assumeNotNull(Files.getFileAttributeView(outputs.getDirectory(), PosixFileAttributeView.class));
+        Dumper.dumpHtml("<b>table</b>", "first", ws, new OutputStore(outputs));
+        Dumper.dumpHtml("<b>table</b>", "second", ws, new OutputStore(outputs));
+
+        for (String task : new String[]{"first", "second"}) {
+            File[] files = new File(ws.getRemote(), task).listFiles();
+            assertNotNull(files);
+            assertEquals(1, files.length);
+            assertFalse("Linked output should be read-only", Files.getPosixFilePermissions(files[0].toPath())
+                    .contains(PosixFilePermission.OWNER_WRITE));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 Loghi Perinpanayagam.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package io.jenkins.plugins.ml.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class PrefixedOutputStreamTest {
+
+    @Test
+    public void testEveryLineIsPrefixed() throws Exception {
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        PrintStream shared = new PrintStream(console, true, "UTF-8");
+        try (PrintStream first = new PrintStream(new PrefixedOutputStream(shared, "[a.ipynb] "), true, "UTF-8");
+             PrintStream second = new PrintStream(new PrefixedOutputStream(shared, "[b.ipynb] "), true, "UTF-8")) {
+            first.print("epoch ");
+            second.println("loading");
+            first.println("1");
+            second.print("no newline");
+        }
+        assertEquals("[b.ipynb] loading\n[a.ipynb] epoch 1\n[b.ipynb] no newline\n",
+                new String(console.toByteArray(), StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n"));
+    }
+}